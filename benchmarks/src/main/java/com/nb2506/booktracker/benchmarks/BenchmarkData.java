@@ -0,0 +1,100 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.DatabaseBookRepository;
+import com.nb2506.booktracker.DatabaseHelper;
+import com.nb2506.booktracker.LibraryGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Воспроизводимые тестовые данные для бенчмарков: книги из {@link LibraryGenerator}
+ * с постоянным начальным значением и заполненные ими базы данных.
+ */
+final class BenchmarkData {
+    /** Начальное значение генератора случайных чисел. */
+    static final long SEED = 42;
+
+    /** Каталог, в котором хранятся заполненные базы данных для повторного использования. */
+    private static final Path TEMPLATE_DIR = Path.of("target", "bench-db");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Создаёт книги с id от 1 до {@code count}, как если бы они были прочитаны из новой базы данных.
+     *
+     * @param count количество книг
+     * @return список книг
+     */
+    static List<Book> books(int count) {
+        LibraryGenerator generator = new LibraryGenerator(SEED);
+        List<Book> books = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Book book = generator.nextBook();
+            books.add(new Book(id, book.getTitle(), book.getAuthor(), book.getYear(), book.getPages(),
+                    book.getRating(), book.getGenres(), book.getCurrentPage(), false));
+        }
+        return books;
+    }
+
+    /**
+     * Возвращает копию базы данных с {@code rows} книгами для одного запуска бенчмарка.
+     * Заполненная база создаётся один раз и затем только копируется, поэтому
+     * подготовка больших баз не повторяется в каждом запуске.
+     *
+     * @param rows количество книг
+     * @return путь к временному файлу базы данных
+     */
+    static Path copyOfLibrary(int rows) {
+        try {
+            Path template = TEMPLATE_DIR.resolve("books-" + rows + ".db");
+            if (!Files.exists(template)) {
+                Files.createDirectories(TEMPLATE_DIR);
+                Path partial = TEMPLATE_DIR.resolve("books-" + rows + ".db.partial");
+                deleteDatabase(partial);
+                open(partial);
+                LibraryGenerator.generate(new DatabaseBookRepository(), rows, new LibraryGenerator.Options(SEED, 0, 0, 0));
+                DatabaseHelper.shutdown();
+                Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Path copy = Files.createTempFile("booktracker-bench-", ".db");
+            Files.copy(template, copy, StandardCopyOption.REPLACE_EXISTING);
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Переключает {@link DatabaseHelper} на файл базы данных и создаёт в нём схему.
+     *
+     * @param file файл базы данных
+     */
+    static void open(Path file) {
+        DatabaseHelper.shutdown();
+        System.setProperty(DatabaseHelper.DB_PATH_PROPERTY, file.toString());
+        DatabaseHelper.createTable();
+    }
+
+    /**
+     * Удаляет файл базы данных вместе с файлами журнала WAL.
+     *
+     * @param file файл базы данных
+     */
+    static void deleteDatabase(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.ColumnarBookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение скорости проходов по всей библиотеке в списке объектов {@link Book} и в {@link ColumnarBookStore}:
+ * отбор по числовым полям, подсчёт книг по авторам и создание объектов книг для видимых строк.
+ * Объём памяти обоих представлений сравнивает {@link BookStoreFootprint}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookStoreBenchmark {
+    /** Количество строк, видимых в списке главного окна. */
+    private static final int VISIBLE_ROWS = 40;
+
+    /** Количество книг. */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /** Книги в порядке списка. */
+    private List<Book> books;
+
+    /** Те же книги в колоночном хранилище. */
+    private ColumnarBookStore store;
+
+    /**
+     * Создаёт книги и колоночное хранилище с теми же книгами.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        books = BenchmarkData.books(rows);
+        store = ColumnarBookStore.of(books);
+    }
+
+    /** Отбор прочитанных книг с высокой оценкой по списку объектов. */
+    @Benchmark
+    public int listFilter() {
+        int count = 0;
+        for (Book book : books) {
+            if (book.getRating() >= 8 && book.getCurrentPage() >= book.getPages() && book.getYear() >= 1950) count++;
+        }
+        return count;
+    }
+
+    /** Тот же отбор по столбцам хранилища. */
+    @Benchmark
+    public int storeFilter() {
+        int count = 0;
+        for (int row = 0, size = store.size(); row < size; row++) {
+            if (store.getRating(row) >= 8 && store.getCurrentPage(row) >= store.getPages(row)
+                    && store.getYear(row) >= 1950) count++;
+        }
+        return count;
+    }
+
+    /** Подсчёт книг по авторам в списке объектов через карту со строковыми ключами. */
+    @Benchmark
+    public Map<String, Integer> listAuthorCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Book book : books) {
+            counts.merge(book.getAuthor(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /** Подсчёт книг по авторам в хранилище через массив по кодам словаря. */
+    @Benchmark
+    public int[] storeAuthorCounts() {
+        int[] counts = new int[store.authorCount()];
+        for (int row = 0, size = store.size(); row < size; row++) {
+            counts[store.getAuthorCode(row)]++;
+        }
+        return counts;
+    }
+
+    /** Создание объектов книг для одного экрана списка из середины хранилища. */
+    @Benchmark
+    public int storeVisibleRows() {
+        int first = store.size() / 2;
+        int length = 0;
+        for (int row = first; row < first + VISIBLE_ROWS; row++) {
+            length += store.get(row).getTitle().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.ColumnarBookStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * Замер объёма кучи, занятого библиотекой в списке объектов {@link Book} и в {@link ColumnarBookStore}.
+ * Это не бенчмарк JMH: объём считается как разница занятой кучи после полной сборки мусора
+ * до и после создания представления, поэтому замер выполняется в отдельной виртуальной машине
+ * с последовательным сборщиком:
+ * <pre>
+ *   java -XX:+UseSerialGC -Xmx4g -cp benchmarks/target/benchmarks.jar \
+ *       com.nb2506.booktracker.benchmarks.BookStoreFootprint 1000000
+ * </pre>
+ * Для списка учитываются и ключи поиска {@link Book#getSearchKey()}, которые главное окно строит для фильтрации.
+ */
+public final class BookStoreFootprint {
+    /** Количество книг по умолчанию. */
+    private static final int DEFAULT_ROWS = 1_000_000;
+
+    /** Сколько раз подряд вызывать сборку мусора перед замером. */
+    private static final int GC_ROUNDS = 5;
+
+    private BookStoreFootprint() {
+    }
+
+    /**
+     * Выполняет замер и выводит объём каждого представления в мегабайтах и байтах на книгу.
+     *
+     * @param args {@code [КОЛИЧЕСТВО_КНИГ]}
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+
+        long baseline = usedHeap();
+        List<Book> books = BenchmarkData.books(rows);
+        long listBytes = usedHeap() - baseline;
+        books.forEach(Book::getSearchKey);
+        long keyedBytes = usedHeap() - baseline;
+
+        ColumnarBookStore store = ColumnarBookStore.of(books);
+        books = null;
+        long storeBytes = usedHeap() - baseline;
+
+        System.out.println("Книг: " + rows);
+        print("Список Book", listBytes, rows);
+        print("Список Book с ключами поиска", keyedBytes, rows);
+        print("ColumnarBookStore", storeBytes, rows);
+        System.out.println("Авторов в словаре: " + store.authorCount()
+                + ", оценка хранилища: " + store.estimatedBytes() / (1024 * 1024) + " МБ");
+    }
+
+    /**
+     * Выводит строку результата.
+     */
+    private static void print(String name, long bytes, int rows) {
+        System.out.printf("%-30s %8.1f МБ %8.1f байт/книга%n", name, bytes / (1024.0 * 1024), (double) bytes / rows);
+    }
+
+    /**
+     * Возвращает объём занятой кучи после полной сборки мусора.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
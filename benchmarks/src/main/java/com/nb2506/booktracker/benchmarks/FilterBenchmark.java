@@ -0,0 +1,112 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.BookFilter;
+import com.nb2506.booktracker.Facet;
+import com.nb2506.booktracker.FacetIndex;
+import com.nb2506.booktracker.FacetSelection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки фильтрации списка книг в памяти — тех же шагов, что выполняет
+ * {@code MainController.applyFilters()}: отбор по строке поиска, пересечение с выбранными фасетами,
+ * подсчёт книг по значениям фасета и проход предиката по списку.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+    /** Количество книг в списке. */
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    /** Строка поиска; пустая строка — без поиска. */
+    @Param({"", "shadow", "тай"})
+    public String query;
+
+    /** Книги в порядке списка. */
+    private List<Book> books;
+
+    /** Индекс фасетов по книгам. */
+    private FacetIndex facetIndex;
+
+    /** Выбранные фасеты: два жанра и верхние интервалы оценки. */
+    private FacetSelection selection;
+
+    /** id книг, подходящих под строку поиска (null без поиска). */
+    private BitSet textMatches;
+
+    /**
+     * Создаёт книги, строит их ключи поиска и индекс фасетов.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        books = BenchmarkData.books(rows);
+        books.forEach(Book::getSearchKey);
+        facetIndex = new FacetIndex(books);
+        selection = FacetSelection.NONE
+                .with(Facet.GENRE, 0, true)
+                .with(Facet.GENRE, 1, true)
+                .with(Facet.RATING, 3, true)
+                .with(Facet.RATING, 4, true);
+        textMatches = textMatches();
+    }
+
+    /** Отбор книг по строке поиска. */
+    @Benchmark
+    public BitSet textFilter() {
+        return textMatches();
+    }
+
+    /** Пересечение битовых карт выбранных фасетов с результатом поиска. */
+    @Benchmark
+    public BitSet facetFilter() {
+        return facetIndex.match(selection, textMatches);
+    }
+
+    /** Подсчёт книг по значениям жанра для меню фасетов. */
+    @Benchmark
+    public int[] facetCounts() {
+        return facetIndex.counts(Facet.GENRE, selection, textMatches);
+    }
+
+    /** Полное применение фильтров: поиск, фасеты и проход предиката по списку. */
+    @Benchmark
+    public int applyFilters() {
+        BitSet text = textMatches();
+        BookFilter filter = BookFilter.ofIds(facetIndex.match(selection, text));
+        int visible = 0;
+        for (Book book : books) {
+            if (filter.test(book)) visible++;
+        }
+        return visible;
+    }
+
+    /**
+     * Отбирает id книг по строке поиска так же, как главное окно.
+     *
+     * @return id подходящих книг или null, если строка поиска пуста
+     */
+    private BitSet textMatches() {
+        BookFilter textFilter = BookFilter.of(query);
+        return textFilter.query().isEmpty() ? null : textFilter.matchingIds(books);
+    }
+}
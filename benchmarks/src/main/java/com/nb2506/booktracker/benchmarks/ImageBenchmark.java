@@ -0,0 +1,96 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.ImageHelper;
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки декодирования обложек разного размера: полное декодирование
+ * ({@link ImageHelper#toImage(byte[])}, {@link Book#getCoverAsImage()}) и декодирование
+ * сразу в размер панели информации ({@link ImageHelper#toImage(byte[], int, int)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+    /** Ширина области обложки в панели информации. */
+    private static final int VIEW_WIDTH = 200;
+
+    /** Высота области обложки в панели информации. */
+    private static final int VIEW_HEIGHT = 280;
+
+    /** Размер исходной обложки в пикселях, ширина x высота. */
+    @Param({"300x450", "1200x1800", "3000x4500"})
+    public String size;
+
+    /** Обложка в формате JPEG. */
+    private byte[] cover;
+
+    /** Книга с этой обложкой. */
+    private Book book;
+
+    /**
+     * Создаёт обложку заданного размера с шумом, чтобы размер JPEG был близок к настоящей фотографии.
+     *
+     * @throws IOException если изображение не удалось закодировать
+     */
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        String[] parts = size.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(BenchmarkData.SEED);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int shade = (x * 255 / width + y * 255 / height) / 2;
+                int noise = random.nextInt(32);
+                image.setRGB(x, y, (shade + noise) << 16 | shade << 8 | (255 - shade));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        cover = out.toByteArray();
+        book = new Book("Обложка", "Автор", 2000, 100, 5, 0, "Роман", cover);
+    }
+
+    /** Декодирование обложки в исходном размере. */
+    @Benchmark
+    public Image toImage() {
+        return ImageHelper.toImage(cover);
+    }
+
+    /** Декодирование обложки сразу в размер панели информации. */
+    @Benchmark
+    public Image toImageScaled() {
+        return ImageHelper.toImage(cover, VIEW_WIDTH, VIEW_HEIGHT);
+    }
+
+    /** Декодирование обложки через модель книги. */
+    @Benchmark
+    public Image getCoverAsImage() {
+        return book.getCoverAsImage();
+    }
+}
@@ -0,0 +1,120 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.Book;
+import com.nb2506.booktracker.DatabaseHelper;
+import com.nb2506.booktracker.LibraryGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки операций {@link DatabaseHelper} на базах с разным количеством книг.
+ * Каждый запуск работает с собственной копией заполненной базы (см. {@link BenchmarkData#copyOfLibrary(int)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    /** Количество книг в базе. */
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    /** Файл базы данных текущего запуска. */
+    private Path database;
+
+    /** Генератор случайных id и значений. */
+    private Random random;
+
+    /** Генератор добавляемых книг. */
+    private LibraryGenerator generator;
+
+    /**
+     * Книга, подготовленная к удалению вне измеряемого времени.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        /** id книги для удаления. */
+        int id;
+
+        /**
+         * Добавляет книгу, которую удалит следующий вызов бенчмарка.
+         *
+         * @param benchmark состояние бенчмарка с открытой базой
+         */
+        @Setup(Level.Invocation)
+        public void insert(PersistenceBenchmark benchmark) {
+            id = DatabaseHelper.insertBook(benchmark.generator.nextBook());
+        }
+    }
+
+    /**
+     * Открывает копию базы с {@link #rows} книгами.
+     */
+    @Setup(Level.Trial)
+    public void open() {
+        random = new Random(BenchmarkData.SEED);
+        generator = new LibraryGenerator(BenchmarkData.SEED + rows);
+        database = BenchmarkData.copyOfLibrary(rows);
+        BenchmarkData.open(database);
+    }
+
+    /**
+     * Закрывает соединения и удаляет копию базы.
+     */
+    @TearDown(Level.Trial)
+    public void close() {
+        DatabaseHelper.shutdown();
+        BenchmarkData.deleteDatabase(database);
+    }
+
+    /** Загрузка списка всех книг без обложек. */
+    @Benchmark
+    public List<Book> getAllBooks() {
+        return DatabaseHelper.getAllBooks();
+    }
+
+    /** Добавление одной книги в отдельной транзакции. */
+    @Benchmark
+    public int insertBook() {
+        return DatabaseHelper.insertBook(generator.nextBook());
+    }
+
+    /** Изменение рейтинга случайной книги: записывается только изменённый столбец. */
+    @Benchmark
+    public boolean updateBook() {
+        Book book = new Book(1 + random.nextInt(rows), "", "", 0, 0, -1, "", 0, false);
+        book.markClean();
+        book.setRating(random.nextInt(101) / 10.0);
+        return DatabaseHelper.updateBook(book);
+    }
+
+    /** Удаление книги вместе с её жанрами и обложкой. */
+    @Benchmark
+    public boolean deleteBookById(DeleteTarget target) {
+        return DatabaseHelper.deleteBookById(target.id);
+    }
+
+    /** Загрузка списка жанров, у которых есть книги. */
+    @Benchmark
+    public List<String> getAllGenres() {
+        return DatabaseHelper.getAllGenres();
+    }
+}
@@ -0,0 +1,133 @@
+package com.nb2506.booktracker.benchmarks;
+
+import com.nb2506.booktracker.DatabaseHelper;
+import com.nb2506.booktracker.StartupTrace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Замер времени запуска приложения в отдельных процессах. Это не бенчмарк JMH: каждый запуск — новая
+ * виртуальная машина, а время считается от создания процесса до этапов из отчёта {@link StartupTrace}
+ * (первый кадр, первые строки, весь список) и до завершения процесса.
+ * <p>
+ * По умолчанию запускается образ jlink {@code target/app/bin/app}; его можно собрать с архивом классов
+ * ({@code mvn -Pappcds clean package}) и сравнить с запуском без архива:
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar com.nb2506.booktracker.benchmarks.StartupBenchmark --runs 10
+ *   java -cp benchmarks/target/benchmarks.jar com.nb2506.booktracker.benchmarks.StartupBenchmark --runs 10 --no-cds
+ * </pre>
+ * Параметры виртуальной машины передаются запускаемой программе через переменную окружения
+ * {@code JDK_JAVA_OPTIONS}, поэтому вместо образа можно указать любую команду запуска с {@code java}
+ * после {@code --}. Для запуска нужен дисплей.
+ */
+public final class StartupBenchmark {
+    /** Команда запуска по умолчанию, относительно корня проекта. */
+    private static final List<String> DEFAULT_COMMAND = List.of("target/app/bin/app");
+
+    /** Количество замеров по умолчанию. */
+    private static final int DEFAULT_RUNS = 10;
+
+    /** Название замера времени завершения процесса. */
+    private static final String EXIT = "exit";
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * Выполняет замеры и выводит медиану, минимум и максимум для каждого этапа в миллисекундах.
+     *
+     * @param args {@code [--runs N] [--no-cds] [--db ФАЙЛ] [-- КОМАНДА...]}
+     * @throws IOException если процесс не удалось запустить
+     * @throws InterruptedException если ожидание процесса прервано
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = DEFAULT_RUNS;
+        List<String> options = new ArrayList<>();
+        options.add("-D" + StartupTrace.EXIT_PROPERTY + "=true");
+        List<String> command = DEFAULT_COMMAND;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--no-cds" -> options.add("-Xshare:off");
+                case "--db" -> options.add("-D" + DatabaseHelper.DB_PATH_PROPERTY + "=" + args[++i]);
+                case "--" -> {
+                    command = List.of(Arrays.copyOfRange(args, i + 1, args.length));
+                    i = args.length;
+                }
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+        }
+
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (StartupTrace.Phase phase : StartupTrace.Phase.values()) {
+            samples.put(phase.getKey(), new ArrayList<>());
+        }
+        samples.put(EXIT, new ArrayList<>());
+
+        System.out.println("Команда: " + String.join(" ", command) + ", JDK_JAVA_OPTIONS: " + String.join(" ", options));
+        for (int run = 1; run <= runs; run++) {
+            Map<String, Long> result = runOnce(command, options);
+            result.forEach((key, millis) -> samples.get(key).add(millis));
+            System.out.println("Запуск " + run + ": " + result);
+        }
+
+        System.out.println();
+        System.out.printf("%-14s %8s %8s %8s%n", "Этап, мс", "медиана", "мин", "макс");
+        for (Map.Entry<String, List<Long>> entry : samples.entrySet()) {
+            List<Long> values = entry.getValue();
+            if (values.isEmpty()) continue;
+            values.sort(null);
+            System.out.printf("%-14s %8d %8d %8d%n", entry.getKey(), values.get(values.size() / 2),
+                    values.getFirst(), values.getLast());
+        }
+    }
+
+    /**
+     * Запускает приложение один раз и ждёт его завершения.
+     *
+     * @return время этапов и завершения процесса в миллисекундах от создания процесса
+     * @throws IOException если процесс не удалось запустить или он не вывел отчёт о запуске
+     */
+    private static Map<String, Long> runOnce(List<String> command, List<String> options)
+            throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put("JDK_JAVA_OPTIONS", String.join(" ", options));
+        long spawned = System.currentTimeMillis();
+        Process process = builder.start();
+
+        String report = null;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(StartupTrace.REPORT_PREFIX)) {
+                    report = line;
+                }
+            }
+        }
+        int status = process.waitFor();
+        long exited = System.currentTimeMillis();
+        if (report == null) {
+            throw new IOException("Процесс завершился с кодом " + status + " без строки " + StartupTrace.REPORT_PREFIX);
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String field : report.substring(StartupTrace.REPORT_PREFIX.length()).trim().split(" ")) {
+            int eq = field.indexOf('=');
+            String key = field.substring(0, eq);
+            if (!key.equals("process")) {
+                result.put(key, Long.parseLong(field.substring(eq + 1)) - spawned);
+            }
+        }
+        result.put(EXIT, exited - spawned);
+        return result;
+    }
+}
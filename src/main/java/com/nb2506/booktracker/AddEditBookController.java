@@ -11,6 +11,7 @@ import javafx.stage.Stage;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -43,24 +44,26 @@ public class AddEditBookController {
     /** Компонент для отображения обложки книги. */
     @FXML private ImageView coverImageView;
 
+    /** Кнопка сохранения; блокируется, пока книга сохраняется. */
+    @FXML private Button saveButton;
+
     /** Массив байтов с данными изображения обложки книги. */
     private byte[] coverImageBytes;
 
+    /** Миниатюра выбранной обложки. */
+    private byte[] thumbnailBytes;
+
+    /** Признак того, что пользователь выбрал новую обложку; иначе при редактировании обложка не перезаписывается. */
+    private boolean coverChanged;
+
     /** Список чекбоксов для жанров, созданных динамически. */
     private final List<CheckBox> genreCheckboxes = new ArrayList<>();
 
     /** Текущая редактируемая книга, либо null при добавлении новой книги. */
     private Book currentBook;
 
-    /** Репозиторий для сохранения и загрузки книг из базы данных. */
-    private final BookRepository bookRepository = new DatabaseBookRepository();
-
-    /** Все доступные жанры для выбора. */
-    private static final String[] ALL_GENRES = {
-            "Фантастика", "Детектив", "Роман", "Научная литература",
-            "Биография", "Ужасы", "Приключения", "Фэнтези",
-            "Детская литература", "Готика", "Философия"
-    };
+    /** Репозиторий для сохранения и загрузки книг из базы данных вне потока JavaFX. */
+    private AsyncBookRepository bookRepository = new AsyncBookRepository();
 
     /**
      * Инициализация контроллера.
@@ -69,7 +72,7 @@ public class AddEditBookController {
      */
     @FXML
     private void initialize() {
-        for (String genre : ALL_GENRES) {
+        for (String genre : Genres.ALL) {
             CheckBox cb = new CheckBox(genre);
             genreCheckboxes.add(cb);
             checkboxContainer.getChildren().add(cb);
@@ -82,7 +85,8 @@ public class AddEditBookController {
 
     /**
      * Обработчик нажатия кнопки выбора обложки книги.
-     * Открывает диалог выбора файла, загружает и отображает выбранное изображение.
+     * Открывает диалог выбора файла, уменьшает выбранное изображение до ограничений
+     * {@link ImageHelper.CoverLimits#DEFAULT}, создаёт миниатюру и отображает обложку.
      */
     @FXML
     private void onChooseCover() {
@@ -95,8 +99,12 @@ public class AddEditBookController {
         File file = fileChooser.showOpenDialog(coverImageView.getScene().getWindow());
         if (file != null) {
             try {
-                coverImageBytes = ImageHelper.readImageFile(file);
-                Image img = ImageHelper.toImage(coverImageBytes);
+                ImageHelper.IngestedCover ingested = ImageHelper.ingestCover(ImageHelper.readImageFile(file));
+                coverImageBytes = ingested.cover();
+                thumbnailBytes = ingested.thumbnail();
+                coverChanged = true;
+                Image img = ImageHelper.toImage(coverImageBytes,
+                        (int) coverImageView.getFitWidth(), (int) coverImageView.getFitHeight());
                 coverImageView.setImage(img);
             } catch (IOException e) {
                 showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить изображение.");
@@ -104,6 +112,16 @@ public class AddEditBookController {
         }
     }
 
+    /**
+     * Устанавливает репозиторий, через который сохраняется книга.
+     * Позволяет главному окну показывать индикатор, пока книга сохраняется.
+     *
+     * @param bookRepository асинхронный репозиторий книг
+     */
+    public void setRepository(AsyncBookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
     /**
      * Устанавливает книгу для редактирования.
      * Заполняет поля формы данными книги, если она не null.
@@ -129,38 +147,62 @@ public class AddEditBookController {
         pagesField.setText(String.valueOf(book.getPages()));
         ratingField.setText(String.valueOf(book.getRating()));
         currentPageField.setText(String.valueOf(book.getCurrentPage()));
-        coverImageBytes = book.getCover();
+        int width = (int) coverImageView.getFitWidth();
+        int height = (int) coverImageView.getFitHeight();
+        if (book.isCoverLoaded()) {
+            coverImageBytes = book.getCover();
+            showCover(ImageHelper.toImage(coverImageBytes, width, height));
+        } else if (book.hasCover()) {
+            bookRepository.loadCoverImage(book.getId(), width, height).thenAccept(image -> {
+                if (!coverChanged) {
+                    showCover(image);
+                }
+            });
+        }
+
+        markSelectedGenres(book.getGenres());
+    }
 
-        Image coverImage = ImageHelper.toImage(coverImageBytes);
+    /**
+     * Показывает обложку редактируемой книги.
+     *
+     * @param coverImage изображение обложки или null
+     */
+    private void showCover(Image coverImage) {
         if (coverImage != null) {
             coverImageView.setImage(coverImage);
         }
-
-        markSelectedGenres(book.getGenres());
     }
 
     /**
      * Обработчик нажатия кнопки сохранения книги.
      * Валидирует введённые данные, создает или обновляет книгу в репозитории.
+     * Сохранение выполняется в фоне; окно закрывается, когда оно завершится.
      */
     @FXML
     private void onSave() {
         if (!validateInput()) return;
 
         Book book = buildBookFromInput();
-        try {
-            if (currentBook == null) {
-                bookRepository.insert(book);
+        boolean adding = currentBook == null;
+        if (!adding) {
+            book.setId(currentBook.getId());
+        }
+        saveButton.setDisable(true);
+        CompletableFuture<Void> saving = adding ? bookRepository.insert(book) : bookRepository.update(book);
+        saving.whenComplete((_, error) -> {
+            saveButton.setDisable(false);
+            if (error != null) {
+                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось сохранить книгу.");
+                return;
+            }
+            if (adding) {
                 showAlert(Alert.AlertType.INFORMATION, "Книга добавлена", "Книга успешно добавлена!");
             } else {
-                book.setId(currentBook.getId());
-                bookRepository.update(book);
                 showAlert(Alert.AlertType.INFORMATION, "Книга обновлена", "Книга успешно обновлена!");
             }
             onCancel();
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось сохранить книгу.");
-        }
+        });
     }
 
     /**
@@ -226,6 +268,9 @@ public class AddEditBookController {
 
     /**
      * Создаёт объект книги на основе данных, введённых в форму.
+     * При редактировании поля переносятся в копию исходной книги, поэтому при сохранении
+     * перезаписываются только действительно изменённые поля; обложка, которая не менялась,
+     * не загружается в объект книги и не перезаписывается.
      *
      * @return объект Book с заполненными полями
      */
@@ -243,6 +288,22 @@ public class AddEditBookController {
                 .collect(Collectors.toList());
         String genres = String.join(",", selectedGenres);
 
+        if (currentBook != null) {
+            Book book = currentBook.copyWithoutCover();
+            book.setTitle(title);
+            book.setAuthor(author);
+            book.setYear(year);
+            book.setPages(pages);
+            book.setRating(rating);
+            book.setCurrentPage(currentPage);
+            book.setGenres(genres);
+            if (coverChanged) {
+                book.setCover(coverImageBytes);
+                book.setThumbnail(thumbnailBytes);
+            }
+            return book;
+        }
+
         Book book = new Book(title, author, year, pages, rating, currentPage, genres, coverImageBytes);
         book.setTitle(title);
         book.setAuthor(author);
@@ -252,6 +313,7 @@ public class AddEditBookController {
         book.setCurrentPage(currentPage);
         book.setGenres(genres);
         book.setCover(coverImageBytes);
+        book.setThumbnail(thumbnailBytes);
         return book;
     }
 
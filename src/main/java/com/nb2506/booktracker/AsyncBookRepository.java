@@ -0,0 +1,486 @@
+package com.nb2506.booktracker;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.scene.image.Image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронная обёртка над {@link BookRepository} и запросами {@link DatabaseHelper}.
+ * Вся работа с JDBC выполняется вне потока JavaFX:
+ * <ul>
+ *     <li>изменения — в единственном потоке записи, поэтому они выполняются строго по очереди,
+ *     как и запись через единственное соединение {@link ConnectionManager};</li>
+ *     <li>чтения — в небольшом пуле потоков по числу читающих соединений.</li>
+ * </ul>
+ * Результаты передаются через исполнитель обратного вызова (по умолчанию {@link Platform#runLater}),
+ * поэтому продолжения {@code thenAccept} и {@code whenComplete} выполняются в потоке JavaFX.
+ * <p>
+ * Очереди обоих пулов ограничены {@link #QUEUE_CAPACITY} задачами: при переполнении новая операция
+ * сразу завершается с {@link RejectedExecutionException}, а не копится без предела.
+ * Отменённая через {@link CompletableFuture#cancel(boolean)} операция, которая ещё не начала
+ * выполняться, пропускается; уже выполняющийся запрос доводится до конца, но его результат отбрасывается.
+ */
+public class AsyncBookRepository {
+    /** Максимальное количество операций, ожидающих выполнения в одной очереди. */
+    static final int QUEUE_CAPACITY = 64;
+
+    /** Количество потоков чтения; совпадает с размером пула читающих соединений. */
+    private static final int READER_THREADS = 3;
+
+    /** Поток, выполняющий все изменения по очереди. */
+    private static final ThreadPoolExecutor WRITER = newExecutor("book-writer", 1);
+
+    /** Потоки, выполняющие запросы на чтение. */
+    private static final ThreadPoolExecutor READERS = newExecutor("book-reader", READER_THREADS);
+
+    /** Кэш декодированных обложек, общий для всех окон; сбрасывается по событиям изменения книг. */
+    private static final CoverCache COVERS = new CoverCache();
+
+    /** Кэш статистики библиотеки; сбрасывается по событиям изменения нужных полей книг. */
+    private static final LibraryStatistics STATISTICS = new LibraryStatistics();
+
+    /** Подготовка схемы базы данных; null, пока подготовка не запущена. */
+    private static CompletableFuture<Void> schemaReady;
+
+    static {
+        BookChangeNotifier.addListener(COVERS::onBookChanged);
+        BookChangeNotifier.addListener(STATISTICS::onBookChanged);
+        Metrics.gauge("cover.cache.hits", COVERS::getHits);
+        Metrics.gauge("cover.cache.misses", COVERS::getMisses);
+        Metrics.gauge("cover.cache.evictions", COVERS::getEvictions);
+        Metrics.gauge("cover.cache.bytes", COVERS::getCurrentBytes);
+        Metrics.gauge("statistics.cache.hits", STATISTICS::getHits);
+        Metrics.gauge("statistics.cache.misses", STATISTICS::getMisses);
+    }
+
+    /** Синхронный репозиторий, которому передаются изменения. */
+    private final BookRepository delegate;
+
+    /** Исполнитель, в котором завершаются возвращаемые операции. */
+    private final Executor callbackExecutor;
+
+    /** Количество незавершённых операций этого репозитория. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Признак того, что есть незавершённые операции; обновляется в исполнителе обратного вызова. */
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+
+    /**
+     * Создаёт асинхронный репозиторий над базой данных, возвращающий результаты в поток JavaFX.
+     */
+    public AsyncBookRepository() {
+        this(new DatabaseBookRepository(), Platform::runLater);
+    }
+
+    /**
+     * Создаёт асинхронный репозиторий.
+     *
+     * @param delegate синхронный репозиторий для изменений
+     * @param callbackExecutor исполнитель, в котором завершаются операции
+     */
+    public AsyncBookRepository(BookRepository delegate, Executor callbackExecutor) {
+        this.delegate = delegate;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Признак выполнения операций, например для индикатора загрузки.
+     *
+     * @return свойство, равное true, пока есть незавершённые операции
+     */
+    public ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /**
+     * Добавляет книгу.
+     *
+     * @param book книга для добавления; после завершения ей присвоен id
+     * @return операция добавления
+     */
+    public CompletableFuture<Void> insert(Book book) {
+        return submit(WRITER, () -> {
+            delegate.insert(book);
+            return null;
+        });
+    }
+
+    /**
+     * Добавляет книги одной транзакцией.
+     *
+     * @param books книги для добавления
+     * @return операция, возвращающая id добавленных книг
+     */
+    public CompletableFuture<List<Integer>> insertAll(Iterable<Book> books) {
+        return submit(WRITER, () -> delegate.insertAll(books));
+    }
+
+    /**
+     * Обновляет книгу.
+     *
+     * @param book книга с обновлёнными данными
+     * @return операция обновления
+     */
+    public CompletableFuture<Void> update(Book book) {
+        return submit(WRITER, () -> {
+            delegate.update(book);
+            return null;
+        });
+    }
+
+    /**
+     * Обновляет только текущую страницу книги.
+     *
+     * @param id идентификатор книги
+     * @param currentPage новая текущая страница
+     * @return операция обновления
+     */
+    public CompletableFuture<Void> updateProgress(int id, int currentPage) {
+        return submit(WRITER, () -> {
+            delegate.updateProgress(id, currentPage);
+            return null;
+        });
+    }
+
+    /**
+     * Обновляет только рейтинг книги.
+     *
+     * @param id идентификатор книги
+     * @param rating новый рейтинг
+     * @return операция обновления
+     */
+    public CompletableFuture<Void> updateRating(int id, double rating) {
+        return submit(WRITER, () -> {
+            delegate.updateRating(id, rating);
+            return null;
+        });
+    }
+
+    /**
+     * Удаляет книгу.
+     *
+     * @param book удаляемая книга
+     * @return операция удаления
+     */
+    public CompletableFuture<Void> delete(Book book) {
+        return submit(WRITER, () -> {
+            delegate.delete(book);
+            return null;
+        });
+    }
+
+    /**
+     * Запускает подготовку базы данных ({@link DatabaseHelper#createTable()}: открытие соединений,
+     * создание таблиц и миграции) в потоке записи, если она ещё не запущена. Вызывается как можно раньше
+     * при запуске, чтобы подготовка шла одновременно с загрузкой FXML и показом окна; чтения,
+     * выполняемые при запуске, нужно начинать после завершения возвращённой операции.
+     * <p>
+     * Операция общая для всех репозиториев и завершается в потоке записи.
+     *
+     * @return операция подготовки базы данных
+     */
+    public static synchronized CompletableFuture<Void> prepareDatabase() {
+        if (schemaReady == null) {
+            schemaReady = CompletableFuture.runAsync(() -> {
+                DatabaseHelper.createTable();
+                StartupTrace.mark(StartupTrace.Phase.SCHEMA_READY);
+            }, WRITER);
+        }
+        return schemaReady;
+    }
+
+    /**
+     * Загружает все книги без обложек частями, чтобы список можно было заполнять постепенно:
+     * первая часть небольшая и появляется быстро, остальные читаются по ключу сортировки
+     * ({@link DatabaseHelper#getBooksAfter}) одна за другой. Каждая часть передаётся получателю
+     * в исполнителе обратного вызова; ключи поиска книг строятся в потоке чтения.
+     * После отмены возвращённой операции (именно её, а не зависимой стадии) оставшиеся части
+     * не читаются и не передаются.
+     *
+     * @param sort порядок сортировки
+     * @param firstChunk количество книг в первой части
+     * @param chunkSize количество книг в остальных частях
+     * @param chunkConsumer получатель частей
+     * @return операция, возвращающая общее количество загруженных книг
+     */
+    public CompletableFuture<Integer> loadInChunks(BookSort sort, int firstChunk, int chunkSize,
+                                                   Consumer<List<Book>> chunkConsumer) {
+        BookQuery query = new BookQuery("", FacetSelection.NONE, sort);
+        AtomicReference<CompletableFuture<Integer>> self = new AtomicReference<>();
+        CompletableFuture<Integer> future = submit(READERS, () -> {
+            int total = 0;
+            List<Book> chunk = DatabaseHelper.getBooksAt(query, 0, firstChunk);
+            int limit = firstChunk;
+            while (true) {
+                chunk.forEach(Book::getSearchKey);
+                total += chunk.size();
+                deliverChunk(self, chunk, chunkConsumer);
+                CompletableFuture<Integer> current = self.get();
+                if (chunk.size() < limit || (current != null && current.isDone())) break;
+                chunk = DatabaseHelper.getBooksAfter(query, chunk.getLast(), chunkSize);
+                limit = chunkSize;
+            }
+            return total;
+        });
+        self.set(future);
+        return future;
+    }
+
+    /**
+     * Выполняет полнотекстовый поиск ({@link DatabaseHelper#searchBooks}) в потоке чтения и передаёт
+     * найденные книги без обложек получателю частями по мере чтения, начиная с самых релевантных.
+     * Части передаются в исполнителе обратного вызова. После отмены возвращённой операции чтение
+     * результатов прекращается, а ещё не переданные части отбрасываются.
+     *
+     * @param query условия выборки с заданной строкой поиска
+     * @param limit наибольшее количество результатов
+     * @param chunkSize количество книг в одной части
+     * @param chunkConsumer получатель частей
+     * @return операция, возвращающая количество найденных книг
+     */
+    public CompletableFuture<Integer> searchInChunks(BookQuery query, int limit, int chunkSize,
+                                                     Consumer<List<Book>> chunkConsumer) {
+        AtomicReference<CompletableFuture<Integer>> self = new AtomicReference<>();
+        CompletableFuture<Integer> future = submit(READERS, () -> {
+            int[] total = {0};
+            List<Book> chunk = new ArrayList<>(chunkSize);
+            DatabaseHelper.searchBooks(query, limit, book -> {
+                CompletableFuture<Integer> current = self.get();
+                if (current != null && current.isDone()) return false;
+                chunk.add(book);
+                total[0]++;
+                if (chunk.size() == chunkSize) {
+                    deliverChunk(self, List.copyOf(chunk), chunkConsumer);
+                    chunk.clear();
+                }
+                return true;
+            });
+            if (!chunk.isEmpty()) {
+                deliverChunk(self, List.copyOf(chunk), chunkConsumer);
+            }
+            return total[0];
+        });
+        self.set(future);
+        return future;
+    }
+
+    /**
+     * Передаёт часть книг получателю в исполнителе обратного вызова, если операция, читающая части,
+     * к этому моменту не отменена.
+     *
+     * @param operation операция, читающая части
+     * @param chunk часть книг
+     * @param chunkConsumer получатель частей
+     */
+    private void deliverChunk(AtomicReference<CompletableFuture<Integer>> operation, List<Book> chunk,
+                              Consumer<List<Book>> chunkConsumer) {
+        callbackExecutor.execute(() -> {
+            CompletableFuture<Integer> current = operation.get();
+            if (current == null || !current.isDone()) {
+                chunkConsumer.accept(chunk);
+            }
+        });
+    }
+
+    /**
+     * Загружает все книги без обложек в порядке добавления.
+     *
+     * @return операция, возвращающая список книг
+     */
+    public CompletableFuture<List<Book>> loadAll() {
+        return loadAll(BookSort.ADDED);
+    }
+
+    /**
+     * Загружает все книги без обложек, отсортированные в базе данных.
+     * Ключи поиска книг строятся здесь же, в потоке чтения, чтобы первая фильтрация
+     * в потоке JavaFX не тратила на это время.
+     *
+     * @param sort порядок сортировки
+     * @return операция, возвращающая список книг
+     */
+    public CompletableFuture<List<Book>> loadAll(BookSort sort) {
+        return submit(READERS, () -> {
+            List<Book> books = DatabaseHelper.getAllBooks(sort);
+            books.forEach(Book::getSearchKey);
+            return books;
+        });
+    }
+
+    /**
+     * Загружает одно окно книг без обложек: по ключу сортировки, если известна последняя книга
+     * предыдущего окна, иначе по смещению.
+     *
+     * @param query условия выборки
+     * @param after последняя книга предыдущего окна или null
+     * @param offset смещение окна, если ключ неизвестен
+     * @param limit количество книг в окне
+     * @return операция, возвращающая книги окна
+     */
+    public CompletableFuture<List<Book>> loadPage(BookQuery query, Book after, int offset, int limit) {
+        return submit(READERS, () -> after != null
+                ? DatabaseHelper.getBooksAfter(query, after, limit)
+                : DatabaseHelper.getBooksAt(query, offset, limit));
+    }
+
+    /**
+     * Загружает одну книгу без обложки.
+     *
+     * @param id идентификатор книги
+     * @return операция, возвращающая книгу или null, если её нет
+     */
+    public CompletableFuture<Book> getBookById(int id) {
+        return submit(READERS, () -> DatabaseHelper.getBookById(id));
+    }
+
+    /**
+     * Считает книги, удовлетворяющие условиям.
+     *
+     * @param query условия выборки
+     * @return операция, возвращающая количество книг
+     */
+    public CompletableFuture<Integer> count(BookQuery query) {
+        return submit(READERS, () -> DatabaseHelper.countBooks(query));
+    }
+
+    /**
+     * Загружает статистику библиотеки. Показатели, не сброшенные с прошлого раза, берутся из кэша.
+     *
+     * @return операция, возвращающая снимок статистики
+     */
+    public CompletableFuture<LibraryStatistics.Snapshot> loadStatistics() {
+        return submit(READERS, STATISTICS::snapshot);
+    }
+
+    /**
+     * Загружает обложку книги.
+     *
+     * @param id идентификатор книги
+     * @return операция, возвращающая обложку в виде массива байт или null
+     */
+    public CompletableFuture<byte[]> loadCover(int id) {
+        return submit(READERS, () -> DatabaseHelper.getCoverById(id));
+    }
+
+    /**
+     * Возвращает обложку книги, декодированную в заданный размер.
+     * Обложка берётся из {@link CoverCache}; при промахе она читается из базы
+     * и декодируется в потоке чтения, а затем сохраняется в кэш, если книга не изменилась за время чтения.
+     * Если заданный размер не больше миниатюры, читается миниатюра, а полная обложка — только когда миниатюры нет.
+     *
+     * @param id идентификатор книги
+     * @param width ширина области отображения
+     * @param height высота области отображения
+     * @return операция, возвращающая изображение или null, если обложки нет
+     */
+    public CompletableFuture<Image> loadCoverImage(int id, int width, int height) {
+        Image cached = COVERS.get(id, width, height);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long version = COVERS.version(id);
+        return submit(READERS, () -> {
+            byte[] bytes = Math.max(width, height) <= ImageHelper.CoverLimits.DEFAULT.thumbnailDimension()
+                    ? DatabaseHelper.getThumbnailById(id)
+                    : null;
+            Image image = bytes != null
+                    ? ImageHelper.toImage(bytes, width, height)
+                    : ImageHelper.toImage(DatabaseHelper.getCoverBufferById(id), width, height);
+            if (image != null && !image.isError()) {
+                COVERS.put(id, version, width, height, image);
+            }
+            return image;
+        });
+    }
+
+    /**
+     * Возвращает общий кэш обложек, например для просмотра его счётчиков.
+     *
+     * @return кэш обложек
+     */
+    public static CoverCache coverCache() {
+        return COVERS;
+    }
+
+    /**
+     * Возвращает общий кэш статистики, например для просмотра его счётчиков.
+     *
+     * @return кэш статистики
+     */
+    public static LibraryStatistics statistics() {
+        return STATISTICS;
+    }
+
+    /**
+     * Ставит операцию в очередь исполнителя.
+     * Результат и ошибка передаются в исполнитель обратного вызова.
+     *
+     * @param executor исполнитель операции
+     * @param work операция
+     * @param <T> тип результата
+     * @return незавершённая операция
+     */
+    private <T> CompletableFuture<T> submit(ThreadPoolExecutor executor, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (inFlight.getAndIncrement() == 0) {
+            callbackExecutor.execute(this::updateBusy);
+        }
+        future.whenComplete((_, _) -> {
+            if (inFlight.decrementAndGet() == 0) {
+                callbackExecutor.execute(this::updateBusy);
+            }
+        });
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) return;
+                try {
+                    T result = work.get();
+                    callbackExecutor.execute(() -> future.complete(result));
+                } catch (RuntimeException e) {
+                    callbackExecutor.execute(() -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Обновляет признак выполнения операций по текущему счётчику.
+     */
+    private void updateBusy() {
+        busy.set(inFlight.get() > 0);
+    }
+
+    /**
+     * Создаёт пул потоков-демонов с ограниченной очередью.
+     *
+     * @param name имя потоков
+     * @param threads количество потоков
+     * @return исполнитель, отклоняющий задачи при переполненной очереди
+     */
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, threads == 1 ? name : name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -2,12 +2,42 @@ package com.nb2506.booktracker;
 
 import javafx.scene.image.Image;
 import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Модель книги с основными полями: название, автор, год издания, количество страниц, рейтинг,
  * жанры, текущая прочитанная страница и обложка в виде массива байт.
+ * <p>
+ * Книга отслеживает поля, изменённые после загрузки из базы данных ({@link #getDirtyFields()}),
+ * чтобы при сохранении перезаписывались только они. Книга, созданная в коде, считается изменённой
+ * целиком; книга, прочитанная из базы, — неизменённой.
  */
 public class Book {
+    /** Сохраняемые поля книги, изменения которых отслеживаются. */
+    public enum Field {
+        /** Название. */
+        TITLE,
+        /** Автор. */
+        AUTHOR,
+        /** Год издания. */
+        YEAR,
+        /** Количество страниц. */
+        PAGES,
+        /** Рейтинг. */
+        RATING,
+        /** Жанры. */
+        GENRES,
+        /** Текущая страница. */
+        CURRENT_PAGE,
+        /** Обложка вместе с миниатюрой. */
+        COVER
+    }
+
+    /** Маска всех полей. */
+    private static final int ALL_FIELDS = (1 << Field.values().length) - 1;
+
     /** Уникальный идентификатор книги в базе данных. */
     private int id;
 
@@ -32,9 +62,27 @@ public class Book {
     /** Текущая страница, на которой находится читатель. */
     private int currentPage;
 
-    /** Обложка книги в виде массива байт. Может быть null, если обложка отсутствует. */
+    /** Обложка книги в виде массива байт. Может быть null, если обложка отсутствует или ещё не загружена. */
     private byte[] cover;
 
+    /** Миниатюра обложки в виде массива байт. Может быть null, если миниатюры нет или она не загружена. */
+    private byte[] thumbnail;
+
+    /** Ключи поиска; строятся при первом обращении и сбрасываются при изменении названия, автора или жанров. */
+    private BookSearchKey searchKey;
+
+    /** Признак того, что обложка загружена из базы данных (или задана явно). */
+    private boolean coverLoaded;
+
+    /** Признак наличия обложки в базе данных; используется, пока обложка не загружена. */
+    private boolean hasCover;
+
+    /** Время последнего сохранения книги в миллисекундах с начала эпохи (0, если неизвестно). */
+    private long updatedAt;
+
+    /** Маска полей, изменённых после загрузки из базы данных, по порядковым номерам {@link Field}. */
+    private int dirtyFields = ALL_FIELDS;
+
     /**
      * Полный конструктор книги с указанием id.
      *
@@ -58,7 +106,35 @@ public class Book {
         this.rating = rating;
         this.genres = genres;
         this.currentPage = currentPage;
-        this.cover = cover;
+        setCover(cover);
+    }
+
+    /**
+     * Конструктор книги без загруженной обложки, используется при загрузке списка книг.
+     * Обложка подгружается отдельно по id, когда она действительно нужна.
+     *
+     * @param id уникальный идентификатор книги
+     * @param title название книги
+     * @param author автор книги
+     * @param year год издания
+     * @param pages общее количество страниц
+     * @param rating рейтинг книги
+     * @param genres жанры книги через запятую
+     * @param currentPage текущая прочитанная страница
+     * @param hasCover есть ли у книги обложка в базе данных
+     */
+    public Book(int id, String title, String author, int year, int pages,
+                double rating, String genres, int currentPage, boolean hasCover) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.year = year;
+        this.pages = pages;
+        this.rating = rating;
+        this.genres = genres;
+        this.currentPage = currentPage;
+        this.hasCover = hasCover;
+        this.dirtyFields = ALL_FIELDS & ~mask(Field.COVER);
     }
 
     /**
@@ -81,7 +157,7 @@ public class Book {
         this.rating = rating;
         this.genres = genres;
         this.currentPage = currentPage;
-        this.cover = cover;
+        setCover(cover);
     }
 
     /** Возвращает уникальный идентификатор книги. */
@@ -108,9 +184,74 @@ public class Book {
     /** Возвращает текущую прочитанную страницу. */
     public int getCurrentPage() { return currentPage; }
 
-    /** Возвращает байтовый массив с обложкой книги. Может быть null. */
+    /**
+     * Возвращает байтовый массив с обложкой книги.
+     * Может быть null, если обложки нет или она ещё не загружена (см. {@link #isCoverLoaded()}).
+     */
     public byte[] getCover() { return cover; }
 
+    /** Возвращает миниатюру обложки или null, если её нет. */
+    public byte[] getThumbnail() { return thumbnail; }
+
+    /** Возвращает true, если обложка загружена и {@link #getCover()} отражает её актуальное значение. */
+    public boolean isCoverLoaded() { return coverLoaded; }
+
+    /** Возвращает true, если у книги есть обложка, независимо от того, загружена ли она. */
+    public boolean hasCover() { return hasCover; }
+
+    /** Возвращает время последнего сохранения книги в миллисекундах. */
+    public long getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Возвращает поля, изменённые после загрузки книги из базы данных или последнего сохранения.
+     * Обложка, которая не загружена, в этот набор не входит.
+     *
+     * @return новый набор изменённых полей
+     */
+    public Set<Field> getDirtyFields() {
+        Set<Field> fields = EnumSet.noneOf(Field.class);
+        for (Field field : Field.values()) {
+            if ((dirtyFields & mask(field)) != 0) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /** Возвращает true, если у книги есть несохранённые изменения. */
+    public boolean isDirty() { return dirtyFields != 0; }
+
+    /**
+     * Помечает все поля как сохранённые. Вызывается после чтения книги из базы данных
+     * и после её успешного сохранения.
+     */
+    public void markClean() {
+        dirtyFields = 0;
+    }
+
+    /**
+     * Возвращает долю прочитанных страниц; совпадает с вычисляемым столбцом books.progress.
+     *
+     * @return значение от 0 до 1 (0, если количество страниц неизвестно)
+     */
+    public double getProgress() {
+        return pages > 0 ? Math.min(1.0, (double) currentPage / pages) : 0.0;
+    }
+
+    /**
+     * Возвращает предварительно вычисленные ключи поиска книги, строя их при первом обращении.
+     *
+     * @return ключи поиска
+     */
+    public BookSearchKey getSearchKey() {
+        BookSearchKey key = searchKey;
+        if (key == null) {
+            key = BookSearchKey.of(this);
+            searchKey = key;
+        }
+        return key;
+    }
+
     /** Устанавливает уникальный идентификатор книги. */
     public void setId(int id) {
         this.id = id;
@@ -118,53 +259,111 @@ public class Book {
 
     /** Устанавливает название книги. */
     public void setTitle(String title) {
+        if (!Objects.equals(this.title, title)) markDirty(Field.TITLE);
         this.title = title;
+        this.searchKey = null;
     }
 
     /** Устанавливает автора книги. */
     public void setAuthor(String author) {
+        if (!Objects.equals(this.author, author)) markDirty(Field.AUTHOR);
         this.author = author;
+        this.searchKey = null;
     }
 
     /** Устанавливает год издания книги. */
     public void setYear(int year) {
+        if (this.year != year) markDirty(Field.YEAR);
         this.year = year;
     }
 
     /** Устанавливает количество страниц в книге. */
     public void setPages(int pages) {
+        if (this.pages != pages) markDirty(Field.PAGES);
         this.pages = pages;
     }
 
     /** Устанавливает рейтинг книги. */
     public void setRating(double rating) {
+        if (Double.compare(this.rating, rating) != 0) markDirty(Field.RATING);
         this.rating = rating;
     }
 
     /** Устанавливает жанры книги. */
     public void setGenres(String genres) {
+        if (!Objects.equals(this.genres, genres)) markDirty(Field.GENRES);
         this.genres = genres;
+        this.searchKey = null;
     }
 
     /** Устанавливает текущую прочитанную страницу. */
     public void setCurrentPage(int currentPage) {
+        if (this.currentPage != currentPage) markDirty(Field.CURRENT_PAGE);
         this.currentPage = currentPage;
     }
 
-    /** Устанавливает обложку книги. */
+    /** Устанавливает обложку книги и помечает её как загруженную. Миниатюра прежней обложки сбрасывается. */
     public void setCover(byte[] cover) {
+        markDirty(Field.COVER);
         this.cover = cover;
+        this.thumbnail = null;
+        this.coverLoaded = true;
+        this.hasCover = cover != null && cover.length > 0;
+    }
+
+    /** Устанавливает миниатюру обложки, соответствующую текущей обложке. */
+    public void setThumbnail(byte[] thumbnail) {
+        markDirty(Field.COVER);
+        this.thumbnail = thumbnail;
+    }
+
+    /** Устанавливает время последнего сохранения книги. */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Создаёт копию книги без загруженной обложки (сохраняется только признак её наличия).
+     * Используется для элементов списка, которые не должны удерживать обложки в памяти.
+     *
+     * @return копия книги без обложки
+     */
+    public Book copyWithoutCover() {
+        Book copy = new Book(id, title, author, year, pages, rating, genres, currentPage, hasCover);
+        copy.updatedAt = updatedAt;
+        copy.dirtyFields = dirtyFields & ~mask(Field.COVER);
+        return copy;
+    }
+
+    /**
+     * Помечает поле как изменённое.
+     *
+     * @param field поле
+     */
+    private void markDirty(Field field) {
+        dirtyFields |= mask(field);
+    }
+
+    /**
+     * Возвращает бит поля в маске изменённых полей.
+     *
+     * @param field поле
+     * @return маска с единственным битом
+     */
+    private static int mask(Field field) {
+        return 1 << field.ordinal();
     }
 
     /**
      * Возвращает обложку книги в виде объекта {@link Image} для отображения в JavaFX.
-     * Если обложка отсутствует, возвращает null.
+     * Если обложка отсутствует или ещё не загружена, возвращает null.
      *
-     * @return объект Image с обложкой книги или null, если обложка отсутствует
+     * @return объект Image с обложкой книги или null, если обложка отсутствует или не загружена
      */
     public Image getCoverAsImage() {
         if (cover != null && cover.length > 0) {
-            return new Image(new ByteArrayInputStream(cover));
+            CoverDecodeEvent event = CoverDecodeEvent.start("Book.getCoverAsImage", cover.length, 0, 0);
+            return event.finish(new Image(new ByteArrayInputStream(cover)));
         }
         return null;
     }
@@ -0,0 +1,108 @@
+package com.nb2506.booktracker;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Событие изменения книги в хранилище.
+ * Позволяет обновить в интерфейсе только изменившуюся книгу вместо перечитывания всего списка.
+ *
+ * @param type тип изменения
+ * @param id идентификатор изменённой книги (0 для {@link Type#RELOADED})
+ * @param book книга после изменения без обложки или null, если её нужно перечитать по id
+ *             (для удаления и изменений, сделанных в обход репозитория)
+ * @param fields изменённые поля книги; все поля, если изменение затрагивает книгу целиком
+ *               или состав изменений неизвестен
+ */
+public record BookChange(Type type, int id, Book book, Set<Book.Field> fields) {
+    /** Все поля книги. */
+    private static final Set<Book.Field> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(Book.Field.class));
+
+    /** Тип изменения. */
+    public enum Type {
+        /** Книга добавлена. */
+        INSERTED,
+        /** Книга изменена. */
+        UPDATED,
+        /** Книга удалена. */
+        DELETED,
+        /** Изменено сразу много книг (например, массовый импорт); список нужно перечитать целиком. */
+        RELOADED
+    }
+
+    /**
+     * Создаёт событие, затрагивающее все поля книги.
+     *
+     * @param type тип изменения
+     * @param id идентификатор книги
+     * @param book книга после изменения или null
+     */
+    public BookChange(Type type, int id, Book book) {
+        this(type, id, book, ALL_FIELDS);
+    }
+
+    /**
+     * Проверяет, затрагивает ли событие хотя бы одно из полей.
+     *
+     * @param relevant интересующие поля
+     * @return true, если хотя бы одно из полей могло измениться
+     */
+    public boolean touches(Set<Book.Field> relevant) {
+        for (Book.Field field : relevant) {
+            if (fields.contains(field)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Создаёт событие добавления книги.
+     *
+     * @param book добавленная книга с присвоенным id
+     * @return событие
+     */
+    public static BookChange inserted(Book book) {
+        return new BookChange(Type.INSERTED, book.getId(), book.copyWithoutCover());
+    }
+
+    /**
+     * Создаёт событие изменения книги.
+     *
+     * @param book изменённая книга
+     * @return событие
+     */
+    public static BookChange updated(Book book) {
+        return new BookChange(Type.UPDATED, book.getId(), book.copyWithoutCover());
+    }
+
+    /**
+     * Создаёт событие изменения отдельных полей книги.
+     *
+     * @param book изменённая книга
+     * @param fields изменённые поля
+     * @return событие
+     */
+    public static BookChange updated(Book book, Set<Book.Field> fields) {
+        Set<Book.Field> changed = fields.isEmpty() ? EnumSet.noneOf(Book.Field.class) : EnumSet.copyOf(fields);
+        return new BookChange(Type.UPDATED, book.getId(), book.copyWithoutCover(), Collections.unmodifiableSet(changed));
+    }
+
+    /**
+     * Создаёт событие удаления книги.
+     *
+     * @param id идентификатор удалённой книги
+     * @return событие
+     */
+    public static BookChange deleted(int id) {
+        return new BookChange(Type.DELETED, id, null);
+    }
+
+    /**
+     * Создаёт событие изменения многих книг сразу.
+     *
+     * @return событие
+     */
+    public static BookChange reloaded() {
+        return new BookChange(Type.RELOADED, 0, null);
+    }
+}
@@ -0,0 +1,195 @@
+package com.nb2506.booktracker;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Рассылка событий {@link BookChange} подписчикам.
+ * <p>
+ * Основной источник событий — {@link DatabaseBookRepository}, который сообщает о каждой
+ * своей операции вместе с изменённой книгой. Для изменений таблицы books в обход репозитория
+ * (прямые вызовы {@link DatabaseHelper}, служебные задачи) на соединение для записи ставится
+ * обработчик обновлений SQLite: такие изменения копятся до фиксации транзакции и рассылаются
+ * только id, без книги. Обработчик фиксации SQLite вызывается до того, как изменения станут видны
+ * другим соединениям, поэтому он лишь откладывает изменения, а рассылает их {@link #publishCommitted()}
+ * после завершения операции записи ({@link ConnectionManager#setAfterWrite(Runnable)}).
+ * Если изменений в транзакции больше {@value #MAX_PENDING}, они перестают копиться, а после фиксации
+ * рассылается одно событие {@link BookChange.Type#RELOADED}, поэтому память не зависит от размера
+ * транзакции (импорт, миграции). При откате транзакции накопленные изменения отбрасываются.
+ * <p>
+ * События рассылаются в потоке, выполнившем запись.
+ */
+public final class BookChangeNotifier {
+    /** Подписчики на события. */
+    private static final List<Consumer<BookChange>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    /** Глубина вложенности операций репозитория в текущем потоке; пока она больше нуля, события от SQLite не собираются. */
+    private static final ThreadLocal<int[]> REPOSITORY_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** Сколько отдельных изменений копить в транзакции, прежде чем заменить их одним событием перезагрузки. */
+    private static final int MAX_PENDING = 100;
+
+    /** Изменения, замеченные SQLite в текущей транзакции; доступ только под блокировкой PENDING. */
+    private static final List<BookChange> PENDING = new ArrayList<>();
+
+    /** Признак того, что изменений в текущей транзакции больше {@link #MAX_PENDING}; доступ под блокировкой PENDING. */
+    private static boolean reloadPending;
+
+    /** Изменения зафиксированных транзакций, ещё не разосланные подписчикам; доступ под блокировкой PENDING. */
+    private static final List<BookChange> COMMITTED = new ArrayList<>();
+
+    /**
+     * Признак того, что после фиксации нужно разослать {@link BookChange.Type#RELOADED};
+     * доступ под блокировкой PENDING.
+     */
+    private static boolean reloadCommitted;
+
+    private BookChangeNotifier() {
+    }
+
+    /**
+     * Подписывает получателя на события изменения книг.
+     *
+     * @param listener получатель событий
+     */
+    public static void addListener(Consumer<BookChange> listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Отписывает получателя от событий изменения книг.
+     *
+     * @param listener получатель событий
+     */
+    public static void removeListener(Consumer<BookChange> listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Рассылает событие всем подписчикам.
+     *
+     * @param change событие изменения
+     */
+    static void publish(BookChange change) {
+        for (Consumer<BookChange> listener : LISTENERS) {
+            listener.accept(change);
+        }
+    }
+
+    /**
+     * Выполняет операцию репозитория, который сам сообщит о своих изменениях.
+     * Пока операция выполняется, изменения от обработчика SQLite в этом потоке не собираются,
+     * чтобы подписчики не получили одно изменение дважды.
+     *
+     * @param operation операция записи
+     * @param <T> тип результата
+     * @return результат операции
+     */
+    static <T> T reportedByRepository(Supplier<T> operation) {
+        int[] depth = REPOSITORY_DEPTH.get();
+        depth[0]++;
+        try {
+            return operation.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Ставит обработчики обновлений и фиксации SQLite на соединение для записи.
+     * Накопленные изменения рассылает {@link #publishCommitted()}, который нужно вызывать после записи.
+     *
+     * @param connection соединение для записи
+     * @throws SQLException если соединение не является соединением SQLite
+     */
+    static void install(Connection connection) throws SQLException {
+        SQLiteConnection sqlite = connection.unwrap(SQLiteConnection.class);
+        sqlite.addUpdateListener(BookChangeNotifier::onRowChanged);
+        sqlite.addCommitListener(new SQLiteCommitListener() {
+            @Override
+            public void onCommit() {
+                commitPending();
+            }
+
+            @Override
+            public void onRollback() {
+                synchronized (PENDING) {
+                    PENDING.clear();
+                    reloadPending = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Запоминает изменение строки таблицы books, сделанное в обход репозитория.
+     * Смена обложки книги — это изменение столбца books.cover_hash, поэтому отдельно таблица covers
+     * не отслеживается: её строки не связаны с одной книгой.
+     */
+    private static void onRowChanged(SQLiteUpdateListener.Type type, String database, String table, long rowId) {
+        if (REPOSITORY_DEPTH.get()[0] > 0) return;
+        if (!"books".equals(table)) return;
+        BookChange.Type changeType = switch (type) {
+            case INSERT -> BookChange.Type.INSERTED;
+            case UPDATE -> BookChange.Type.UPDATED;
+            case DELETE -> BookChange.Type.DELETED;
+        };
+        synchronized (PENDING) {
+            if (reloadPending) return;
+            if (PENDING.size() >= MAX_PENDING) {
+                PENDING.clear();
+                reloadPending = true;
+                return;
+            }
+            PENDING.add(new BookChange(changeType, (int) rowId, null));
+        }
+    }
+
+    /**
+     * Откладывает изменения фиксируемой транзакции до {@link #publishCommitted()}.
+     * Отложенных изменений тоже не больше {@value #MAX_PENDING}: сверх того они заменяются перезагрузкой.
+     */
+    private static void commitPending() {
+        synchronized (PENDING) {
+            if (reloadPending || COMMITTED.size() + PENDING.size() > MAX_PENDING) {
+                COMMITTED.clear();
+                reloadCommitted = true;
+            } else if (!reloadCommitted) {
+                COMMITTED.addAll(PENDING);
+            }
+            PENDING.clear();
+            reloadPending = false;
+        }
+    }
+
+    /**
+     * Рассылает изменения зафиксированных транзакций. Вызывается после завершения операции записи,
+     * когда изменения уже видны соединениям для чтения.
+     * Если их было слишком много, вместо отдельных событий рассылается одно {@link BookChange.Type#RELOADED}.
+     */
+    static void publishCommitted() {
+        List<BookChange> changes;
+        boolean reload;
+        synchronized (PENDING) {
+            reload = reloadCommitted;
+            reloadCommitted = false;
+            if (!reload && COMMITTED.isEmpty()) return;
+            changes = new ArrayList<>(COMMITTED);
+            COMMITTED.clear();
+        }
+        if (reload) {
+            publish(BookChange.reloaded());
+            return;
+        }
+        changes.forEach(BookChangeNotifier::publish);
+    }
+}
@@ -0,0 +1,423 @@
+package com.nb2506.booktracker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Потоковый экспорт всей библиотеки в CSV, JSON Lines или архив ZIP с обложками.
+ * <p>
+ * Строки читаются одним однонаправленным {@link ResultSet} и сразу записываются в файл через {@link FileChannel},
+ * без создания объектов {@link Book} и без списка книг в памяти, поэтому потребление памяти не зависит
+ * от размера библиотеки. Файлы CSV и JSON Lines содержат книги без обложек в формате, который читает
+ * {@link BookImporter}. Архив ZIP содержит {@code books.jsonl}, где у каждой книги дополнительно указан
+ * {@code id}, и обложки отдельными записями {@code covers/<id>.<расширение>}. Обложки из файла обложек
+ * ({@link CoverPack}) пишутся в архив прямо из отображённой памяти. Обложку, хранящуюся в базе, драйвер
+ * SQLite отдаёт только целиком, поэтому в памяти одновременно находится не больше одной такой обложки.
+ * <p>
+ * Обе выборки выполняются в одной транзакции чтения, поэтому экспорт видит согласованный снимок базы,
+ * даже если книги меняются во время записи. Файл сначала пишется рядом с именем {@code <файл>.part}
+ * и заменяет целевой только после успешного завершения; при ошибке или отмене ({@link #cancel()})
+ * частичный файл удаляется.
+ */
+public class BookExporter {
+    /** Формат файла экспорта. */
+    public enum Format {
+        /** Значения, разделённые запятыми, с заголовком; без обложек. */
+        CSV,
+        /** Один объект JSON на строку; без обложек. */
+        JSON_LINES,
+        /** Архив с {@code books.jsonl} и обложками отдельными записями. */
+        ZIP;
+
+        /**
+         * Определяет формат по расширению файла.
+         *
+         * @param file файл экспорта
+         * @return формат файла
+         * @throws IllegalArgumentException если расширение не поддерживается
+         */
+        public static Format fromFileName(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".zip")) return ZIP;
+            return BookImporter.Format.fromFileName(file) == BookImporter.Format.CSV ? CSV : JSON_LINES;
+        }
+    }
+
+    /** Получатель сведений о ходе экспорта. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Вызывается через каждые несколько записанных книг или обложек и по окончании экспорта.
+         * Вызывается в потоке экспорта.
+         *
+         * @param done количество уже записанных книг и обложек
+         * @param total общее количество книг и обложек (обложки учитываются только в архиве ZIP)
+         */
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * Итог экспорта.
+     *
+     * @param books количество записанных книг
+     * @param covers количество записанных обложек
+     * @param bytes размер файла в байтах
+     * @param elapsedNanos длительность экспорта в наносекундах
+     */
+    public record Result(long books, long covers, long bytes, long elapsedNanos) {
+    }
+
+    /** Через сколько записанных книг или обложек сообщать о ходе экспорта. */
+    private static final int PROGRESS_STEP = 500;
+
+    /** Имя записи архива со списком книг. */
+    static final String BOOKS_ENTRY = "books.jsonl";
+
+    /** Каталог записей архива с обложками. */
+    static final String COVERS_DIRECTORY = "covers/";
+
+    /** Столбцы файла CSV в порядке записи. */
+    private static final String CSV_HEADER = "title,author,year,pages,rating,genres,current_page";
+
+    /** Текст запроса для выборки книг без обложек в порядке добавления. */
+    private static final String SELECT_BOOKS_SQL = """
+        SELECT id, title, author, year, pages, rating, genres, current_page FROM books ORDER BY id
+    """;
+
+    /**
+     * Текст запроса для выборки обложек в порядке id книг. Общая обложка нескольких книг
+     * записывается в архив для каждой из них, чтобы каждую книгу можно было восстановить отдельно.
+     */
+    private static final String SELECT_COVERS_SQL = """
+        SELECT b.id AS book_id, c.cover, c.pack_offset, c.pack_length
+        FROM books b JOIN covers c ON c.hash = b.cover_hash ORDER BY b.id
+    """;
+
+    /** Текст запроса для подсчёта книг. */
+    private static final String COUNT_BOOKS_SQL = "SELECT count(*) FROM books";
+
+    /** Текст запроса для подсчёта обложек. */
+    private static final String COUNT_COVERS_SQL = "SELECT count(*) FROM books WHERE cover_hash IS NOT NULL";
+
+    /** Признак отмены экспорта. */
+    private volatile boolean cancelled;
+
+    /** Строка JSON текущей книги; используется повторно для всех строк. */
+    private final StringBuilder json = new StringBuilder(256);
+
+    /**
+     * Просит прервать экспорт. Можно вызывать из любого потока; экспорт завершится исключением
+     * {@link CancellationException} после текущей книги или обложки, а частичный файл будет удалён.
+     * Прерывание потока экспорта ({@link Thread#interrupt()}) действует так же.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Возвращает признак того, что экспорт отменён.
+     *
+     * @return true после вызова {@link #cancel()}
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Экспортирует все книги в порядке добавления.
+     *
+     * @param file файл для записи; существующий файл заменяется только после успешного экспорта
+     * @param format формат файла
+     * @param listener получатель сведений о ходе экспорта (может быть null)
+     * @return итог экспорта
+     * @throws IOException при ошибке записи
+     * @throws SQLException при ошибке чтения базы данных
+     * @throws CancellationException если экспорт отменён
+     */
+    public Result exportFile(Path file, Format format, ProgressListener listener) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long[] written = DatabaseHelper.readCovers(conn -> {
+                Connection connection = conn.connection();
+                connection.setAutoCommit(false);
+                try {
+                    return format == Format.ZIP
+                            ? writeZip(connection, channel, listener)
+                            : writeText(connection, channel, format, listener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            });
+            channel.force(false);
+            Result result = new Result(written[0], written[1], channel.size(), System.nanoTime() - start);
+            completed = true;
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (completed) {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    /**
+     * Записывает книги в CSV или JSON Lines.
+     *
+     * @return количество книг и обложек (всегда 0)
+     */
+    private long[] writeText(Connection connection, WritableByteChannel channel, Format format,
+                             ProgressListener listener) throws SQLException, IOException {
+        long total = count(connection, COUNT_BOOKS_SQL);
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        long books = writeBooks(connection, writer, format, false, total, listener);
+        writer.flush();
+        return new long[]{books, 0};
+    }
+
+    /**
+     * Записывает архив: сначала {@link #BOOKS_ENTRY}, затем обложки.
+     *
+     * @return количество книг и обложек
+     */
+    private long[] writeZip(Connection connection, WritableByteChannel channel, ProgressListener listener)
+            throws SQLException, IOException {
+        long total = count(connection, COUNT_BOOKS_SQL) + count(connection, COUNT_COVERS_SQL);
+        OutputStream file = Channels.newOutputStream(channel);
+        ZipOutputStream zip = new ZipOutputStream(file, StandardCharsets.UTF_8);
+
+        zip.putNextEntry(new ZipEntry(BOOKS_ENTRY));
+        Writer writer = Channels.newWriter(Channels.newChannel(zip), StandardCharsets.UTF_8);
+        long books = writeBooks(connection, writer, Format.JSON_LINES, true, total, listener);
+        writer.flush();
+        zip.closeEntry();
+
+        // Обложки уже сжаты (JPEG, PNG), повторное сжатие только тратит время.
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        long covers = writeCovers(connection, zip, books, total, listener);
+        zip.finish();
+        zip.flush();
+        return new long[]{books, covers};
+    }
+
+    /**
+     * Записывает строки книг по мере чтения из базы.
+     *
+     * @param withId добавлять ли в JSON поле {@code id}, по которому находится обложка в архиве
+     * @return количество книг
+     */
+    private long writeBooks(Connection connection, Writer writer, Format format, boolean withId,
+                            long total, ProgressListener listener) throws SQLException, IOException {
+        long books = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_BOOKS_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                checkCancelled();
+                if (format == Format.CSV) {
+                    writeCsv(writer, rs);
+                } else {
+                    writeJson(writer, rs, withId);
+                }
+                writer.write('\n');
+                books++;
+                if (listener != null && books % PROGRESS_STEP == 0) {
+                    listener.onProgress(books, total);
+                }
+            }
+        }
+        if (listener != null && (books == 0 || books % PROGRESS_STEP != 0)) {
+            listener.onProgress(books, total);
+        }
+        return books;
+    }
+
+    /**
+     * Записывает обложки отдельными записями архива: срезом файла обложек или массивом, прочитанным из базы.
+     *
+     * @param done количество уже записанных книг (для сведений о ходе экспорта)
+     * @return количество обложек
+     */
+    private long writeCovers(Connection connection, ZipOutputStream zip, long done, long total,
+                             ProgressListener listener) throws SQLException, IOException {
+        WritableByteChannel target = Channels.newChannel(zip);
+        long covers = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_COVERS_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                checkCancelled();
+                int bookId = rs.getInt("book_id");
+                ByteBuffer cover = DatabaseHelper.coverBuffer(rs);
+                zip.putNextEntry(new ZipEntry(coverEntry(bookId, cover)));
+                while (cover.hasRemaining()) {
+                    target.write(cover);
+                }
+                zip.closeEntry();
+                covers++;
+                if (listener != null && covers % PROGRESS_STEP == 0) {
+                    listener.onProgress(done + covers, total);
+                }
+            }
+        }
+        if (listener != null && (covers == 0 || covers % PROGRESS_STEP != 0)) {
+            listener.onProgress(done + covers, total);
+        }
+        return covers;
+    }
+
+    /**
+     * Возвращает имя записи архива для обложки книги с расширением по сигнатуре изображения.
+     *
+     * @param bookId id книги
+     * @param head первые байты обложки (позиция буфера не меняется)
+     * @return имя записи, например {@code covers/12.jpg}
+     */
+    static String coverEntry(int bookId, ByteBuffer head) {
+        return COVERS_DIRECTORY + bookId + coverExtension(head);
+    }
+
+    /**
+     * Определяет расширение файла обложки по сигнатуре.
+     */
+    private static String coverExtension(ByteBuffer head) {
+        int p = head.position();
+        int n = head.remaining();
+        if (n >= 2 && (head.get(p) & 0xFF) == 0xFF && (head.get(p + 1) & 0xFF) == 0xD8) return ".jpg";
+        if (n >= 4 && (head.get(p) & 0xFF) == 0x89 && head.get(p + 1) == 'P' && head.get(p + 2) == 'N'
+                && head.get(p + 3) == 'G') return ".png";
+        if (n >= 3 && head.get(p) == 'G' && head.get(p + 1) == 'I' && head.get(p + 2) == 'F') return ".gif";
+        if (n >= 2 && head.get(p) == 'B' && head.get(p + 1) == 'M') return ".bmp";
+        return ".bin";
+    }
+
+    /**
+     * Прерывает экспорт, если он отменён или поток экспорта прерван.
+     *
+     * @throws CancellationException если экспорт нужно прервать
+     */
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Экспорт отменён");
+        }
+    }
+
+    /**
+     * Выполняет запрос подсчёта строк.
+     */
+    private static long count(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Записывает текущую строку выборки строкой CSV; поля с запятыми, кавычками и переводами строк
+     * берутся в кавычки.
+     */
+    private static void writeCsv(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write(csvField(rs.getString("title")));
+        writer.write(',');
+        writer.write(csvField(rs.getString("author")));
+        writer.write(',' + String.valueOf(rs.getInt("year")) + ',' + rs.getInt("pages") + ','
+                + rs.getDouble("rating") + ',');
+        writer.write(csvField(rs.getString("genres")));
+        writer.write(',' + String.valueOf(rs.getInt("current_page")));
+    }
+
+    private static String csvField(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Записывает текущую строку выборки объектом JSON; жанры записываются массивом строк.
+     *
+     * @param withId добавлять ли поле {@code id}
+     */
+    private void writeJson(Writer writer, ResultSet rs, boolean withId) throws SQLException, IOException {
+        json.setLength(0);
+        json.append('{');
+        if (withId) {
+            json.append("\"id\":").append(rs.getInt("id")).append(',');
+        }
+        json.append("\"title\":");
+        appendJsonString(json, rs.getString("title"));
+        json.append(",\"author\":");
+        appendJsonString(json, rs.getString("author"));
+        json.append(",\"year\":").append(rs.getInt("year"))
+                .append(",\"pages\":").append(rs.getInt("pages"))
+                .append(",\"rating\":").append(rs.getDouble("rating"))
+                .append(",\"genres\":[");
+        List<String> genres = DatabaseHelper.splitGenres(rs.getString("genres"));
+        for (int i = 0; i < genres.size(); i++) {
+            if (i > 0) json.append(',');
+            appendJsonString(json, genres.get(i));
+        }
+        json.append("],\"current_page\":").append(rs.getInt("current_page")).append('}');
+        writer.append(json);
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,67 @@
+package com.nb2506.booktracker;
+
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * Фильтр списка книг по строке поиска и набору допустимых id, не зависящий от интерфейса.
+ * Проверка книги использует только её {@link BookSearchKey} и не создаёт объектов,
+ * поэтому фильтрацию можно повторять при каждом изменении строки поиска даже для очень больших списков.
+ *
+ * @param query строка поиска, приведённая через {@link BookSearchKey#fold(String)}; пустая — без поиска
+ * @param ids id допустимых книг (например, результат {@link FacetIndex#match}) или null без ограничения;
+ *            владелец фильтра может дополнять набор при изменении отдельных книг
+ */
+public record BookFilter(String query, BitSet ids) implements Predicate<Book> {
+    /** Фильтр, пропускающий все книги. */
+    public static final BookFilter ALL = of("");
+
+    /**
+     * Создаёт фильтр.
+     *
+     * @param searchText строка поиска (может быть null)
+     * @return фильтр
+     */
+    public static BookFilter of(String searchText) {
+        return new BookFilter(BookSearchKey.fold(searchText), null);
+    }
+
+    /**
+     * Создаёт фильтр, пропускающий только книги с заданными id.
+     *
+     * @param ids id допустимых книг
+     * @return фильтр
+     */
+    public static BookFilter ofIds(BitSet ids) {
+        return new BookFilter("", ids);
+    }
+
+    /**
+     * Возвращает id книг списка, проходящих фильтр.
+     *
+     * @param books книги
+     * @return новая битовая карта id
+     */
+    public BitSet matchingIds(Iterable<Book> books) {
+        BitSet result = new BitSet();
+        for (Book book : books) {
+            if (test(book)) {
+                result.set(book.getId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, проходит ли книга фильтр.
+     *
+     * @param book книга (null не проходит)
+     * @return true, если книга подходит под строку поиска и набор id
+     */
+    @Override
+    public boolean test(Book book) {
+        if (book == null) return false;
+        if (ids != null && !ids.get(book.getId())) return false;
+        return query.isEmpty() || book.getSearchKey().matchesText(query);
+    }
+}
@@ -0,0 +1,482 @@
+package com.nb2506.booktracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Потоковый импорт книг из файлов CSV и JSON Lines.
+ * Файл читается построчно, а книги сразу передаются в пакетную вставку
+ * {@link DatabaseHelper#insertBooks}, поэтому потребление памяти не зависит от размера файла.
+ * <p>
+ * Поддерживаемые поля: title, author, year, pages, rating, genres, current_page и cover
+ * (изображение в Base64; при импорте оно уменьшается по правилам {@link ImageHelper#ingestCover(byte[])}).
+ * В CSV первая строка содержит имена столбцов, жанры перечисляются через запятую внутри одного поля.
+ * В JSON Lines каждая строка — отдельный объект, жанры задаются строкой или массивом строк.
+ */
+public class BookImporter {
+    /** Формат импортируемого файла. */
+    public enum Format {
+        /** Значения, разделённые запятыми, с заголовком. */
+        CSV,
+        /** Один объект JSON на строку. */
+        JSON_LINES;
+
+        /**
+         * Определяет формат по расширению файла.
+         *
+         * @param file импортируемый файл
+         * @return формат файла
+         * @throws IllegalArgumentException если расширение не поддерживается
+         */
+        public static Format fromFileName(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) return JSON_LINES;
+            throw new IllegalArgumentException("Неизвестный формат файла: " + file);
+        }
+    }
+
+    /** Получатель сведений о ходе импорта. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Вызывается после каждого пакета и по окончании импорта.
+         *
+         * @param rows количество уже добавленных книг
+         * @param rowsPerSecond средняя скорость импорта в строках в секунду
+         */
+        void onProgress(long rows, double rowsPerSecond);
+    }
+
+    /**
+     * Итог импорта.
+     *
+     * @param imported количество добавленных книг
+     * @param skipped количество пропущенных некорректных строк
+     * @param elapsedNanos длительность импорта в наносекундах
+     */
+    public record Result(long imported, long skipped, long elapsedNanos) {
+        /** Возвращает среднюю скорость импорта в строках в секунду. */
+        public double rowsPerSecond() {
+            return elapsedNanos > 0 ? imported * 1_000_000_000.0 / elapsedNanos : 0.0;
+        }
+    }
+
+    /** Количество строк в одном пакете вставки. */
+    private final int batchSize;
+
+    /**
+     * Создаёт импортёр с размером пакета по умолчанию.
+     */
+    public BookImporter() {
+        this(DatabaseBookRepository.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Создаёт импортёр с заданным размером пакета.
+     *
+     * @param batchSize количество строк в одном пакете вставки
+     */
+    public BookImporter(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Импортирует книги из файла в одной транзакции.
+     *
+     * @param file импортируемый файл
+     * @param format формат файла
+     * @param listener получатель сведений о ходе импорта (может быть null)
+     * @return итог импорта
+     * @throws IOException при ошибке чтения файла
+     * @throws SQLException при ошибке записи; в этом случае ни одна книга не сохраняется
+     */
+    public Result importFile(Path file, Format format, ProgressListener listener) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            RowIterator rows = format == Format.CSV ? new CsvRows(reader) : new JsonLinesRows(reader);
+            long start = System.nanoTime();
+            long[] imported = {0};
+            try {
+                DatabaseHelper.insertBooks(rows, batchSize, _ -> {
+                    imported[0]++;
+                    if (listener != null && imported[0] % batchSize == 0) {
+                        listener.onProgress(imported[0], rate(imported[0], start));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Result result = new Result(imported[0], rows.skipped, System.nanoTime() - start);
+            if (listener != null) {
+                listener.onProgress(result.imported(), result.rowsPerSecond());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Вычисляет среднюю скорость импорта.
+     *
+     * @param rows количество добавленных строк
+     * @param start момент начала импорта по {@link System#nanoTime()}
+     * @return строк в секунду
+     */
+    private static double rate(long rows, long start) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed > 0 ? rows * 1_000_000_000.0 / elapsed : 0.0;
+    }
+
+    /**
+     * Ленивый итератор книг по строкам файла. Некорректные строки пропускаются и подсчитываются.
+     */
+    private abstract static class RowIterator implements Iterator<Book> {
+        /** Источник строк. */
+        protected final BufferedReader reader;
+
+        /** Следующая прочитанная книга или null, если её ещё нужно прочитать. */
+        private Book next;
+
+        /** Признак конца файла. */
+        private boolean finished;
+
+        /** Количество пропущенных строк. */
+        long skipped;
+
+        /** Номер последней прочитанной строки файла (для сообщений об ошибках). */
+        protected long lineNumber;
+
+        RowIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !finished) {
+                try {
+                    Map<String, String> fields = readRecord();
+                    if (fields == null) {
+                        finished = true;
+                    } else if (!fields.isEmpty()) {
+                        next = toBook(fields);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    System.err.println("Строка " + lineNumber + " пропущена: " + e.getMessage());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Book next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Book book = next;
+            next = null;
+            return book;
+        }
+
+        /**
+         * Читает следующую запись файла.
+         *
+         * @return поля записи по имени, пустой словарь для пустой строки или null в конце файла
+         * @throws IOException при ошибке чтения
+         */
+        protected abstract Map<String, String> readRecord() throws IOException;
+
+        /**
+         * Создаёт книгу из полей записи.
+         *
+         * @param fields поля записи
+         * @return книга для вставки
+         * @throws IllegalArgumentException если обязательные поля отсутствуют или некорректны
+         */
+        private static Book toBook(Map<String, String> fields) {
+            String title = required(fields, "title");
+            String author = required(fields, "author");
+            ImageHelper.IngestedCover cover = ingestCover(fields.get("cover"));
+            Book book = new Book(
+                    title,
+                    author,
+                    parseInt(fields.get("year")),
+                    parseInt(fields.get("pages")),
+                    parseDouble(fields.get("rating")),
+                    parseInt(fields.get("current_page")),
+                    fields.getOrDefault("genres", ""),
+                    cover != null ? cover.cover() : null
+            );
+            if (cover != null) {
+                book.setThumbnail(cover.thumbnail());
+            }
+            return book;
+        }
+
+        /**
+         * Декодирует обложку из Base64 и приводит её к ограничениям {@link ImageHelper.CoverLimits#DEFAULT}.
+         *
+         * @param base64 обложка в Base64 или null
+         * @return обложка и миниатюра или null, если обложки нет
+         * @throws IllegalArgumentException если обложка некорректна
+         */
+        private static ImageHelper.IngestedCover ingestCover(String base64) {
+            if (base64 == null || base64.isBlank()) return null;
+            try {
+                return ImageHelper.ingestCover(Base64.getDecoder().decode(base64.trim()));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("некорректная обложка: " + e.getMessage());
+            }
+        }
+
+        private static String required(Map<String, String> fields, String name) {
+            String value = fields.get(name);
+            if (value == null || value.isBlank()) {
+                throw new IllegalArgumentException("нет обязательного поля " + name);
+            }
+            return value.trim();
+        }
+
+        private static int parseInt(String value) {
+            return value == null || value.isBlank() ? 0 : Integer.parseInt(value.trim());
+        }
+
+        private static double parseDouble(String value) {
+            return value == null || value.isBlank() ? 0.0 : Double.parseDouble(value.trim());
+        }
+    }
+
+    /**
+     * Записи файла CSV (RFC 4180): поля в кавычках могут содержать запятые,
+     * удвоенные кавычки и переводы строк. Запись длиннее {@value #MAX_RECORD_LINES} строк файла
+     * считается незакрытой кавычкой и прерывает импорт, чтобы одна лишняя кавычка не собрала
+     * остаток файла в одно поле.
+     */
+    private static final class CsvRows extends RowIterator {
+        /** Наибольшее количество строк файла в одной записи. */
+        private static final int MAX_RECORD_LINES = 1000;
+
+        /** Имена столбцов из заголовка. */
+        private List<String> header;
+
+        CsvRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected Map<String, String> readRecord() throws IOException {
+            if (header == null) {
+                List<String> names = readFields();
+                if (names == null) return null;
+                header = names.stream().map(name -> name.trim().toLowerCase(Locale.ROOT)).toList();
+            }
+            List<String> values = readFields();
+            if (values == null) return null;
+            if (values.size() == 1 && values.get(0).isEmpty()) return Map.of();
+
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                fields.put(header.get(i), values.get(i));
+            }
+            return fields;
+        }
+
+        /**
+         * Читает одну запись, которая может занимать несколько строк файла.
+         *
+         * @return значения полей или null в конце файла
+         * @throws IOException при ошибке чтения или если кавычка не закрыта до конца файла
+         *                     или в пределах {@value #MAX_RECORD_LINES} строк
+         */
+        private List<String> readFields() throws IOException {
+            String line = reader.readLine();
+            if (line == null) return null;
+            lineNumber++;
+            long firstLine = lineNumber;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) break;
+                    line = reader.readLine();
+                    if (line == null || lineNumber - firstLine + 1 >= MAX_RECORD_LINES) {
+                        throw new IOException("Незакрытая кавычка в записи, начатой на строке " + firstLine);
+                    }
+                    lineNumber++;
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * Записи файла JSON Lines. Поддерживаются плоские объекты со строками, числами,
+     * логическими значениями, null и массивами строк.
+     */
+    private static final class JsonLinesRows extends RowIterator {
+        /** Разбираемая строка. */
+        private String line;
+
+        /** Текущая позиция в строке. */
+        private int pos;
+
+        JsonLinesRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected Map<String, String> readRecord() throws IOException {
+            line = reader.readLine();
+            if (line == null) return null;
+            lineNumber++;
+            pos = 0;
+            skipWhitespace();
+            if (pos == line.length()) return Map.of();
+
+            Map<String, String> fields = new HashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                fields.put(name.toLowerCase(Locale.ROOT), readValue());
+                skipWhitespace();
+                char c = advance();
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("ожидалась ',' или '}' в позиции " + pos);
+            }
+            return fields;
+        }
+
+        /**
+         * Читает значение поля и возвращает его в строковом виде.
+         * Массив строк объединяется через запятую, как жанры в базе данных.
+         */
+        private String readValue() {
+            char c = peek();
+            if (c == '"') return readString();
+            if (c == '[') {
+                pos++;
+                List<String> items = new ArrayList<>();
+                skipWhitespace();
+                if (peek() == ']') {
+                    pos++;
+                    return "";
+                }
+                while (true) {
+                    skipWhitespace();
+                    items.add(readValue());
+                    skipWhitespace();
+                    char d = advance();
+                    if (d == ']') break;
+                    if (d != ',') throw new IllegalArgumentException("ожидалась ',' или ']' в позиции " + pos);
+                }
+                return String.join(",", items);
+            }
+            int start = pos;
+            while (pos < line.length() && ",}] \t".indexOf(line.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = line.substring(start, pos);
+            if (literal.isEmpty()) throw new IllegalArgumentException("ожидалось значение в позиции " + start);
+            return literal.equals("null") ? null : literal;
+        }
+
+        /** Читает строку JSON с обработкой экранирования. */
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = advance();
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = advance();
+                switch (escaped) {
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > line.length()) throw new IllegalArgumentException("обрыв \\u-последовательности");
+                        sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(escaped);
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= line.length()) throw new IllegalArgumentException("неожиданный конец строки");
+            return line.charAt(pos);
+        }
+
+        private char advance() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (advance() != expected) {
+                throw new IllegalArgumentException("ожидался '" + expected + "' в позиции " + (pos - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условия выборки книг (поиск и фасеты), переводимые в условие WHERE запроса SQL, и порядок сортировки.
+ * Используется постраничной загрузкой списка, когда все книги не держатся в памяти.
+ * Поиск выполняется по полнотекстовому индексу books_fts: каждое слово строки поиска
+ * ищется как префикс слова в названии или имени автора. Список в памяти проверяет строку поиска
+ * по тому же правилу ({@link BookSearchKey#matchesText(String)}).
+ */
+public final class BookQuery {
+    /** Запрос без условий, выбирающий все книги. */
+    public static final BookQuery ALL = new BookQuery("", FacetSelection.NONE);
+
+    /** Строка поиска по названию и автору в нижнем регистре; пустая строка означает отсутствие поиска. */
+    private final String searchText;
+
+    /** Выражение MATCH для FTS5, построенное из строки поиска, или null, если искать нечего. */
+    private final String matchExpression;
+
+    /** Выбранные значения фасетов. */
+    private final FacetSelection facets;
+
+    /** Порядок сортировки; не применяется к результатам полнотекстового поиска, упорядоченным по релевантности. */
+    private final BookSort sort;
+
+    /**
+     * Создаёт условия выборки.
+     *
+     * @param searchText строка поиска по названию и автору (может быть null)
+     * @param facets выбранные значения фасетов (null — без ограничений)
+     */
+    public BookQuery(String searchText, FacetSelection facets) {
+        this(searchText, facets, BookSort.ADDED);
+    }
+
+    /**
+     * Создаёт условия выборки с заданным порядком сортировки.
+     *
+     * @param searchText строка поиска по названию и автору (может быть null)
+     * @param facets выбранные значения фасетов (null — без ограничений)
+     * @param sort порядок сортировки
+     */
+    public BookQuery(String searchText, FacetSelection facets, BookSort sort) {
+        this.searchText = BookSearchKey.fold(searchText);
+        this.matchExpression = toMatchExpression(this.searchText);
+        this.facets = facets == null ? FacetSelection.NONE : facets;
+        this.sort = sort;
+    }
+
+    /** Возвращает строку поиска в нижнем регистре. */
+    public String getSearchText() { return searchText; }
+
+    /** Возвращает выбранные значения фасетов. */
+    public FacetSelection getFacets() { return facets; }
+
+    /** Возвращает порядок сортировки. */
+    public BookSort getSort() { return sort; }
+
+    /** Возвращает true, если задан полнотекстовый поиск. */
+    public boolean hasSearch() { return matchExpression != null; }
+
+    /** Возвращает выражение MATCH для FTS5 или null, если поиск не задан. */
+    String getMatchExpression() { return matchExpression; }
+
+    /**
+     * Строит выражение MATCH из строки поиска: каждое слово становится запросом
+     * по префиксу, все слова должны встретиться в названии или авторе.
+     * Слова заключаются в кавычки, поэтому символы синтаксиса FTS5 в строке поиска
+     * не интерпретируются.
+     *
+     * @param text строка поиска
+     * @return выражение MATCH или null, если в строке нет ни одного слова
+     */
+    static String toMatchExpression(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add('"' + token + "\"*");
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+
+    /**
+     * Строит условие WHERE для заданных фильтров и дополнительного условия.
+     *
+     * @param extraCondition дополнительное условие (например, курсор страницы) или null
+     * @return текст условия, начинающийся с " WHERE ", или пустая строка
+     */
+    String whereClause(String extraCondition) {
+        return whereClause(extraCondition, true);
+    }
+
+    /**
+     * Строит условие WHERE, при необходимости без условия поиска
+     * (когда поиск уже выполняется через соединение с books_fts).
+     *
+     * @param extraCondition дополнительное условие или null
+     * @param includeSearch включать ли условие полнотекстового поиска
+     * @return текст условия, начинающийся с " WHERE ", или пустая строка
+     */
+    String whereClause(String extraCondition, boolean includeSearch) {
+        List<String> conditions = new ArrayList<>();
+        if (includeSearch && matchExpression != null) {
+            conditions.add("id IN (SELECT rowid FROM books_fts WHERE books_fts MATCH ?)");
+        }
+        conditions.addAll(facets.sqlConditions());
+        if (extraCondition != null) {
+            conditions.add(extraCondition);
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Подставляет параметры фильтров в подготовленное выражение в порядке,
+     * соответствующем {@link #whereClause(String)}.
+     *
+     * @param pstmt подготовленное выражение
+     * @param index индекс первого параметра
+     * @return индекс следующего свободного параметра
+     * @throws SQLException при ошибке установки параметра
+     */
+    int bind(PreparedStatement pstmt, int index) throws SQLException {
+        return bind(pstmt, index, true);
+    }
+
+    /**
+     * Подставляет параметры фильтров в порядке, соответствующем
+     * {@link #whereClause(String, boolean)}.
+     *
+     * @param pstmt подготовленное выражение
+     * @param index индекс первого параметра
+     * @param includeSearch включено ли условие полнотекстового поиска
+     * @return индекс следующего свободного параметра
+     * @throws SQLException при ошибке установки параметра
+     */
+    int bind(PreparedStatement pstmt, int index, boolean includeSearch) throws SQLException {
+        if (includeSearch && matchExpression != null) {
+            pstmt.setString(index++, matchExpression);
+        }
+        return facets.bind(pstmt, index);
+    }
+}
@@ -1,25 +1,69 @@
 package com.nb2506.booktracker;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * Интерфейс для репозитория книг, определяющий основные операции
  * сохранения и обновления объектов {@link Book}.
+ * Реализации сообщают о выполненных изменениях событиями {@link BookChange},
+ * чтобы интерфейс мог обновить только изменившиеся книги.
  */
 public interface BookRepository {
 
     /**
-     * Вставляет новую книгу в хранилище.
+     * Вставляет новую книгу в хранилище и присваивает ей id.
      *
      * @param book объект книги для добавления
      */
     void insert(Book book);
 
+    /**
+     * Вставляет несколько книг в хранилище одной операцией.
+     * Либо сохраняются все книги, либо (при ошибке) ни одна.
+     *
+     * @param books книги для добавления
+     * @return id добавленных книг в порядке добавления
+     */
+    List<Integer> insertAll(Iterable<Book> books);
+
+    /**
+     * Вставляет книги из потока одной операцией. Поток читается по мере вставки
+     * и не собирается в память целиком.
+     *
+     * @param books поток книг для добавления
+     * @return id добавленных книг в порядке добавления
+     */
+    default List<Integer> insertAll(Stream<Book> books) {
+        return insertAll(books::iterator);
+    }
+
     /**
      * Обновляет существующую книгу в хранилище.
+     * Сохраняются только поля, изменённые после загрузки книги ({@link Book#getDirtyFields()}).
      *
      * @param book объект книги с обновлёнными данными
      */
     void update(Book book);
 
+    /**
+     * Обновляет только текущую страницу книги, не перезаписывая остальные поля и обложку.
+     *
+     * @param id идентификатор книги
+     * @param currentPage новая текущая страница
+     * @throws IllegalArgumentException если страница меньше 0 или больше количества страниц книги
+     */
+    void updateProgress(int id, int currentPage);
+
+    /**
+     * Обновляет только рейтинг книги, не перезаписывая остальные поля и обложку.
+     *
+     * @param id идентификатор книги
+     * @param rating новый рейтинг
+     * @throws IllegalArgumentException если рейтинг не в диапазоне от 0 до 10
+     */
+    void updateRating(int id, double rating);
+
     /**
      * Удаляет существующую книгу из хранилище.
      *
@@ -0,0 +1,87 @@
+package com.nb2506.booktracker;
+
+import java.util.Locale;
+
+/**
+ * Предварительно вычисленные ключи поиска книги: название и автор в нижнем регистре
+ * и жанры в виде битовой маски {@link Genres}. Строятся один раз при загрузке или изменении книги,
+ * чтобы проверка фильтра при каждом нажатии клавиши не создавала новых строк.
+ *
+ * @param title название в нижнем регистре
+ * @param author автор в нижнем регистре
+ * @param genreMask маска жанров из фиксированного набора {@link Genres#ALL}
+ */
+public record BookSearchKey(String title, String author, int genreMask) {
+    /**
+     * Строит ключи поиска книги.
+     *
+     * @param book книга
+     * @return ключи поиска
+     */
+    public static BookSearchKey of(Book book) {
+        String genres = book.getGenres();
+        int mask = 0;
+        if (genres != null) {
+            // Разбор вручную, без промежуточных коллекций: ключи строятся для каждой загруженной книги.
+            int start = 0;
+            while (start <= genres.length()) {
+                int end = genres.indexOf(',', start);
+                if (end < 0) end = genres.length();
+                String genre = genres.substring(start, end).trim();
+                start = end + 1;
+                if (genre.isEmpty()) continue;
+                mask |= Genres.bit(genre);
+            }
+        }
+        return new BookSearchKey(fold(book.getTitle()), fold(book.getAuthor()), mask);
+    }
+
+    /**
+     * Приводит строку к виду, в котором сравниваются ключи поиска.
+     *
+     * @param text исходная строка (может быть null)
+     * @return строка в нижнем регистре без пробелов по краям
+     */
+    public static String fold(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Проверяет, подходит ли книга под строку поиска по тому же правилу, что и полнотекстовый поиск
+     * {@link BookQuery}: каждое слово строки поиска должно быть началом какого-либо слова в названии или авторе.
+     * Словом считается последовательность букв и цифр. Строка без слов подходит под любую книгу.
+     * Проверка не создаёт объектов.
+     *
+     * @param foldedQuery строка поиска, приведённая через {@link #fold(String)}
+     * @return true при совпадении
+     */
+    public boolean matchesText(String foldedQuery) {
+        int length = foldedQuery.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !Character.isLetterOrDigit(foldedQuery.charAt(start))) start++;
+            int end = start;
+            while (end < length && Character.isLetterOrDigit(foldedQuery.charAt(end))) end++;
+            if (end > start && !hasWordPrefix(title, foldedQuery, start, end)
+                    && !hasWordPrefix(author, foldedQuery, start, end)) {
+                return false;
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, начинается ли какое-либо слово текста с части строки поиска [start, end).
+     */
+    private static boolean hasWordPrefix(String text, String query, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i + length <= text.length(); i++) {
+            if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                    && text.regionMatches(i, query, start, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
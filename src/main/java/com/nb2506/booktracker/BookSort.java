@@ -0,0 +1,178 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+
+/**
+ * Порядок сортировки списка книг. Сортировка выполняется в базе данных через ORDER BY
+ * по индексированным столбцам (см. миграцию версии 4 в {@link DatabaseSchema}); при равных значениях
+ * книги упорядочиваются по id, поэтому порядок полный и подходит для пагинации по ключу.
+ * {@link #comparator()} задаёт тот же порядок в памяти, чтобы ставить изменённую книгу на её место
+ * без перечитывания списка.
+ */
+public enum BookSort {
+    /** В порядке добавления. */
+    ADDED("По порядку добавления", null, false),
+
+    /** По названию. */
+    TITLE("По названию", "title COLLATE NOCASE", false),
+
+    /** По автору. */
+    AUTHOR("По автору", "author COLLATE NOCASE", false),
+
+    /** Сначала более новые издания. */
+    YEAR("По году издания", "year", true),
+
+    /** Сначала книги с высокой оценкой. */
+    RATING("По оценке", "rating", true),
+
+    /** Сначала книги, прочитанные дальше всего. */
+    PROGRESS("По прогрессу чтения", "progress", true),
+
+    /** Сначала недавно изменённые книги. */
+    UPDATED("Недавно изменённые", "updated_at", true);
+
+    /** Название порядка для интерфейса. */
+    private final String title;
+
+    /** Выражение сортировки в SQL или null для сортировки только по id. */
+    private final String column;
+
+    /** Сортировать по убыванию. */
+    private final boolean descending;
+
+    BookSort(String title, String column, boolean descending) {
+        this.title = title;
+        this.column = column;
+        this.descending = descending;
+    }
+
+    /** Возвращает название порядка для интерфейса. */
+    public String getTitle() { return title; }
+
+    /**
+     * Возвращает сравнение книг в том же порядке, что и {@link #orderBy()}.
+     *
+     * @return компаратор с дополнительным сравнением по id
+     */
+    public Comparator<Book> comparator() {
+        Comparator<Book> ascending = keyComparator().thenComparingInt(Book::getId);
+        return descending ? ascending.reversed() : ascending;
+    }
+
+    /**
+     * Проверяет, совпадает ли значение, по которому сортируются книги.
+     *
+     * @param first первая книга
+     * @param second вторая книга
+     * @return true, если при изменении книги с first на second её место в списке не меняется
+     *         (при равных id)
+     */
+    public boolean sameKey(Book first, Book second) {
+        return keyComparator().compare(first, second) == 0;
+    }
+
+    /**
+     * Возвращает окончание запроса с ORDER BY.
+     *
+     * @return текст, начинающийся с " ORDER BY "
+     */
+    String orderBy() {
+        String direction = descending ? " DESC" : "";
+        return column == null
+                ? " ORDER BY id" + direction
+                : " ORDER BY " + column + direction + ", id" + direction;
+    }
+
+    /**
+     * Возвращает условие пагинации по ключу: книги, идущие в этом порядке после заданной.
+     * Сравнение пар значений дополнено отдельным условием на столбец сортировки: без него
+     * SQLite не использует индекс с COLLATE NOCASE для поиска начала страницы и просматривает его с начала.
+     *
+     * @return условие с параметрами, подставляемыми {@link #bindAfter(PreparedStatement, int, Book)}
+     */
+    String afterCondition() {
+        String operator = descending ? "<" : ">";
+        return column == null
+                ? "id " + operator + " ?"
+                : column + " " + operator + "= ? AND (" + column + ", id) " + operator + " (?, ?)";
+    }
+
+    /**
+     * Подставляет параметры условия {@link #afterCondition()}.
+     *
+     * @param pstmt подготовленное выражение
+     * @param index индекс первого параметра
+     * @param after последняя книга предыдущей страницы
+     * @return индекс следующего свободного параметра
+     * @throws SQLException при ошибке установки параметра
+     */
+    int bindAfter(PreparedStatement pstmt, int index, Book after) throws SQLException {
+        if (column != null) {
+            index = bindKey(pstmt, index, after);
+            index = bindKey(pstmt, index, after);
+        }
+        pstmt.setInt(index++, after.getId());
+        return index;
+    }
+
+    /**
+     * Подставляет значение сортировки книги.
+     */
+    private int bindKey(PreparedStatement pstmt, int index, Book book) throws SQLException {
+        switch (this) {
+            case ADDED -> { }
+            case TITLE -> pstmt.setString(index, book.getTitle());
+            case AUTHOR -> pstmt.setString(index, book.getAuthor());
+            case YEAR -> pstmt.setInt(index, book.getYear());
+            case RATING -> pstmt.setDouble(index, book.getRating());
+            case PROGRESS -> pstmt.setDouble(index, book.getProgress());
+            case UPDATED -> pstmt.setLong(index, book.getUpdatedAt());
+        }
+        return index + 1;
+    }
+
+    /**
+     * Возвращает название порядка для отображения в выпадающем списке.
+     *
+     * @return название порядка
+     */
+    @Override
+    public String toString() {
+        return title;
+    }
+
+    /**
+     * Возвращает сравнение по значению сортировки без учёта направления и id.
+     */
+    private Comparator<Book> keyComparator() {
+        return switch (this) {
+            case ADDED -> (_, _) -> 0;
+            case TITLE -> (a, b) -> compareNoCase(a.getTitle(), b.getTitle());
+            case AUTHOR -> (a, b) -> compareNoCase(a.getAuthor(), b.getAuthor());
+            case YEAR -> Comparator.comparingInt(Book::getYear);
+            case RATING -> Comparator.comparingDouble(Book::getRating);
+            case PROGRESS -> Comparator.comparingDouble(Book::getProgress);
+            case UPDATED -> Comparator.comparingLong(Book::getUpdatedAt);
+        };
+    }
+
+    /**
+     * Сравнивает строки так же, как сортировка COLLATE NOCASE в SQLite:
+     * без учёта регистра только латинских букв.
+     */
+    private static int compareNoCase(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            char a = first.charAt(i);
+            char b = second.charAt(i);
+            if (a != b) {
+                a = a >= 'A' && a <= 'Z' ? (char) (a + 32) : a;
+                b = b >= 'A' && b <= 'Z' ? (char) (b + 32) : b;
+                if (a != b) return a - b;
+            }
+        }
+        return first.length() - second.length();
+    }
+}
@@ -0,0 +1,362 @@
+package com.nb2506.booktracker;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Консольный режим для пакетных операций без запуска JavaFX: просмотр и поиск книг, импорт, экспорт,
+ * статистика и обслуживание базы. Команды работают напрямую с {@link DatabaseHelper} и
+ * {@link DatabaseBookRepository} и не загружают классы {@code javafx.*}, поэтому их можно выполнять
+ * на сервере без графической среды.
+ * <p>
+ * Списки выводятся строками со значениями через табуляцию, чтобы их было удобно обрабатывать
+ * другими программами. Запуск из командной строки (JavaFX в пути к классам не нужен):
+ * {@code java -cp booktracker.jar:sqlite-jdbc.jar com.nb2506.booktracker.BookTrackerCli list --sort TITLE}
+ * <p>
+ * Заметную часть запуска занимает распаковка нативной библиотеки sqlite-jdbc во временный каталог.
+ * Для частых запусков библиотеку можно распаковать один раз и передать её расположение свойствами
+ * {@code -Dorg.sqlite.lib.path=КАТАЛОГ -Dorg.sqlite.lib.name=libsqlitejdbc.so}.
+ */
+public final class BookTrackerCli {
+    /** Количество книг, выводимых командами list и search по умолчанию. */
+    private static final int DEFAULT_LIMIT = 50;
+
+    /** Сколько миллисекунд при прерывании процесса ждать, пока отменённый экспорт удалит частичный файл. */
+    private static final long CANCEL_WAIT_MILLIS = 2_000;
+
+    /** Описание команд. */
+    private static final String USAGE = """
+        Использование: BookTrackerCli <команда> [параметры]
+          list [--sort ПОРЯДОК] [--offset N] [--limit N]   книги в заданном порядке (%s)
+          search ТЕКСТ [--limit N]                         полнотекстовый поиск по названию и автору
+          import ФАЙЛ                                      импорт из .csv или .jsonl
+          export ФАЙЛ                                      экспорт в .csv, .jsonl или .zip (с обложками)
+          stats                                            статистика библиотеки
+          progress ID СТРАНИЦА                             изменить текущую страницу книги
+          rate ID ОЦЕНКА                                   изменить оценку книги
+          shrink-covers                                    уменьшить слишком большие обложки
+          compact-covers                                   сжать файл обложек (с -D%s=true перенести в него обложки из базы)
+          --metrics                                        с любой командой: вывести в конце сводку метрик
+        База данных задаётся свойством -D%s (по умолчанию books.db).
+        С -D%s=true новые обложки сохраняются в файл <база>%s рядом с базой данных.
+        """;
+
+    private BookTrackerCli() {
+    }
+
+    /**
+     * Выполняет команду и завершает процесс с кодом 0 при успехе, 1 при ошибке и 2 при неверных параметрах.
+     *
+     * @param args команда и её параметры
+     */
+    public static void main(String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Выполняет команду.
+     *
+     * @param args команда и её параметры; параметр {@code --metrics} в любом месте выводит сводку {@link Metrics}
+     * @param out поток для результатов
+     * @param err поток для сообщений об ошибках
+     * @return код завершения: 0 при успехе, 1 при ошибке, 2 при неверных параметрах
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        List<String> words = new ArrayList<>(List.of(args));
+        boolean metrics = words.remove("--metrics");
+        if (words.isEmpty() || words.getFirst().equals("help") || words.getFirst().equals("--help")) {
+            out.print(usage());
+            return words.isEmpty() ? 2 : 0;
+        }
+        String command = words.removeFirst();
+        try {
+            DatabaseHelper.createTable();
+            int status = switch (command) {
+                case "list" -> list(words, out);
+                case "search" -> search(words, out);
+                case "import" -> importFile(words, out);
+                case "export" -> exportFile(words, out, err);
+                case "stats" -> stats(words, out);
+                case "progress" -> progress(words, out, err);
+                case "rate" -> rate(words, out, err);
+                case "shrink-covers" -> shrinkCovers(words, out);
+                case "compact-covers" -> compactCovers(words, out);
+                default -> throw new IllegalArgumentException("Неизвестная команда: " + command);
+            };
+            if (metrics) {
+                out.println();
+                out.print(Metrics.dump());
+            }
+            return status;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(usage());
+            return 2;
+        } catch (IOException | SQLException e) {
+            err.println("Ошибка: " + e.getMessage());
+            return 1;
+        } finally {
+            DatabaseHelper.shutdown();
+        }
+    }
+
+    /**
+     * Выводит страницу списка книг.
+     */
+    private static int list(List<String> words, PrintStream out) {
+        BookSort sort = BookSort.ADDED;
+        int offset = 0;
+        int limit = DEFAULT_LIMIT;
+        for (int i = 0; i < words.size(); i++) {
+            switch (words.get(i)) {
+                case "--sort" -> sort = BookSort.valueOf(value(words, ++i).toUpperCase(Locale.ROOT));
+                case "--offset" -> offset = Integer.parseInt(value(words, ++i));
+                case "--limit" -> limit = Integer.parseInt(value(words, ++i));
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + words.get(i));
+            }
+        }
+        for (Book book : DatabaseHelper.getBooksAt(new BookQuery("", FacetSelection.NONE, sort), offset, limit)) {
+            printBook(out, book);
+        }
+        return 0;
+    }
+
+    /**
+     * Выводит результаты полнотекстового поиска по мере чтения из базы.
+     */
+    private static int search(List<String> words, PrintStream out) {
+        StringBuilder text = new StringBuilder();
+        int limit = DEFAULT_LIMIT;
+        for (int i = 0; i < words.size(); i++) {
+            if (words.get(i).equals("--limit")) {
+                limit = Integer.parseInt(value(words, ++i));
+            } else {
+                if (!text.isEmpty()) text.append(' ');
+                text.append(words.get(i));
+            }
+        }
+        BookQuery query = new BookQuery(text.toString(), FacetSelection.NONE);
+        if (!query.hasSearch()) {
+            throw new IllegalArgumentException("Не задана строка поиска");
+        }
+        DatabaseHelper.searchBooks(query, limit, book -> {
+            printBook(out, book);
+            return true;
+        });
+        return 0;
+    }
+
+    /**
+     * Импортирует книги из файла одной транзакцией.
+     */
+    private static int importFile(List<String> words, PrintStream out) throws IOException, SQLException {
+        Path file = Path.of(single(words, "файл"));
+        BookImporter.Result result = new BookImporter().importFile(file, BookImporter.Format.fromFileName(file),
+                (rows, rate) -> out.printf("%d книг, %.0f строк/с%n", rows, rate));
+        out.println("Добавлено книг: " + result.imported() + ", пропущено строк: " + result.skipped() + ".");
+        return 0;
+    }
+
+    /**
+     * Экспортирует все книги в файл. Прерывание (Ctrl+C) отменяет экспорт, и частичный файл удаляется.
+     */
+    private static int exportFile(List<String> words, PrintStream out, PrintStream err)
+            throws IOException, SQLException {
+        Path file = Path.of(single(words, "файл"));
+        BookExporter.Format format = BookExporter.Format.fromFileName(file);
+        BookExporter exporter = new BookExporter();
+        Thread exportThread = Thread.currentThread();
+        Thread cancelHook = new Thread(() -> {
+            exporter.cancel();
+            try {
+                exportThread.join(CANCEL_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(cancelHook);
+        try {
+            BookExporter.Result result = exporter.exportFile(file, format,
+                    (done, total) -> out.printf("%d из %d%n", done, total));
+            out.println("Записано книг: " + result.books() + ", обложек: " + result.covers()
+                    + ", размер: " + result.bytes() + " байт.");
+            return 0;
+        } catch (CancellationException e) {
+            err.println("Экспорт отменён, файл не записан.");
+            return 1;
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(cancelHook);
+            } catch (IllegalStateException e) {
+                // Процесс уже завершается: обработчик отмены работает и ждёт этот поток.
+            }
+        }
+    }
+
+    /**
+     * Выводит статистику библиотеки.
+     */
+    private static int stats(List<String> words, PrintStream out) {
+        if (!words.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестный параметр: " + words.getFirst());
+        }
+        LibraryStatistics.Snapshot stats = new LibraryStatistics().snapshot();
+        LibraryStatistics.Totals totals = stats.totals();
+        out.printf("Книг: %d (читаю: %d, прочитано: %d, %.0f%%)%n", totals.books(), totals.reading(),
+                totals.finished(), 100 * totals.completionRate());
+        out.printf("Страниц: %d из %d%n", totals.readPages(), totals.totalPages());
+
+        LibraryStatistics.Reading reading = stats.reading();
+        out.printf("Прочитано страниц: сегодня %d, за неделю %d, за месяц %d, дней подряд: %d%n",
+                reading.today(), reading.thisWeek(), reading.thisMonth(), reading.streak());
+
+        out.println();
+        out.println("Жанр\tКниг\tСредняя оценка");
+        for (LibraryStatistics.GenreRating genre : stats.ratingByGenre()) {
+            out.printf(Locale.ROOT, "%s\t%d\t%.1f%n", genre.genre(), genre.books(), genre.averageRating());
+        }
+        out.println();
+        out.println("Автор\tКниг\tСредняя оценка");
+        for (LibraryStatistics.AuthorCount author : stats.topAuthors()) {
+            out.printf(Locale.ROOT, "%s\t%d\t%.1f%n", author.author(), author.books(), author.averageRating());
+        }
+        out.println();
+        out.println("Год\tКниг");
+        for (Map.Entry<Integer, Integer> entry : stats.booksByYear().entrySet()) {
+            out.println(entry.getKey() + "\t" + entry.getValue());
+        }
+        return 0;
+    }
+
+    /**
+     * Изменяет текущую страницу книги; изменение попадает в журнал чтения.
+     */
+    private static int progress(List<String> words, PrintStream out, PrintStream err) {
+        if (words.size() != 2) {
+            throw new IllegalArgumentException("Ожидаются id книги и номер страницы");
+        }
+        int id = Integer.parseInt(words.get(0));
+        int page = Integer.parseInt(words.get(1));
+        return change(out, err, id, () -> new DatabaseBookRepository().updateProgress(id, page));
+    }
+
+    /**
+     * Изменяет оценку книги.
+     */
+    private static int rate(List<String> words, PrintStream out, PrintStream err) {
+        if (words.size() != 2) {
+            throw new IllegalArgumentException("Ожидаются id книги и оценка");
+        }
+        int id = Integer.parseInt(words.get(0));
+        double rating = Double.parseDouble(words.get(1));
+        return change(out, err, id, () -> new DatabaseBookRepository().updateRating(id, rating));
+    }
+
+    /**
+     * Выполняет изменение книги и выводит её новое состояние.
+     * Значение вне допустимого диапазона не записывается и, как любой неверный параметр,
+     * завершает команду с кодом 2 и справкой.
+     *
+     * @return 0 при успехе или 1, если книга не найдена или не изменена
+     * @throws IllegalArgumentException если репозиторий отклонил значение
+     */
+    private static int change(PrintStream out, PrintStream err, int id, Runnable update) {
+        try {
+            update.run();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Книга " + id + " не изменена: " + e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            err.println("Книга " + id + " не изменена: " + e.getMessage());
+            return 1;
+        }
+        Book book = DatabaseHelper.getBookById(id);
+        if (book == null) {
+            err.println("Книга " + id + " не найдена");
+            return 1;
+        }
+        printBook(out, book);
+        return 0;
+    }
+
+    /**
+     * Приводит обложки к ограничениям по умолчанию.
+     */
+    private static int shrinkCovers(List<String> words, PrintStream out) {
+        if (!words.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестный параметр: " + words.getFirst());
+        }
+        CoverShrinkJob.Result result = CoverShrinkJob.run(ImageHelper.CoverLimits.DEFAULT);
+        out.println("Обработано обложек: " + result.processed() + ", с ошибками: " + result.failed()
+                + ", размер: " + result.bytesBefore() + " -> " + result.bytesAfter() + " байт.");
+        return result.failed() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Сжимает файл обложек и выводит его размер до и после.
+     */
+    private static int compactCovers(List<String> words, PrintStream out) throws IOException, SQLException {
+        if (!words.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестный параметр: " + words.getFirst());
+        }
+        CoverPack.Result result = DatabaseHelper.coverPack().compact();
+        out.println("Обложек в файле: " + result.covers() + ", перенесено из базы: " + result.moved()
+                + ", размер: " + result.bytesBefore() + " -> " + result.bytesAfter() + " байт.");
+        return 0;
+    }
+
+    /**
+     * Выводит книгу строкой: id, название, автор, год, прочитано страниц из общего числа, оценка, жанры.
+     */
+    private static void printBook(PrintStream out, Book book) {
+        out.printf(Locale.ROOT, "%d\t%s\t%s\t%d\t%d/%d\t%.1f\t%s%n", book.getId(), book.getTitle(), book.getAuthor(),
+                book.getYear(), book.getCurrentPage(), book.getPages(), book.getRating(),
+                book.getGenres() != null ? book.getGenres() : "");
+    }
+
+    /**
+     * Возвращает значение параметра.
+     *
+     * @throws IllegalArgumentException если значение не указано
+     */
+    private static String value(List<String> words, int index) {
+        if (index >= words.size()) {
+            throw new IllegalArgumentException("Не указано значение параметра " + words.get(index - 1));
+        }
+        return words.get(index);
+    }
+
+    /**
+     * Возвращает единственный параметр команды.
+     *
+     * @throws IllegalArgumentException если параметров нет или их больше одного
+     */
+    private static String single(List<String> words, String name) {
+        if (words.size() != 1) {
+            throw new IllegalArgumentException("Ожидается один параметр: " + name);
+        }
+        return words.getFirst();
+    }
+
+    /**
+     * Возвращает описание команд со списком порядков сортировки.
+     */
+    private static String usage() {
+        StringBuilder sorts = new StringBuilder();
+        for (BookSort sort : BookSort.values()) {
+            if (!sorts.isEmpty()) sorts.append(", ");
+            sorts.append(sort.name());
+        }
+        return USAGE.formatted(sorts, CoverPack.ENABLED_PROPERTY, DatabaseHelper.DB_PATH_PROPERTY,
+                CoverPack.ENABLED_PROPERTY, CoverPack.FILE_SUFFIX);
+    }
+}
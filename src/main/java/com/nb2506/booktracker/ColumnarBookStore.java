@@ -0,0 +1,506 @@
+package com.nb2506.booktracker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Компактное колоночное хранилище списка книг в памяти для библиотек из миллионов строк.
+ * <p>
+ * Вместо объекта {@link Book} на каждую книгу поля хранятся по столбцам: id, год, страницы, текущая страница,
+ * оценка и время изменения — в массивах примитивов, признак обложки — в {@link BitSet}. Авторы и строки жанров
+ * сильно повторяются, поэтому кодируются словарём: в строке хранится только код, а каждая строка словаря
+ * существует в памяти один раз. Названия лежат подряд в одном массиве байт UTF-8 со смещением и длиной
+ * каждого названия. Обложки не хранятся, как и в списке книг главного окна.
+ * <p>
+ * Объекты {@link Book} создаются по запросу ({@link #get(int)}, {@link #asList()}) и не удерживаются
+ * хранилищем, а проходы по всей библиотеке (подсчёты, отбор) читают столбцы напрямую по номеру строки.
+ * Хранилище не потокобезопасно.
+ */
+public final class ColumnarBookStore {
+    /** Начальная ёмкость столбцов. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Начальный размер массива названий в байтах. */
+    private static final int INITIAL_ARENA_SIZE = 32 * 1024;
+
+    /** Код отсутствующего значения в столбцах со словарём. */
+    private static final int NULL_CODE = -1;
+
+    /**
+     * Словарь строк: каждой различной строке присваивается код — её номер в порядке добавления.
+     */
+    private static final class Dictionary {
+        /** Строки по кодам. */
+        private final List<String> values = new ArrayList<>();
+
+        /** Коды по строкам. */
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Возвращает код строки, добавляя её в словарь при первой встрече.
+         *
+         * @param value строка или null
+         * @return код строки или {@link #NULL_CODE} для null
+         */
+        int encode(String value) {
+            if (value == null) return NULL_CODE;
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Возвращает строку по коду.
+         *
+         * @param code код строки или {@link #NULL_CODE}
+         * @return строка или null
+         */
+        String decode(int code) {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        /**
+         * Возвращает количество различных строк.
+         *
+         * @return размер словаря
+         */
+        int size() {
+            return values.size();
+        }
+
+        /**
+         * Оценивает объём памяти строк словаря (без служебных объектов карты).
+         *
+         * @return объём в байтах
+         */
+        long estimatedBytes() {
+            long bytes = 0;
+            for (String value : values) {
+                bytes += 40 + value.length() * 2L;
+            }
+            return bytes;
+        }
+    }
+
+    /** Количество книг. */
+    private int size;
+
+    /** id книг. */
+    private int[] ids = new int[INITIAL_CAPACITY];
+
+    /** Годы издания. */
+    private int[] years = new int[INITIAL_CAPACITY];
+
+    /** Количество страниц. */
+    private int[] pages = new int[INITIAL_CAPACITY];
+
+    /** Текущие прочитанные страницы. */
+    private int[] currentPages = new int[INITIAL_CAPACITY];
+
+    /** Оценки. */
+    private double[] ratings = new double[INITIAL_CAPACITY];
+
+    /** Время последнего изменения книг в миллисекундах. */
+    private long[] updatedAt = new long[INITIAL_CAPACITY];
+
+    /** Коды авторов в {@link #authorDictionary}. */
+    private int[] authors = new int[INITIAL_CAPACITY];
+
+    /** Коды строк жанров в {@link #genreDictionary}. */
+    private int[] genres = new int[INITIAL_CAPACITY];
+
+    /** Начала названий в {@link #titleArena}. */
+    private int[] titleStarts = new int[INITIAL_CAPACITY];
+
+    /** Длины названий в байтах. */
+    private int[] titleLengths = new int[INITIAL_CAPACITY];
+
+    /** Признаки наличия обложки по номерам строк. */
+    private final BitSet covers = new BitSet();
+
+    /** Названия подряд в кодировке UTF-8. */
+    private byte[] titleArena = new byte[INITIAL_ARENA_SIZE];
+
+    /** Занятая часть {@link #titleArena}. */
+    private int arenaLength;
+
+    /** Словарь авторов. */
+    private final Dictionary authorDictionary = new Dictionary();
+
+    /** Словарь строк жанров (строка жанров книги целиком, например "Фэнтези, Приключения"). */
+    private final Dictionary genreDictionary = new Dictionary();
+
+    /**
+     * Создаёт хранилище из книг в порядке списка и освобождает лишнюю ёмкость столбцов.
+     *
+     * @param books книги
+     * @return хранилище с копиями полей книг
+     */
+    public static ColumnarBookStore of(Iterable<Book> books) {
+        ColumnarBookStore store = new ColumnarBookStore();
+        for (Book book : books) {
+            store.add(book);
+        }
+        store.trimToSize();
+        return store;
+    }
+
+    /**
+     * Загружает все книги из базы данных в заданном порядке, не создавая списка объектов {@link Book}.
+     *
+     * @param sort порядок книг
+     * @return хранилище (пустое при ошибке чтения)
+     */
+    public static ColumnarBookStore load(BookSort sort) {
+        ColumnarBookStore store = new ColumnarBookStore();
+        DatabaseHelper.forEachBook(sort, store::add);
+        store.trimToSize();
+        return store;
+    }
+
+    /**
+     * Возвращает количество книг.
+     *
+     * @return количество книг
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Добавляет книгу в конец хранилища. Обложка книги не сохраняется, только признак её наличия.
+     *
+     * @param book книга
+     */
+    public void add(Book book) {
+        if (size == ids.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        size++;
+        set(size - 1, book);
+    }
+
+    /**
+     * Заменяет книгу в строке. Прежнее название остаётся в массиве названий до {@link #trimToSize()}.
+     *
+     * @param row номер строки
+     * @param book книга
+     */
+    public void set(int row, Book book) {
+        checkRow(row);
+        ids[row] = book.getId();
+        years[row] = book.getYear();
+        pages[row] = book.getPages();
+        currentPages[row] = book.getCurrentPage();
+        ratings[row] = book.getRating();
+        updatedAt[row] = book.getUpdatedAt();
+        authors[row] = authorDictionary.encode(book.getAuthor());
+        genres[row] = genreDictionary.encode(book.getGenres());
+        covers.set(row, book.hasCover() || book.getCover() != null);
+        storeTitle(row, book.getTitle());
+    }
+
+    /**
+     * Удаляет книгу, сдвигая следующие строки.
+     *
+     * @param row номер строки
+     */
+    public void remove(int row) {
+        checkRow(row);
+        int tail = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, tail);
+        System.arraycopy(years, row + 1, years, row, tail);
+        System.arraycopy(pages, row + 1, pages, row, tail);
+        System.arraycopy(currentPages, row + 1, currentPages, row, tail);
+        System.arraycopy(ratings, row + 1, ratings, row, tail);
+        System.arraycopy(updatedAt, row + 1, updatedAt, row, tail);
+        System.arraycopy(authors, row + 1, authors, row, tail);
+        System.arraycopy(genres, row + 1, genres, row, tail);
+        System.arraycopy(titleStarts, row + 1, titleStarts, row, tail);
+        System.arraycopy(titleLengths, row + 1, titleLengths, row, tail);
+        for (int i = row; i < size - 1; i++) {
+            covers.set(i, covers.get(i + 1));
+        }
+        covers.clear(size - 1);
+        size--;
+    }
+
+    /**
+     * Возвращает номер строки книги по id. Книги не упорядочены по id, поэтому столбец id просматривается целиком.
+     *
+     * @param id идентификатор книги
+     * @return номер строки или -1, если книги нет
+     */
+    public int rowOf(int id) {
+        for (int row = 0; row < size; row++) {
+            if (ids[row] == id) return row;
+        }
+        return -1;
+    }
+
+    /**
+     * Создаёт объект книги из строки хранилища, как если бы книга была только что прочитана из базы данных:
+     * без загруженной обложки и без изменённых полей. Изменения объекта не попадают в хранилище,
+     * для этого служит {@link #set(int, Book)}.
+     *
+     * @param row номер строки
+     * @return новая книга
+     */
+    public Book get(int row) {
+        checkRow(row);
+        Book book = new Book(ids[row], getTitle(row), getAuthor(row), years[row], pages[row], ratings[row],
+                getGenres(row), currentPages[row], covers.get(row));
+        book.setUpdatedAt(updatedAt[row]);
+        book.markClean();
+        return book;
+    }
+
+    /**
+     * Возвращает неизменяемый список книг, элементы которого создаются через {@link #get(int)}
+     * при каждом обращении. Подходит для элементов интерфейса, которые запрашивают только видимые строки.
+     *
+     * @return список книг поверх хранилища
+     */
+    public List<Book> asList() {
+        return new BookView();
+    }
+
+    /**
+     * Список книг, создаваемых по запросу из строк хранилища.
+     */
+    private final class BookView extends AbstractList<Book> implements RandomAccess {
+        @Override
+        public Book get(int index) {
+            return ColumnarBookStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Возвращает id книги.
+     *
+     * @param row номер строки
+     * @return id книги
+     */
+    public int getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * Возвращает название книги, декодируя его из массива названий.
+     *
+     * @param row номер строки
+     * @return название
+     */
+    public String getTitle(int row) {
+        checkRow(row);
+        return new String(titleArena, titleStarts[row], titleLengths[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Возвращает автора книги.
+     *
+     * @param row номер строки
+     * @return автор
+     */
+    public String getAuthor(int row) {
+        return authorDictionary.decode(getAuthorCode(row));
+    }
+
+    /**
+     * Возвращает код автора книги; у книг одного автора коды совпадают.
+     *
+     * @param row номер строки
+     * @return код автора от 0 до {@link #authorCount()} - 1
+     */
+    public int getAuthorCode(int row) {
+        checkRow(row);
+        return authors[row];
+    }
+
+    /**
+     * Возвращает автора по коду.
+     *
+     * @param code код автора
+     * @return автор
+     */
+    public String authorOf(int code) {
+        return authorDictionary.decode(code);
+    }
+
+    /**
+     * Возвращает количество различных авторов.
+     *
+     * @return размер словаря авторов
+     */
+    public int authorCount() {
+        return authorDictionary.size();
+    }
+
+    /**
+     * Возвращает строку жанров книги.
+     *
+     * @param row номер строки
+     * @return жанры через запятую или null
+     */
+    public String getGenres(int row) {
+        checkRow(row);
+        return genreDictionary.decode(genres[row]);
+    }
+
+    /**
+     * Возвращает год издания книги.
+     *
+     * @param row номер строки
+     * @return год издания
+     */
+    public int getYear(int row) {
+        checkRow(row);
+        return years[row];
+    }
+
+    /**
+     * Возвращает количество страниц книги.
+     *
+     * @param row номер строки
+     * @return количество страниц
+     */
+    public int getPages(int row) {
+        checkRow(row);
+        return pages[row];
+    }
+
+    /**
+     * Возвращает текущую прочитанную страницу книги.
+     *
+     * @param row номер строки
+     * @return текущая страница
+     */
+    public int getCurrentPage(int row) {
+        checkRow(row);
+        return currentPages[row];
+    }
+
+    /**
+     * Возвращает оценку книги.
+     *
+     * @param row номер строки
+     * @return оценка
+     */
+    public double getRating(int row) {
+        checkRow(row);
+        return ratings[row];
+    }
+
+    /**
+     * Возвращает признак наличия обложки у книги.
+     *
+     * @param row номер строки
+     * @return true, если у книги есть обложка
+     */
+    public boolean hasCover(int row) {
+        checkRow(row);
+        return covers.get(row);
+    }
+
+    /**
+     * Сжимает столбцы до количества книг и убирает из массива названий прежние названия заменённых
+     * и удалённых книг.
+     */
+    public void trimToSize() {
+        byte[] arena = new byte[Math.max(1, totalTitleBytes())];
+        int length = 0;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(titleArena, titleStarts[row], arena, length, titleLengths[row]);
+            titleStarts[row] = length;
+            length += titleLengths[row];
+        }
+        titleArena = arena;
+        arenaLength = length;
+        grow(size);
+    }
+
+    /**
+     * Оценивает объём памяти, занятой хранилищем: массивы столбцов, массив названий и строки словарей.
+     * Служебные объекты карт словарей не учитываются.
+     *
+     * @return объём в байтах
+     */
+    public long estimatedBytes() {
+        long columns = (long) ids.length * (4 * 8 + 8 + 8);
+        return columns + covers.size() / 8 + titleArena.length
+                + authorDictionary.estimatedBytes() + genreDictionary.estimatedBytes();
+    }
+
+    /**
+     * Сохраняет название строки в конец массива названий.
+     */
+    private void storeTitle(int row, String title) {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        if (arenaLength + bytes.length > titleArena.length) {
+            long capacity = Math.max((long) arenaLength + bytes.length, titleArena.length + (titleArena.length >> 1));
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Названия книг не помещаются в массив названий");
+            }
+            titleArena = Arrays.copyOf(titleArena, (int) capacity);
+        }
+        System.arraycopy(bytes, 0, titleArena, arenaLength, bytes.length);
+        titleStarts[row] = arenaLength;
+        titleLengths[row] = bytes.length;
+        arenaLength += bytes.length;
+    }
+
+    /**
+     * Возвращает суммарную длину названий текущих строк в байтах.
+     */
+    private int totalTitleBytes() {
+        int total = 0;
+        for (int row = 0; row < size; row++) {
+            total += titleLengths[row];
+        }
+        return total;
+    }
+
+    /**
+     * Меняет ёмкость всех столбцов.
+     */
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        years = Arrays.copyOf(years, capacity);
+        pages = Arrays.copyOf(pages, capacity);
+        currentPages = Arrays.copyOf(currentPages, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        titleStarts = Arrays.copyOf(titleStarts, capacity);
+        titleLengths = Arrays.copyOf(titleLengths, capacity);
+    }
+
+    /**
+     * Проверяет номер строки.
+     *
+     * @throws IndexOutOfBoundsException если строки нет
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне хранилища из " + size + " книг");
+        }
+    }
+}
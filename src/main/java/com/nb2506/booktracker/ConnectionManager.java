@@ -0,0 +1,249 @@
+package com.nb2506.booktracker;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Менеджер долгоживущих соединений с базой данных SQLite.
+ * Держит одно соединение для записи и небольшой ограниченный пул соединений для чтения.
+ * В режиме WAL читатели не блокируют писателя, поэтому запись сериализуется
+ * только между самими операциями записи.
+ */
+public final class ConnectionManager implements AutoCloseable {
+    /** Максимальное количество соединений для чтения. */
+    private static final int READER_POOL_SIZE = 3;
+
+    /** Сколько секунд ждать свободное соединение для чтения. */
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    /** Прагмы, применяемые один раз к каждому открываемому соединению. */
+    private static final String[] CONNECTION_PRAGMAS = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA mmap_size=268435456",
+            "PRAGMA cache_size=-16000",
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA foreign_keys=ON"
+    };
+
+    /**
+     * Работа с соединением, которая может завершиться ошибкой SQL.
+     *
+     * @param <T> тип результата
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        /**
+         * Выполняет работу с переданным соединением.
+         *
+         * @param connection соединение из пула
+         * @return результат работы
+         * @throws SQLException при ошибках базы данных
+         */
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /** Адрес базы данных JDBC. */
+    private final String url;
+
+    /** Единственное соединение для записи. */
+    private final PooledConnection writer;
+
+    /** Блокировка, сериализующая доступ к соединению для записи. */
+    private final ReentrantLock writerLock = new ReentrantLock();
+
+    /** Свободные соединения для чтения. */
+    private final BlockingQueue<PooledConnection> idleReaders = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+
+    /** Все открытые соединения для чтения (для закрытия при завершении). */
+    private final List<PooledConnection> openedReaders = new ArrayList<>();
+
+    /** Признак того, что менеджер закрыт. */
+    private volatile boolean closed;
+
+    /** Действие после каждой внешней операции записи, когда её изменения уже зафиксированы и видны читателям. */
+    private volatile Runnable afterWrite = () -> { };
+
+    /**
+     * Открывает соединение для записи к указанной базе данных.
+     * Соединения для чтения открываются по мере необходимости.
+     *
+     * @param url адрес базы данных JDBC
+     * @throws SQLException при ошибках подключения
+     */
+    public ConnectionManager(String url) throws SQLException {
+        this.url = url;
+        this.writer = open();
+    }
+
+    /**
+     * Задаёт действие, выполняемое в конце каждой внешней операции {@link #write} и {@link #transaction}
+     * под блокировкой записи. К этому моменту фиксация уже завершилась, поэтому соединения для чтения
+     * видят все изменения операции. Вложенные операции записи действие не выполняют.
+     *
+     * @param action действие после записи
+     */
+    public void setAfterWrite(Runnable action) {
+        afterWrite = action;
+    }
+
+    /**
+     * Выполняет операцию чтения на одном из соединений пула для чтения.
+     *
+     * @param work операция чтения
+     * @param <T> тип результата
+     * @return результат операции
+     * @throws SQLException при ошибках базы данных или если свободное соединение не дождались
+     */
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        PooledConnection reader = acquireReader();
+        try {
+            return work.run(reader);
+        } finally {
+            idleReaders.offer(reader);
+        }
+    }
+
+    /**
+     * Выполняет операцию записи на единственном соединении для записи в режиме автофиксации.
+     *
+     * @param work операция записи
+     * @param <T> тип результата
+     * @return результат операции
+     * @throws SQLException при ошибках базы данных
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            ensureOpen();
+            return work.run(writer);
+        } finally {
+            try {
+                if (writerLock.getHoldCount() == 1) {
+                    afterWrite.run();
+                }
+            } finally {
+                writerLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Выполняет операцию записи в одной транзакции.
+     * При ошибке транзакция откатывается, а исключение пробрасывается дальше.
+     * Вложенный вызов внутри уже открытой транзакции выполняется в ней же.
+     *
+     * @param work операция записи
+     * @param <T> тип результата
+     * @return результат операции
+     * @throws SQLException при ошибках базы данных
+     */
+    public <T> T transaction(SqlWork<T> work) throws SQLException {
+        return write(conn -> {
+            Connection connection = conn.connection();
+            if (!connection.getAutoCommit()) {
+                return work.run(conn);
+            }
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(conn);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Закрывает все соединения. Дожидается завершения текущей операции записи.
+     */
+    @Override
+    public void close() {
+        writerLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            writer.close();
+        } finally {
+            writerLock.unlock();
+        }
+        synchronized (openedReaders) {
+            openedReaders.forEach(PooledConnection::close);
+            openedReaders.clear();
+        }
+        idleReaders.clear();
+    }
+
+    /**
+     * Берёт свободное соединение для чтения или открывает новое, пока пул не заполнен.
+     *
+     * @return соединение для чтения
+     * @throws SQLException если менеджер закрыт или свободное соединение не дождались
+     */
+    private PooledConnection acquireReader() throws SQLException {
+        ensureOpen();
+        PooledConnection reader = idleReaders.poll();
+        if (reader != null) return reader;
+
+        synchronized (openedReaders) {
+            if (openedReaders.size() < READER_POOL_SIZE) {
+                reader = open();
+                openedReaders.add(reader);
+                return reader;
+            }
+        }
+
+        try {
+            reader = idleReaders.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Нет свободного соединения для чтения");
+        }
+        return reader;
+    }
+
+    /**
+     * Открывает новое соединение и применяет к нему прагмы.
+     *
+     * @return настроенное соединение
+     * @throws SQLException при ошибках подключения
+     */
+    private PooledConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            for (String pragma : CONNECTION_PRAGMAS) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new PooledConnection(connection);
+    }
+
+    /**
+     * Проверяет, что менеджер ещё не закрыт.
+     *
+     * @throws SQLException если менеджер закрыт
+     */
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Менеджер соединений закрыт");
+        }
+    }
+}
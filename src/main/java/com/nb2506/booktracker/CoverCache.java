@@ -0,0 +1,296 @@
+package com.nb2506.booktracker;
+
+import javafx.scene.image.Image;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Кэш декодированных обложек, уменьшенных до размера, в котором они показываются.
+ * Ключ — id книги и целевой размер, поэтому одна обложка в разных окнах кэшируется отдельно.
+ * <p>
+ * Объём кэша ограничен суммарным размером пикселей (ширина × высота × 4 байта), а не количеством
+ * записей. При превышении лимита дольше всего не использованные обложки вытесняются
+ * в мягкие ссылки: пока сборщик мусора их не освободил, они возвращаются без повторного декодирования.
+ * <p>
+ * Обложка, прочитанная из базы до изменения книги, не должна попасть в кэш после него. Поэтому перед
+ * чтением берётся номер поколения книги ({@link #version(int)}), а {@link #put(int, long, int, int, Image)}
+ * отбрасывает обложку, если с тех пор обложка книги сбрасывалась.
+ * <p>
+ * Счётчики попаданий, промахов и вытеснений доступны для подбора лимита.
+ * Все методы потокобезопасны.
+ */
+public final class CoverCache {
+    /** Лимит по умолчанию: 32 МБ пикселей, около сотни обложек размера панели информации. */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /** Поля книги, при изменении которых декодированные обложки устаревают. */
+    private static final Set<Book.Field> COVER_FIELDS = EnumSet.of(Book.Field.COVER);
+
+    /** Количество номеров поколения; книги с одинаковым остатком id делят один номер. */
+    private static final int VERSION_STRIPES = 256;
+
+    /**
+     * Ключ кэша.
+     *
+     * @param bookId id книги
+     * @param width целевая ширина
+     * @param height целевая высота
+     */
+    private record Key(int bookId, int width, int height) {
+    }
+
+    /** Мягкая ссылка на вытесненную обложку, знающая свой ключ для очистки. */
+    private static final class SoftEntry extends SoftReference<Image> {
+        /** Ключ записи. */
+        private final Key key;
+
+        SoftEntry(Key key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    /** Максимальный суммарный размер пикселей обложек, удерживаемых жёсткими ссылками. */
+    private final long maxBytes;
+
+    /** Обложки, удерживаемые жёсткими ссылками, в порядке последнего обращения. */
+    private final LinkedHashMap<Key, Image> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Вытесненные обложки, которые ещё может освободить сборщик мусора. */
+    private final Map<Key, SoftEntry> softEntries = new HashMap<>();
+
+    /** Очередь мягких ссылок, освобождённых сборщиком мусора. */
+    private final ReferenceQueue<Image> collected = new ReferenceQueue<>();
+
+    /**
+     * Номер поколения обложек книг по остатку id; увеличивается при сбросе обложки.
+     * Общий номер у нескольких книг лишь изредка отбрасывает актуальную обложку, зато память не растёт с библиотекой.
+     */
+    private final long[] versions = new long[VERSION_STRIPES];
+
+    /** Текущий суммарный размер пикселей в {@link #entries}. */
+    private long currentBytes;
+
+    /** Количество попаданий (включая попадания в мягкие ссылки). */
+    private long hits;
+
+    /** Количество попаданий в ещё не освобождённые мягкие ссылки. */
+    private long softHits;
+
+    /** Количество промахов. */
+    private long misses;
+
+    /** Количество вытеснений из жёстких ссылок. */
+    private long evictions;
+
+    /**
+     * Создаёт кэш с лимитом по умолчанию.
+     */
+    public CoverCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Создаёт кэш с заданным лимитом.
+     *
+     * @param maxBytes максимальный суммарный размер пикселей в байтах
+     */
+    public CoverCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Лимит кэша должен быть положительным: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Возвращает обложку из кэша.
+     *
+     * @param bookId id книги
+     * @param width целевая ширина
+     * @param height целевая высота
+     * @return обложка или null, если её нет в кэше
+     */
+    public synchronized Image get(int bookId, int width, int height) {
+        purgeCollected();
+        Key key = new Key(bookId, width, height);
+        Image image = entries.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        SoftEntry softEntry = softEntries.remove(key);
+        image = softEntry != null ? softEntry.get() : null;
+        if (image != null) {
+            hits++;
+            softHits++;
+            store(key, image);
+            return image;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Возвращает номер поколения обложки книги. Его нужно взять до чтения обложки из базы
+     * и передать в {@link #put(int, long, int, int, Image)}.
+     *
+     * @param bookId id книги
+     * @return номер поколения
+     */
+    public synchronized long version(int bookId) {
+        return versions[stripe(bookId)];
+    }
+
+    /**
+     * Помещает обложку в кэш, если обложка книги не сбрасывалась после получения номера поколения.
+     *
+     * @param bookId id книги
+     * @param version номер поколения, полученный {@link #version(int)} до чтения обложки
+     * @param width целевая ширина
+     * @param height целевая высота
+     * @param image декодированная обложка
+     */
+    public synchronized void put(int bookId, long version, int width, int height, Image image) {
+        if (versions[stripe(bookId)] != version) return;
+        purgeCollected();
+        Key key = new Key(bookId, width, height);
+        softEntries.remove(key);
+        Image previous = entries.remove(key);
+        if (previous != null) {
+            currentBytes -= pixelBytes(previous);
+        }
+        store(key, image);
+    }
+
+    /**
+     * Удаляет из кэша все размеры обложки одной книги.
+     *
+     * @param bookId id книги
+     */
+    public synchronized void invalidate(int bookId) {
+        versions[stripe(bookId)]++;
+        Iterator<Map.Entry<Key, Image>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Image> entry = iterator.next();
+            if (entry.getKey().bookId() == bookId) {
+                currentBytes -= pixelBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+        softEntries.keySet().removeIf(key -> key.bookId() == bookId);
+    }
+
+    /**
+     * Очищает кэш. Счётчики не сбрасываются.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+        entries.clear();
+        softEntries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Сбрасывает устаревшие обложки по событию изменения книг.
+     * Изменение книги без смены обложки (страница, рейтинг) кэш не затрагивает.
+     *
+     * @param change событие изменения
+     */
+    public void onBookChanged(BookChange change) {
+        switch (change.type()) {
+            case UPDATED -> {
+                if (change.touches(COVER_FIELDS)) invalidate(change.id());
+            }
+            case DELETED -> invalidate(change.id());
+            case RELOADED -> clear();
+            case INSERTED -> { }
+        }
+    }
+
+    /** Возвращает количество попаданий. */
+    public synchronized long getHits() { return hits; }
+
+    /** Возвращает количество попаданий в мягкие ссылки (входит в {@link #getHits()}). */
+    public synchronized long getSoftHits() { return softHits; }
+
+    /** Возвращает количество промахов. */
+    public synchronized long getMisses() { return misses; }
+
+    /** Возвращает количество вытеснений из жёстких ссылок. */
+    public synchronized long getEvictions() { return evictions; }
+
+    /** Возвращает текущий суммарный размер пикселей, удерживаемых жёсткими ссылками. */
+    public synchronized long getCurrentBytes() { return currentBytes; }
+
+    /** Возвращает лимит суммарного размера пикселей. */
+    public long getMaxBytes() { return maxBytes; }
+
+    /**
+     * Возвращает сводку счётчиков для журнала.
+     *
+     * @return строка со счётчиками
+     */
+    @Override
+    public synchronized String toString() {
+        return "CoverCache{hits=" + hits + ", softHits=" + softHits + ", misses=" + misses
+                + ", evictions=" + evictions + ", bytes=" + currentBytes + "/" + maxBytes + "}";
+    }
+
+    /**
+     * Сохраняет обложку жёсткой ссылкой и вытесняет старые обложки сверх лимита.
+     * Обложка больше всего лимита сразу сохраняется только мягкой ссылкой.
+     */
+    private void store(Key key, Image image) {
+        long size = pixelBytes(image);
+        if (size > maxBytes) {
+            softEntries.put(key, new SoftEntry(key, image, collected));
+            return;
+        }
+        entries.put(key, image);
+        currentBytes += size;
+        Iterator<Map.Entry<Key, Image>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, Image> eldest = iterator.next();
+            iterator.remove();
+            currentBytes -= pixelBytes(eldest.getValue());
+            softEntries.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue(), collected));
+            evictions++;
+        }
+    }
+
+    /**
+     * Возвращает индекс номера поколения книги.
+     */
+    private static int stripe(int bookId) {
+        return Math.floorMod(bookId, VERSION_STRIPES);
+    }
+
+    /**
+     * Удаляет записи мягких ссылок, освобождённых сборщиком мусора.
+     */
+    private void purgeCollected() {
+        SoftEntry entry;
+        while ((entry = (SoftEntry) collected.poll()) != null) {
+            softEntries.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Оценивает размер декодированного изображения: 4 байта на пиксель.
+     *
+     * @param image изображение
+     * @return размер в байтах
+     */
+    private static long pixelBytes(Image image) {
+        return 4L * (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight());
+    }
+}
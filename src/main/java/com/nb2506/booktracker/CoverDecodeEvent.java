@@ -0,0 +1,128 @@
+package com.nb2506.booktracker;
+
+import javafx.scene.image.Image;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Замер декодирования обложки в {@link Image}. Длительность попадает в гистограмму {@code cover.decode}
+ * реестра {@link Metrics}, а размер декодированных данных — в счётчик {@code cover.decode.bytes}.
+ * При запущенном Java Flight Recorder декодирование также записывается событием
+ * {@code com.nb2506.booktracker.CoverDecode} (см. {@link DatabaseEvent} о том, почему оно создаётся не всегда).
+ */
+public final class CoverDecodeEvent {
+    /**
+     * Событие Java Flight Recorder для декодирования обложки.
+     */
+    @Name("com.nb2506.booktracker.CoverDecode")
+    @Label("Декодирование обложки")
+    @Category({"BookTracker", "Обложки"})
+    @Description("Декодирование обложки или миниатюры из JPEG или PNG в изображение JavaFX")
+    @StackTrace(false)
+    static final class Recorded extends Event {
+        /** Место вызова. */
+        @Label("Источник")
+        String source;
+
+        /** Размер закодированного изображения. */
+        @Label("Размер данных")
+        @DataAmount
+        int encodedBytes;
+
+        /** Запрошенная ширина (0 — исходный размер). */
+        @Label("Запрошенная ширина")
+        int requestedWidth;
+
+        /** Запрошенная высота (0 — исходный размер). */
+        @Label("Запрошенная высота")
+        int requestedHeight;
+
+        /** Ширина декодированного изображения. */
+        @Label("Ширина")
+        int width;
+
+        /** Высота декодированного изображения. */
+        @Label("Высота")
+        int height;
+
+        /** Признак ошибки декодирования. */
+        @Label("Ошибка")
+        boolean failed;
+    }
+
+    /** Место вызова. */
+    private final String source;
+
+    /** Размер закодированного изображения. */
+    private final int encodedBytes;
+
+    /** Запрошенная ширина (0 — исходный размер). */
+    private final int requestedWidth;
+
+    /** Запрошенная высота (0 — исходный размер). */
+    private final int requestedHeight;
+
+    /** Время начала декодирования. */
+    private final long startNanos;
+
+    /** Событие JFR или null, если Flight Recorder не запущен. */
+    private final Recorded recorded;
+
+    private CoverDecodeEvent(String source, int encodedBytes, int requestedWidth, int requestedHeight) {
+        this.source = source;
+        this.encodedBytes = encodedBytes;
+        this.requestedWidth = requestedWidth;
+        this.requestedHeight = requestedHeight;
+        this.recorded = FlightRecorder.isInitialized() ? new Recorded() : null;
+        if (recorded != null) {
+            recorded.begin();
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Начинает отсчёт декодирования.
+     *
+     * @param source место вызова
+     * @param encodedBytes размер закодированного изображения
+     * @param requestedWidth запрошенная ширина (0 — исходный размер)
+     * @param requestedHeight запрошенная высота (0 — исходный размер)
+     * @return начатый замер
+     */
+    static CoverDecodeEvent start(String source, int encodedBytes, int requestedWidth, int requestedHeight) {
+        return new CoverDecodeEvent(source, encodedBytes, requestedWidth, requestedHeight);
+    }
+
+    /**
+     * Завершает замер по результату декодирования.
+     *
+     * @param image декодированное изображение
+     * @return то же изображение
+     */
+    Image finish(Image image) {
+        boolean failed = image.isError();
+        Metrics.record("cover.decode", System.nanoTime() - startNanos);
+        Metrics.add("cover.decode.bytes", encodedBytes);
+        if (failed) Metrics.increment("cover.decode.errors");
+        if (recorded != null) {
+            recorded.end();
+            if (recorded.shouldCommit()) {
+                recorded.source = source;
+                recorded.encodedBytes = encodedBytes;
+                recorded.requestedWidth = requestedWidth;
+                recorded.requestedHeight = requestedHeight;
+                recorded.width = (int) image.getWidth();
+                recorded.height = (int) image.getHeight();
+                recorded.failed = failed;
+                recorded.commit();
+            }
+        }
+        return image;
+    }
+}
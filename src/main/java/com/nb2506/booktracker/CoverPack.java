@@ -0,0 +1,475 @@
+package com.nb2506.booktracker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Файл обложек вне базы данных: обложки дописываются в конец файла, а их смещение и длина хранятся
+ * в строке таблицы covers (столбцы pack_offset и pack_length) рядом с хэшем и счётчиком ссылок.
+ * Так BLOB обложек не попадают в страницы SQLite, а VACUUM и резервные копии базы остаются быстрыми.
+ * <p>
+ * Файл читается через {@link FileChannel#map}: обложка возвращается срезом отображённой памяти без копирования
+ * ({@link #slice(long, int)}) и в таком виде передаётся на декодирование в {@link ImageHelper#toImage(ByteBuffer, int, int)}.
+ * Файл отображается частями по {@value #SEGMENT_SIZE} байт; обложка никогда не пересекает границу части,
+ * поэтому каждый срез лежит в одном отображении и файл может быть больше 2 ГБ.
+ * <p>
+ * Новые обложки пишутся в файл, только если задано свойство {@value #ENABLED_PROPERTY}; обложки, уже
+ * сохранённые в файле или в базе, читаются при любой настройке, поэтому {@link Book#getCover()} ведёт себя одинаково.
+ * Удалённые и заменённые обложки остаются в файле, пока его не сожмёт {@link #compact()}.
+ * Файл лежит рядом с базой данных и называется как она с суффиксом {@value #FILE_SUFFIX}.
+ */
+public final class CoverPack implements AutoCloseable {
+    /** Свойство, при котором новые обложки сохраняются в файл обложек, а не в базу данных. */
+    public static final String ENABLED_PROPERTY = "booktracker.coverpack";
+
+    /** Суффикс имени файла обложек, добавляемый к имени файла базы данных. */
+    public static final String FILE_SUFFIX = ".covers";
+
+    /** Размер одной отображаемой части файла. */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    /** Текст запроса для выборки обложек, хранящихся в файле, в порядке их расположения. */
+    private static final String SELECT_PACKED_SQL =
+            "SELECT hash, pack_offset, pack_length FROM covers WHERE pack_offset IS NOT NULL ORDER BY pack_offset";
+
+    /** Текст запроса для выборки первой и последней обложки в файле, по которым сверяется файл после сбоя. */
+    private static final String SELECT_BOUNDARY_SQL = """
+        SELECT hash, pack_offset, pack_length FROM covers
+        WHERE pack_offset IN ((SELECT min(pack_offset) FROM covers), (SELECT max(pack_offset) FROM covers))
+    """;
+
+    /** Текст запроса для выборки хэшей обложек, хранящихся в базе данных. */
+    private static final String SELECT_UNPACKED_SQL = "SELECT hash FROM covers WHERE pack_offset IS NULL";
+
+    /** Текст запроса для чтения обложки, хранящейся в базе данных. */
+    private static final String SELECT_UNPACKED_COVER_SQL = "SELECT cover FROM covers WHERE hash = ?";
+
+    /** Текст запроса для записи нового расположения обложки в файле. */
+    private static final String UPDATE_LOCATION_SQL =
+            "UPDATE covers SET cover = X'', pack_offset = ?, pack_length = ? WHERE hash = ?";
+
+    /**
+     * Итог сжатия файла обложек.
+     *
+     * @param covers количество обложек в новом файле
+     * @param moved сколько из них перенесено из базы данных
+     * @param bytesBefore размер файла до сжатия
+     * @param bytesAfter размер файла после сжатия
+     */
+    public record Result(int covers, int moved, long bytesBefore, long bytesAfter) {
+    }
+
+    /**
+     * Расположение обложки в файле.
+     *
+     * @param hash хэш обложки
+     * @param offset смещение
+     * @param length длина
+     */
+    private record Location(byte[] hash, long offset, int length) {
+    }
+
+    /** Путь к файлу обложек. */
+    private final Path file;
+
+    /**
+     * Блокировка расположения обложек. Чтение смещения из базы вместе с чтением из файла
+     * выполняется под блокировкой чтения, а {@link #compact()} заменяет файл и смещения под блокировкой записи.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Открытый файл или null, если он ещё не открывался. */
+    private FileChannel channel;
+
+    /** Признак того, что {@link #channel} открыт для записи. */
+    private boolean writable;
+
+    /** Отображённые части файла по номерам; null — часть ещё не отображалась. */
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     * Создаёт хранилище; файл открывается при первом обращении и создаётся при первой записи.
+     *
+     * @param file путь к файлу обложек
+     */
+    CoverPack(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Возвращает признак того, что новые обложки сохраняются в файл обложек.
+     *
+     * @return true, если задано свойство {@value #ENABLED_PROPERTY}
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Возвращает путь к файлу обложек.
+     *
+     * @return путь к файлу
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Возвращает блокировку чтения, под которой смещение обложки читается из базы и используется для чтения файла.
+     *
+     * @return блокировка чтения
+     */
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Дописывает обложку в конец файла и сбрасывает её на диск.
+     * Если обложка пересекла бы границу отображаемой части, она пишется с начала следующей части.
+     *
+     * @param bytes обложка
+     * @return смещение обложки в файле
+     * @throws IOException при ошибке записи
+     */
+    synchronized long append(byte[] bytes) throws IOException {
+        if (bytes.length > SEGMENT_SIZE) {
+            throw new IOException("Обложка больше " + SEGMENT_SIZE + " байт");
+        }
+        FileChannel out = channel(true);
+        long offset = placement(out.size(), bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer, offset + buffer.position());
+        }
+        out.force(false);
+        Metrics.add("coverpack.append.bytes", bytes.length);
+        return offset;
+    }
+
+    /**
+     * Возвращает обложку срезом отображённого файла без копирования.
+     * Срез остаётся действительным и после {@link #compact()}: он держит отображение старого файла.
+     *
+     * @param offset смещение обложки
+     * @param length длина обложки
+     * @return буфер только для чтения с позицией 0 и лимитом length
+     * @throws IOException если файл не удалось отобразить или обложка выходит за его конец
+     */
+    ByteBuffer slice(long offset, int length) throws IOException {
+        int index = (int) (offset / SEGMENT_SIZE);
+        int start = (int) (offset % SEGMENT_SIZE);
+        MappedByteBuffer segment = segment(index, start + length);
+        Metrics.add("coverpack.read.bytes", length);
+        return segment.slice(start, length);
+    }
+
+    /**
+     * Возвращает отображение части файла, содержащее не меньше end байт от её начала.
+     * Часть отображается заново, если файл вырос после предыдущего отображения.
+     */
+    private synchronized MappedByteBuffer segment(int index, int end) throws IOException {
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        }
+        MappedByteBuffer segment = segments[index];
+        if (segment == null || segment.capacity() < end) {
+            FileChannel in = channel(false);
+            long start = (long) index * SEGMENT_SIZE;
+            long size = Math.min(SEGMENT_SIZE, in.size() - start);
+            if (size < end) {
+                throw new IOException("Обложка за концом файла " + file);
+            }
+            segment = in.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * Открывает файл, если он ещё не открыт. Для чтения файл открывается только на чтение, поэтому
+     * отсутствующий файл обложек приводит к ошибке, а не к созданию пустого файла; для записи файл
+     * создаётся при необходимости, а открытый на чтение файл открывается заново. Уже отображённые части
+     * при этом остаются действительными.
+     *
+     * @param write нужен ли файл для записи
+     */
+    private synchronized FileChannel channel(boolean write) throws IOException {
+        if (channel != null && write && !writable) {
+            channel.close();
+            channel = null;
+        }
+        if (channel == null) {
+            channel = write
+                    ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(file, StandardOpenOption.READ);
+            writable = write;
+        }
+        return channel;
+    }
+
+    /**
+     * Возвращает смещение для обложки заданной длины, дописываемой в файл длиной end:
+     * конец файла или начало следующей части, если обложка не помещается в текущую.
+     */
+    private static long placement(long end, int length) {
+        long segmentEnd = (end / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        return end + length <= segmentEnd ? end : segmentEnd;
+    }
+
+    /**
+     * Возвращает текущий размер файла.
+     *
+     * @return размер в байтах или 0, если файла нет
+     * @throws IOException при ошибке чтения размера
+     */
+    public synchronized long size() throws IOException {
+        if (channel != null) return channel.size();
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    /**
+     * Приводит файл обложек в соответствие с базой данных после сбоя во время {@link #compact()}.
+     * Оставшийся файл .old означает, что сжатие прервалось после замены файла: если новые смещения
+     * успели зафиксироваться, верен текущий файл и .old удаляется, иначе на место возвращается .old.
+     * Какой файл верен, определяется по хэшам первой и последней обложки, записанных в базе.
+     * Если ни один файл не совпадает с базой, оба остаются на диске.
+     *
+     * @throws SQLException при ошибке базы данных
+     * @throws IOException при ошибке чтения или замены файла
+     */
+    void recover() throws SQLException, IOException {
+        Path backup = backupFile();
+        Files.deleteIfExists(compactFile());
+        if (!Files.exists(backup)) return;
+        List<Location> boundary = DatabaseHelper.connections().read(conn -> {
+            List<Location> locations = new ArrayList<>();
+            try (ResultSet rs = conn.prepare(SELECT_BOUNDARY_SQL).executeQuery()) {
+                while (rs.next()) {
+                    locations.add(new Location(rs.getBytes("hash"), rs.getLong("pack_offset"), rs.getInt("pack_length")));
+                }
+            }
+            return locations;
+        });
+        lock.writeLock().lock();
+        try {
+            if (contains(file, boundary)) {
+                Files.delete(backup);
+            } else if (contains(backup, boundary)) {
+                restore(backup);
+            } else {
+                System.err.println("Файл обложек " + file + " не совпадает с базой данных, " + backup + " сохранён");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет, что обложки лежат в файле по указанным расположениям: их содержимое совпадает с хэшем.
+     */
+    private static boolean contains(Path path, List<Location> locations) throws IOException {
+        if (!Files.exists(path)) return locations.isEmpty();
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Location location : locations) {
+                if (location.offset() + location.length() > in.size()) return false;
+                ByteBuffer buffer = ByteBuffer.allocate(location.length());
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer, location.offset() + buffer.position()) < 0) return false;
+                }
+                if (!Arrays.equals(DatabaseHelper.coverHash(buffer.array()), location.hash())) return false;
+            }
+        }
+        return true;
+    }
+
+    /** Путь к временному файлу, в который {@link #compact()} копирует живые обложки. */
+    private Path compactFile() {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+
+    /** Путь, под которым {@link #compact()} хранит старый файл до фиксации новых смещений. */
+    private Path backupFile() {
+        return file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    /**
+     * Сжимает файл обложек: живые обложки копируются в новый файл подряд, без удалённых и заменённых,
+     * после чего новый файл заменяет старый. Если включена запись в файл ({@link #isEnabled()}),
+     * в новый файл переносятся и обложки, которые хранятся в базе данных, после чего файл базы
+     * сжимается командой VACUUM.
+     * <p>
+     * Всё сжатие выполняется в одной транзакции записи, поэтому новые обложки во время него не добавляются.
+     * Чтение обложек блокируется только на время замены файла и фиксации новых смещений.
+     * При ошибке старый файл и смещения остаются прежними. Файлы .compact и .old, оставшиеся от прерванного
+     * сжатия, сначала сверяются с базой ({@link #recover()}) и удаляются.
+     *
+     * @return итог сжатия
+     * @throws SQLException при ошибке базы данных
+     * @throws IOException при ошибке записи файла
+     */
+    public Result compact() throws SQLException, IOException {
+        Path target = compactFile();
+        Path backup = backupFile();
+        recover();
+        Files.deleteIfExists(backup);
+        long bytesBefore = size();
+        int[] moved = {0};
+        boolean[] swapped = {false};
+        int covers;
+        try {
+            covers = DatabaseHelper.connections().transaction(conn -> {
+                List<Location> locations = new ArrayList<>();
+                try (ResultSet rs = conn.prepare(SELECT_PACKED_SQL).executeQuery()) {
+                    while (rs.next()) {
+                        locations.add(new Location(rs.getBytes("hash"), rs.getLong("pack_offset"), rs.getInt("pack_length")));
+                    }
+                }
+                List<byte[]> unpacked = new ArrayList<>();
+                if (isEnabled()) {
+                    try (ResultSet rs = conn.prepare(SELECT_UNPACKED_SQL).executeQuery()) {
+                        while (rs.next()) {
+                            unpacked.add(rs.getBytes("hash"));
+                        }
+                    }
+                }
+
+                PreparedStatement update = conn.prepare(UPDATE_LOCATION_SQL);
+                try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    FileChannel in = locations.isEmpty() ? null : channel(false);
+                    for (Location location : locations) {
+                        long offset = placement(out.size(), location.length());
+                        long copied = 0;
+                        while (copied < location.length()) {
+                            out.position(offset + copied);
+                            long transferred =
+                                    in.transferTo(location.offset() + copied, location.length() - copied, out);
+                            if (transferred <= 0) {
+                                // Файл короче смещений в базе (обрезан или восстановлен не полностью).
+                                throw new EOFException("Обложка за концом файла " + file);
+                            }
+                            copied += transferred;
+                        }
+                        setLocation(update, location.hash(), offset, location.length());
+                    }
+                    PreparedStatement select = conn.prepare(SELECT_UNPACKED_COVER_SQL);
+                    for (byte[] hash : unpacked) {
+                        select.setBytes(1, hash);
+                        byte[] cover;
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (!rs.next()) continue;
+                            cover = rs.getBytes("cover");
+                        }
+                        long offset = placement(out.size(), cover.length);
+                        ByteBuffer buffer = ByteBuffer.wrap(cover);
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer, offset + buffer.position());
+                        }
+                        setLocation(update, hash, offset, cover.length);
+                        moved[0]++;
+                    }
+                    out.force(true);
+                } catch (IOException e) {
+                    throw new SQLException("Не удалось записать " + target, e);
+                }
+
+                // Новые смещения видны читателям только вместе с новым файлом: блокировка держится до фиксации.
+                lock.writeLock().lock();
+                try {
+                    swap(target, backup);
+                    swapped[0] = true;
+                } catch (IOException e) {
+                    throw new SQLException("Не удалось заменить " + file, e);
+                }
+                return locations.size() + moved[0];
+            });
+        } catch (SQLException | RuntimeException e) {
+            if (swapped[0]) {
+                restore(backup);
+            }
+            throw e;
+        } finally {
+            Files.deleteIfExists(target);
+            if (lock.isWriteLockedByCurrentThread()) {
+                lock.writeLock().unlock();
+            }
+        }
+        Files.deleteIfExists(backup);
+        if (moved[0] > 0) {
+            DatabaseHelper.vacuum();
+        }
+        return new Result(covers, moved[0], bytesBefore, size());
+    }
+
+    /**
+     * Подставляет новое расположение обложки и выполняет обновление.
+     */
+    private static void setLocation(PreparedStatement update, byte[] hash, long offset, int length) throws SQLException {
+        update.setLong(1, offset);
+        update.setInt(2, length);
+        update.setBytes(3, hash);
+        update.executeUpdate();
+    }
+
+    /**
+     * Заменяет файл обложек сжатым, сохраняя старый под именем backup до фиксации транзакции.
+     */
+    private synchronized void swap(Path compacted, Path backup) throws IOException {
+        closeChannel();
+        if (Files.exists(file)) {
+            Files.move(file, backup, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Возвращает старый файл обложек на место после неудачного сжатия.
+     * Если старого файла не было, удаляет новый.
+     */
+    private synchronized void restore(Path backup) throws IOException {
+        closeChannel();
+        if (Files.exists(backup)) {
+            Files.move(backup, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Закрывает файл и забывает отображения; уже выданные срезы остаются действительными.
+     */
+    private synchronized void closeChannel() throws IOException {
+        segments = new MappedByteBuffer[0];
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Закрывает файл обложек.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
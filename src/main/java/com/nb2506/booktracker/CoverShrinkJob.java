@@ -0,0 +1,200 @@
+package com.nb2506.booktracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Разовая задача, приводящая уже сохранённые обложки к ограничениям {@link ImageHelper.CoverLimits}:
+ * слишком большие обложки уменьшаются и перекодируются, а для обложек без миниатюры создаётся миниатюра.
+ * Обложки хранятся по хэшу содержимого, поэтому общая обложка нескольких книг обрабатывается один раз;
+ * если содержимое изменилось, все эти книги переключаются на новую обложку, а старая удаляется триггером.
+ * <p>
+ * Книги обрабатываются небольшими транзакциями, поэтому соединение для записи не занимается надолго
+ * и задачу можно выполнять при открытом приложении. По завершении рассылается одно событие
+ * {@link BookChange.Type#RELOADED}.
+ * <p>
+ * Запуск из командной строки:
+ * {@code java -m com.nb2506.booktracker/com.nb2506.booktracker.CoverShrinkJob}
+ */
+public final class CoverShrinkJob {
+    /** Количество книг в одной транзакции. */
+    private static final int BATCH_SIZE = 50;
+
+    /** Текст запроса для выборки хэшей обложек, которые нужно обработать. */
+    private static final String SELECT_CANDIDATES_SQL = """
+        SELECT hash FROM covers
+        WHERE thumbnail IS NULL OR coalesce(pack_length, length(cover)) > ?
+        ORDER BY hash
+    """;
+
+    /** Текст запроса для чтения одной обложки по хэшу. */
+    private static final String SELECT_COVER_SQL =
+            "SELECT " + DatabaseHelper.COVER_COLUMNS + " FROM covers c WHERE c.hash = ?";
+
+    /** Текст запроса для сохранения миниатюры обложки, содержимое которой не изменилось. */
+    private static final String UPDATE_THUMBNAIL_SQL = "UPDATE covers SET thumbnail = ? WHERE hash = ?";
+
+    /** Текст запроса для переключения всех книг со старой обложки на новую. */
+    private static final String REPLACE_COVER_HASH_SQL = "UPDATE books SET cover_hash = ? WHERE cover_hash = ?";
+
+    /**
+     * Итог выполнения задачи.
+     *
+     * @param processed количество различных обложек, обработанных и сохранённых
+     * @param failed количество обложек, которые не удалось прочитать или сохранить
+     * @param bytesBefore суммарный размер сохранённых обложек до задачи
+     * @param bytesAfter суммарный размер сохранённых обложек после задачи
+     */
+    public record Result(int processed, int failed, long bytesBefore, long bytesAfter) {
+    }
+
+    /**
+     * Обработанная обложка, ожидающая сохранения.
+     *
+     * @param hash хэш исходной обложки
+     * @param cover обложка и миниатюра
+     */
+    private record Update(byte[] hash, ImageHelper.IngestedCover cover) {
+    }
+
+    private CoverShrinkJob() {
+    }
+
+    /**
+     * Запускает задачу с ограничениями по умолчанию и выводит итог.
+     *
+     * @param args не используются
+     */
+    public static void main(String[] args) {
+        DatabaseHelper.createTable();
+        Result result = run(ImageHelper.CoverLimits.DEFAULT);
+        System.out.println("Обработано обложек: " + result.processed() + ", с ошибками: " + result.failed()
+                + ", размер: " + result.bytesBefore() + " -> " + result.bytesAfter() + " байт.");
+        DatabaseHelper.shutdown();
+    }
+
+    /**
+     * Обрабатывает все обложки, превышающие лимит размера или не имеющие миниатюры.
+     * Обложки, которые не удалось прочитать, остаются без изменений. Если не удалось сохранить пакет,
+     * его обложки считаются ошибочными, а оставшиеся пакеты не обрабатываются.
+     *
+     * @param limits ограничения обложек
+     * @return итог выполнения
+     */
+    public static Result run(ImageHelper.CoverLimits limits) {
+        int processed = 0;
+        int failed = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        try {
+            List<byte[]> hashes = DatabaseHelper.connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(SELECT_CANDIDATES_SQL);
+                pstmt.setInt(1, limits.maxBytes());
+                List<byte[]> result = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getBytes("hash"));
+                    }
+                }
+                return result;
+            });
+
+            for (int from = 0; from < hashes.size(); from += BATCH_SIZE) {
+                List<byte[]> batch = hashes.subList(from, Math.min(hashes.size(), from + BATCH_SIZE));
+                List<Update> updates = new ArrayList<>(batch.size());
+                long batchBytesBefore = 0;
+                long batchBytesAfter = 0;
+                for (byte[] hash : batch) {
+                    byte[] cover = readCover(hash);
+                    if (cover == null) continue;
+                    try {
+                        ImageHelper.IngestedCover ingested = ImageHelper.ingestCover(cover, limits);
+                        updates.add(new Update(hash, ingested));
+                        batchBytesBefore += cover.length;
+                        batchBytesAfter += ingested.cover().length;
+                    } catch (IOException e) {
+                        failed++;
+                        System.err.println("Обложка " + HexFormat.of().formatHex(hash) + " пропущена: "
+                                + e.getMessage());
+                    }
+                }
+                try {
+                    BookChangeNotifier.reportedByRepository(() -> {
+                        try {
+                            return DatabaseHelper.connections().transaction(conn -> {
+                                for (Update update : updates) {
+                                    save(conn, update);
+                                }
+                                return null;
+                            });
+                        } catch (SQLException e) {
+                            throw new IllegalStateException("Не удалось сохранить обложки", e);
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                    failed += updates.size();
+                    throw e;
+                }
+                processed += updates.size();
+                bytesBefore += batchBytesBefore;
+                bytesAfter += batchBytesAfter;
+            }
+        } catch (SQLException | IllegalStateException e) {
+            e.printStackTrace();
+        }
+        if (processed > 0) {
+            BookChangeNotifier.publish(BookChange.reloaded());
+        }
+        return new Result(processed, failed, bytesBefore, bytesAfter);
+    }
+
+    /**
+     * Читает обложку по хэшу.
+     *
+     * @return обложка или null, если её уже нет
+     * @throws SQLException при ошибке чтения
+     */
+    private static byte[] readCover(byte[] hash) throws SQLException {
+        return DatabaseHelper.readCovers(conn -> {
+            PreparedStatement pstmt = conn.prepare(SELECT_COVER_SQL);
+            pstmt.setBytes(1, hash);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return null;
+                ByteBuffer buffer = DatabaseHelper.coverBuffer(rs);
+                byte[] cover = new byte[buffer.remaining()];
+                buffer.get(cover);
+                return cover;
+            }
+        });
+    }
+
+    /**
+     * Сохраняет обработанную обложку. Если содержимое не изменилось, записывается только миниатюра;
+     * иначе новая обложка добавляется под своим хэшем, и на неё переключаются все книги со старой обложкой.
+     *
+     * @throws SQLException при ошибке записи
+     */
+    private static void save(PooledConnection conn, Update update) throws SQLException {
+        byte[] cover = update.cover().cover();
+        byte[] thumbnail = update.cover().thumbnail();
+        if (Arrays.equals(DatabaseHelper.coverHash(cover), update.hash())) {
+            PreparedStatement pstmt = conn.prepare(UPDATE_THUMBNAIL_SQL);
+            DatabaseHelper.setBlob(pstmt, 1, thumbnail);
+            pstmt.setBytes(2, update.hash());
+            pstmt.executeUpdate();
+            return;
+        }
+        byte[] hash = DatabaseHelper.storeCover(conn, cover, thumbnail);
+        PreparedStatement pstmt = conn.prepare(REPLACE_COVER_HASH_SQL);
+        pstmt.setBytes(1, hash);
+        pstmt.setBytes(2, update.hash());
+        pstmt.executeUpdate();
+    }
+}
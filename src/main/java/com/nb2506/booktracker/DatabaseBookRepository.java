@@ -1,47 +1,170 @@
 package com.nb2506.booktracker;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Реализация интерфейса {@link BookRepository} для работы с базой данных.
  * Использует вспомогательный класс {@link DatabaseHelper} для выполнения операций вставки и обновления.
+ * После каждой успешной операции рассылает событие {@link BookChange} через {@link BookChangeNotifier}.
  */
 public class DatabaseBookRepository implements BookRepository {
+    /** Размер пакета для массовой вставки по умолчанию. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Наибольший рейтинг книги; тот же предел проверяет форма редактирования. */
+    public static final double MAX_RATING = 10;
+
+    /** Количество строк, отправляемых в базу одним пакетом при массовой вставке. */
+    private final int batchSize;
+
+    /**
+     * Создаёт репозиторий с размером пакета по умолчанию.
+     */
+    public DatabaseBookRepository() {
+        this(DEFAULT_BATCH_SIZE);
+    }
 
     /**
-     * Вставляет новую книгу в базу данных.
+     * Создаёт репозиторий с заданным размером пакета для массовой вставки.
+     *
+     * @param batchSize количество строк в одном пакете
+     */
+    public DatabaseBookRepository(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета должен быть положительным: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Вставляет новую книгу в базу данных и присваивает ей сгенерированный id.
      *
      * @param book объект книги для добавления (обязательные поля должны быть заполнены)
+     * @throws IllegalStateException если книгу не удалось добавить
      */
     @Override
     public void insert(Book book) {
-        DatabaseHelper.insertBook(
-                book.getTitle(),
-                book.getAuthor(),
-                book.getYear(),
-                book.getPages(),
-                book.getRating(),
-                book.getGenres(),
-                book.getCurrentPage(),
-                book.getCover()
-        );
+        int id = BookChangeNotifier.reportedByRepository(() -> DatabaseHelper.insertBook(book));
+        if (id < 0) {
+            throw new IllegalStateException("Не удалось добавить книгу");
+        }
+        book.setId(id);
+        BookChangeNotifier.publish(BookChange.inserted(book));
+    }
+
+    /**
+     * Вставляет книги в базу данных в одной транзакции пакетами по {@code batchSize} строк.
+     *
+     * @param books книги для добавления
+     * @return id добавленных книг в порядке добавления
+     * @throws IllegalStateException если вставка не удалась; в этом случае ни одна книга не сохранена
+     */
+    @Override
+    public List<Integer> insertAll(Iterable<Book> books) {
+        List<Integer> ids = new ArrayList<>();
+        BookChangeNotifier.reportedByRepository(() -> {
+            try {
+                return DatabaseHelper.insertBooks(books.iterator(), batchSize, ids::add);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Не удалось добавить книги", e);
+            }
+        });
+        if (!ids.isEmpty()) {
+            BookChangeNotifier.publish(BookChange.reloaded());
+        }
+        return ids;
     }
 
     /**
      * Обновляет существующую книгу в базе данных.
+     * Записываются только изменённые поля; если изменений нет, запрос не выполняется и событие не рассылается.
      *
      * @param book объект книги с обновлёнными данными. Должен содержать корректный идентификатор.
+     * @throws IllegalStateException если книгу не удалось обновить
      */
     @Override
     public void update(Book book) {
-        DatabaseHelper.updateBook(book);
+        if (!book.isDirty()) return;
+        Set<Book.Field> changed = book.getDirtyFields();
+        if (!BookChangeNotifier.reportedByRepository(() -> DatabaseHelper.updateBook(book))) {
+            throw new IllegalStateException("Не удалось обновить книгу с id " + book.getId());
+        }
+        BookChangeNotifier.publish(BookChange.updated(book, changed));
     }
 
     /**
-     * Обновляет существующую книгу в базе данных.
+     * Обновляет текущую страницу книги. Для события изменения книга перечитывается без обложки.
+     * Страница проверяется до записи: каждое изменение страницы попадает в журнал чтения
+     * ({@link ReadingLog}), и неверное значение навсегда исказило бы его сводки.
      *
-     * @param book объект книги с обновлёнными данными. Должен содержать корректный идентификатор.
+     * @param id идентификатор книги
+     * @param currentPage новая текущая страница
+     * @throws IllegalArgumentException если страница не в диапазоне от 0 до количества страниц книги
+     * @throws IllegalStateException если книги нет или её не удалось обновить
+     */
+    @Override
+    public void updateProgress(int id, int currentPage) {
+        Book book = DatabaseHelper.getBookById(id);
+        if (book == null) {
+            throw new IllegalStateException("Нет книги с id " + id);
+        }
+        if (currentPage < 0 || currentPage > book.getPages()) {
+            throw new IllegalArgumentException(
+                    "Текущая страница должна быть от 0 до " + book.getPages() + ": " + currentPage);
+        }
+        if (!BookChangeNotifier.reportedByRepository(() -> DatabaseHelper.updateProgress(id, currentPage))) {
+            throw new IllegalStateException("Не удалось обновить текущую страницу книги с id " + id);
+        }
+        publishUpdated(id, Book.Field.CURRENT_PAGE);
+    }
+
+    /**
+     * Обновляет рейтинг книги. Для события изменения книга перечитывается без обложки.
+     *
+     * @param id идентификатор книги
+     * @param rating новый рейтинг
+     * @throws IllegalArgumentException если рейтинг не в диапазоне от 0 до {@value #MAX_RATING}
+     * @throws IllegalStateException если книгу не удалось обновить
+     */
+    @Override
+    public void updateRating(int id, double rating) {
+        if (!(rating >= 0 && rating <= MAX_RATING)) {
+            throw new IllegalArgumentException("Рейтинг должен быть от 0 до " + (int) MAX_RATING + ": " + rating);
+        }
+        if (!BookChangeNotifier.reportedByRepository(() -> DatabaseHelper.updateRating(id, rating))) {
+            throw new IllegalStateException("Не удалось обновить рейтинг книги с id " + id);
+        }
+        publishUpdated(id, Book.Field.RATING);
+    }
+
+    /**
+     * Рассылает событие изменения книги, перечитанной из базы данных.
+     *
+     * @param id идентификатор книги
+     * @param field изменённое поле
+     */
+    private static void publishUpdated(int id, Book.Field field) {
+        Book book = DatabaseHelper.getBookById(id);
+        if (book != null) {
+            BookChangeNotifier.publish(BookChange.updated(book, EnumSet.of(field)));
+        }
+    }
+
+    /**
+     * Удаляет существующую книгу из базы данных.
+     *
+     * @param book объект удаляемой книги. Должен содержать корректный идентификатор.
+     * @throws IllegalStateException если книгу не удалось удалить
      */
     @Override
-    public void deleteBookById(int id) {
-        DatabaseHelper.deleteBookById(book);
+    public void delete(Book book) {
+        if (!BookChangeNotifier.reportedByRepository(() -> DatabaseHelper.deleteBookById(book.getId()))) {
+            throw new IllegalStateException("Не удалось удалить книгу с id " + book.getId());
+        }
+        BookChangeNotifier.publish(BookChange.deleted(book.getId()));
     }
 }
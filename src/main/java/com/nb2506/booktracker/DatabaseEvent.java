@@ -0,0 +1,157 @@
+package com.nb2506.booktracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Замер одной операции {@link DatabaseHelper}. Длительность попадает в гистограмму {@code db.<операция>}
+ * реестра {@link Metrics}, а строки, байты и ошибки — в одноимённые счётчики. Если Java Flight Recorder
+ * запущен, операция также записывается событием {@code com.nb2506.booktracker.Database}.
+ * <p>
+ * Событие JFR создаётся только после запуска Flight Recorder: первая инициализация класса события
+ * занимает около 200 мс, и консольные команды ({@link BookTrackerCli}) не должны платить за неё при каждом запуске.
+ * <p>
+ * Использование: {@code start} перед операцией, заполнение строк и байт по ходу,
+ * {@link #finish()} в блоке finally.
+ */
+public final class DatabaseEvent {
+    /** Вид выражения SQL. */
+    public enum Kind {
+        /** Чтение. */
+        SELECT,
+        /** Добавление. */
+        INSERT,
+        /** Изменение. */
+        UPDATE,
+        /** Удаление. */
+        DELETE,
+        /** Изменение схемы. */
+        DDL
+    }
+
+    /**
+     * Событие Java Flight Recorder для операции с базой данных.
+     */
+    @Name("com.nb2506.booktracker.Database")
+    @Label("Операция с базой данных")
+    @Category({"BookTracker", "База данных"})
+    @Description("Вызов метода DatabaseHelper: вид SQL, прочитанные или изменённые строки и байты")
+    @StackTrace(false)
+    static final class Recorded extends Event {
+        /** Имя метода {@link DatabaseHelper}. */
+        @Label("Операция")
+        String operation;
+
+        /** Вид выражения SQL. */
+        @Label("Вид SQL")
+        String kind;
+
+        /** Количество прочитанных или изменённых строк. */
+        @Label("Строк")
+        int rows;
+
+        /** Количество прочитанных байт BLOB (обложек и миниатюр). */
+        @Label("Прочитано")
+        @DataAmount
+        long bytes;
+
+        /** Признак завершения операции с ошибкой. */
+        @Label("Ошибка")
+        boolean failed;
+    }
+
+    /** Имя метода {@link DatabaseHelper}. */
+    private final String operation;
+
+    /** Вид выражения SQL. */
+    private final Kind kind;
+
+    /** Время начала операции. */
+    private final long startNanos;
+
+    /** Событие JFR или null, если Flight Recorder не запущен. */
+    private final Recorded recorded;
+
+    /** Количество прочитанных или изменённых строк. */
+    private int rows;
+
+    /** Количество прочитанных байт BLOB. */
+    private long bytes;
+
+    /** Признак завершения операции с ошибкой. */
+    private boolean failed;
+
+    private DatabaseEvent(String operation, Kind kind) {
+        this.operation = operation;
+        this.kind = kind;
+        this.recorded = FlightRecorder.isInitialized() ? new Recorded() : null;
+        if (recorded != null) {
+            recorded.begin();
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Начинает отсчёт операции.
+     *
+     * @param operation имя метода
+     * @param kind вид выражения SQL
+     * @return начатый замер
+     */
+    static DatabaseEvent start(String operation, Kind kind) {
+        return new DatabaseEvent(operation, kind);
+    }
+
+    /**
+     * Задаёт количество строк.
+     *
+     * @param rows количество прочитанных или изменённых строк
+     */
+    void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Задаёт количество прочитанных байт BLOB.
+     *
+     * @param bytes количество байт
+     */
+    void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Отмечает, что операция завершилась ошибкой.
+     */
+    void setFailed() {
+        this.failed = true;
+    }
+
+    /**
+     * Завершает замер: обновляет метрики и записывает событие в JFR, если запись включена.
+     */
+    void finish() {
+        String name = "db." + operation;
+        Metrics.record(name, System.nanoTime() - startNanos);
+        if (rows > 0) Metrics.add(name + ".rows", rows);
+        if (bytes > 0) Metrics.add(name + ".bytes", bytes);
+        if (failed) Metrics.increment("db.errors");
+        if (recorded != null) {
+            recorded.end();
+            if (recorded.shouldCommit()) {
+                recorded.operation = operation;
+                recorded.kind = kind.name();
+                recorded.rows = rows;
+                recorded.bytes = bytes;
+                recorded.failed = failed;
+                recorded.commit();
+            }
+        }
+    }
+}
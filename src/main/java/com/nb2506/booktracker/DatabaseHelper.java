@@ -1,63 +1,585 @@
 package com.nb2506.booktracker;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 /**
  * Класс-помощник для работы с базой данных SQLite, содержащей информацию о книгах.
  * Предоставляет методы для создания таблицы, добавления, обновления, удаления и выборки книг.
+ * Все запросы выполняются через долгоживущие соединения {@link ConnectionManager}.
+ * Каждая операция записывает событие JFR {@link DatabaseEvent} и обновляет метрики {@link Metrics}.
  */
 public class DatabaseHelper {
-    private static final String DB_URL = "jdbc:sqlite:books.db";
+    /**
+     * Системное свойство с путём к файлу базы данных (по умолчанию books.db в рабочем каталоге).
+     * Читается при открытии соединений, поэтому после {@link #shutdown()} можно переключиться на другой файл,
+     * например в бенчмарках и нагрузочных тестах.
+     */
+    public static final String DB_PATH_PROPERTY = "booktracker.db";
+
+    /** Путь к файлу базы данных по умолчанию. */
+    private static final String DEFAULT_DB_PATH = "books.db";
+
+    /**
+     * Текст запроса для выборки списка книг без обложек.
+     * Вместо самой обложки выбирается только признак её наличия, поэтому BLOB не читается.
+     */
+    private static final String SELECT_BOOK_LIST_SQL = """
+        SELECT id, title, author, year, pages, rating, genres, current_page, updated_at,
+               cover_hash IS NOT NULL AS has_cover
+        FROM books
+    """;
+
+    /** Столбцы списка книг (без обложки) для запросов с изменяемым условием. */
+    private static final String BOOK_LIST_COLUMNS = """
+        id, title, author, year, pages, rating, genres, current_page, updated_at,
+        cover_hash IS NOT NULL AS has_cover""";
+
+    /** Текст запроса для выборки одной книги без обложки. */
+    private static final String SELECT_BOOK_BY_ID_SQL = "SELECT " + BOOK_LIST_COLUMNS + " FROM books WHERE id = ?";
+
+    /**
+     * Столбцы обложки в таблице covers (псевдоним c): сама обложка или её расположение в файле обложек.
+     * Читаются через {@link #coverBuffer(ResultSet)}.
+     */
+    static final String COVER_COLUMNS = "c.cover, c.pack_offset, c.pack_length";
+
+    /** Текст запроса для выборки обложки одной книги. */
+    private static final String SELECT_COVER_SQL =
+            "SELECT " + COVER_COLUMNS + " FROM books b JOIN covers c ON c.hash = b.cover_hash WHERE b.id = ?";
+
+    /** Текст запроса для выборки миниатюры обложки одной книги. */
+    private static final String SELECT_THUMBNAIL_SQL =
+            "SELECT c.thumbnail FROM books b JOIN covers c ON c.hash = b.cover_hash WHERE b.id = ?";
+
+    /** Текст запроса для добавления книги. */
+    private static final String INSERT_BOOK_SQL = """
+        INSERT INTO books(title, author, year, pages, rating, genres, current_page, updated_at)
+        VALUES(?, ?, ?, ?, ?, ?, ?, ?);
+    """;
+
+    /**
+     * Текст запроса для сохранения обложки по хэшу содержимого.
+     * Если такая обложка уже есть, строка не переписывается; только миниатюра добавляется, если её не было.
+     */
+    private static final String UPSERT_COVER_SQL = """
+        INSERT INTO covers(hash, cover, thumbnail) VALUES(?, ?, ?)
+        ON CONFLICT(hash) DO UPDATE SET thumbnail = excluded.thumbnail
+        WHERE covers.thumbnail IS NULL AND excluded.thumbnail IS NOT NULL
+    """;
+
+    /** Текст запроса для проверки, сохранена ли уже обложка с таким хэшем. */
+    private static final String COVER_EXISTS_SQL = "SELECT 1 FROM covers WHERE hash = ?";
+
+    /** Текст запроса для добавления обложки, сохранённой в файле обложек. */
+    private static final String INSERT_PACKED_COVER_SQL =
+            "INSERT INTO covers(hash, cover, thumbnail, pack_offset, pack_length) VALUES(?, X'', ?, ?, ?)";
+
+    /** Текст запроса для смены обложки книги; счётчики ссылок обложек обновляют триггеры. */
+    private static final String SET_COVER_HASH_SQL = "UPDATE books SET cover_hash = ? WHERE id = ?";
+
+    /** Алгоритм хэша, по которому хранятся обложки. */
+    private static final String COVER_HASH_ALGORITHM = "SHA-256";
+
+    /** Текст запроса для получения id последней добавленной строки. */
+    private static final String LAST_INSERT_ID_SQL = "SELECT last_insert_rowid()";
+
+    /** Текст запроса для обновления текущей страницы книги. */
+    private static final String UPDATE_PROGRESS_SQL = "UPDATE books SET current_page=?, updated_at=? WHERE id=?";
+
+    /** Текст запроса для обновления рейтинга книги. */
+    private static final String UPDATE_RATING_SQL = "UPDATE books SET rating=?, updated_at=? WHERE id=?";
+
+    /** Текст запроса для удаления книги. */
+    private static final String DELETE_BOOK_SQL = "DELETE FROM books WHERE id = ?";
+
+    /** Текст запроса для выборки жанров, у которых есть хотя бы одна книга. */
+    private static final String SELECT_GENRES_SQL = """
+        SELECT g.name FROM genres g
+        WHERE EXISTS (SELECT 1 FROM book_genres bg WHERE bg.genre_id = g.id)
+        ORDER BY g.name
+    """;
+
+    /** Текст запроса для удаления связей книги с жанрами. */
+    private static final String DELETE_BOOK_GENRES_SQL = "DELETE FROM book_genres WHERE book_id = ?";
+
+    /** Текст запроса для добавления связи книги с жанром. */
+    private static final String INSERT_BOOK_GENRE_SQL =
+            "INSERT OR IGNORE INTO book_genres(book_id, genre_id) VALUES(?, ?)";
+
+    /** Текст запроса для добавления жанра в справочник. */
+    private static final String INSERT_GENRE_SQL = "INSERT INTO genres(name) VALUES(?) ON CONFLICT(name) DO NOTHING";
+
+    /** Текст запроса для поиска id жанра по названию. */
+    private static final String SELECT_GENRE_ID_SQL = "SELECT id FROM genres WHERE name = ?";
+
+    /** Менеджер соединений, создаётся при первом обращении к базе данных. */
+    private static ConnectionManager connectionManager;
+
+    /** Файл обложек рядом с базой данных, создаётся при первом обращении. */
+    private static CoverPack coverPack;
 
     /**
-     * Устанавливает и возвращает соединение с базой данных SQLite.
+     * Возвращает менеджер долгоживущих соединений, открывая его при первом обращении.
+     * На соединение для записи ставятся обработчики {@link BookChangeNotifier}.
      *
-     * @return объект {@link Connection} для работы с БД
+     * @return объект {@link ConnectionManager} для работы с БД
      * @throws SQLException при ошибках подключения
      */
-    public static Connection connect() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+    public static synchronized ConnectionManager connections() throws SQLException {
+        if (connectionManager == null) {
+            ConnectionManager manager = new ConnectionManager(
+                    "jdbc:sqlite:" + System.getProperty(DB_PATH_PROPERTY, DEFAULT_DB_PATH));
+            manager.write(conn -> {
+                BookChangeNotifier.install(conn.connection());
+                return null;
+            });
+            manager.setAfterWrite(BookChangeNotifier::publishCommitted);
+            connectionManager = manager;
+        }
+        return connectionManager;
+    }
+
+    /**
+     * Закрывает все соединения с базой данных.
+     * Вызывается при завершении приложения; повторное обращение к базе откроет их заново.
+     */
+    public static synchronized void shutdown() {
+        if (connectionManager != null) {
+            connectionManager.close();
+            connectionManager = null;
+        }
+        if (coverPack != null) {
+            coverPack.close();
+            coverPack = null;
+        }
+    }
+
+    /**
+     * Возвращает файл обложек текущей базы данных ({@link CoverPack}).
+     * Объект создаётся при первом обращении, а сам файл — при первой записи в него.
+     * При создании файл сверяется с базой на случай прерванного сжатия ({@link CoverPack#recover()}).
+     *
+     * @return файл обложек
+     */
+    public static synchronized CoverPack coverPack() {
+        if (coverPack == null) {
+            coverPack = new CoverPack(
+                    Path.of(System.getProperty(DB_PATH_PROPERTY, DEFAULT_DB_PATH) + CoverPack.FILE_SUFFIX));
+            try {
+                coverPack.recover();
+            } catch (SQLException | IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return coverPack;
+    }
+
+    /**
+     * Выполняет чтение обложек на соединении для чтения под блокировкой чтения файла обложек,
+     * чтобы смещения, прочитанные из базы, и срезы файла, полученные по ним, не разошлись со сжатием файла.
+     *
+     * @param work работа с соединением
+     * @param <T> тип результата
+     * @return результат работы
+     * @throws SQLException при ошибке базы данных
+     */
+    static <T> T readCovers(ConnectionManager.SqlWork<T> work) throws SQLException {
+        Lock lock = coverPack().readLock();
+        lock.lock();
+        try {
+            return connections().read(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает обложку из строки, выбранной со столбцами {@link #COVER_COLUMNS}: срез файла обложек
+     * без копирования или содержимое столбца cover. Вызывается внутри {@link #readCovers}.
+     *
+     * @param rs строка результата
+     * @return буфер только для чтения с обложкой
+     * @throws SQLException если обложку не удалось прочитать из файла
+     */
+    static ByteBuffer coverBuffer(ResultSet rs) throws SQLException {
+        long offset = rs.getLong("pack_offset");
+        if (rs.wasNull()) {
+            return ByteBuffer.wrap(rs.getBytes("cover")).asReadOnlyBuffer();
+        }
+        try {
+            return coverPack().slice(offset, rs.getInt("pack_length"));
+        } catch (IOException e) {
+            throw new SQLException("Не удалось прочитать обложку из файла обложек", e);
+        }
     }
 
     /**
-     * Возвращает список всех книг из базы данных.
+     * Возвращает список всех книг из базы данных без обложек в порядке добавления.
+     * Обложки загружаются отдельно через {@link #getCoverById(int)}.
      *
      * @return список объектов {@link Book} (пустой, если книг нет или ошибка)
      */
     public static List<Book> getAllBooks() {
+        return getAllBooks(BookSort.ADDED);
+    }
+
+    /**
+     * Возвращает список всех книг без обложек, отсортированный в базе данных.
+     *
+     * @param sort порядок сортировки
+     * @return список объектов {@link Book} (пустой, если книг нет или ошибка)
+     */
+    public static List<Book> getAllBooks(BookSort sort) {
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT * FROM books";
+        forEachBook(sort, books::add);
+        return books;
+    }
 
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    /**
+     * Читает все книги без обложек в заданном порядке и передаёт их по одной, не собирая в список,
+     * например для заполнения {@link ColumnarBookStore}.
+     *
+     * @param sort     порядок сортировки
+     * @param consumer получатель книг
+     * @return количество прочитанных книг (при ошибке — сколько успели прочитать)
+     */
+    public static int forEachBook(BookSort sort, Consumer<Book> consumer) {
+        String sql = SELECT_BOOK_LIST_SQL + sort.orderBy();
+        int[] rows = {0};
+
+        DatabaseEvent event = DatabaseEvent.start("getAllBooks", DatabaseEvent.Kind.SELECT);
+        try {
+            connections().read(conn -> {
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(readListRow(rs));
+                        rows[0]++;
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+        } finally {
+            event.setRows(rows[0]);
+            event.finish();
+        }
+
+        return rows[0];
+    }
+
+    /**
+     * Возвращает количество книг, удовлетворяющих условиям выборки.
+     *
+     * @param query условия выборки
+     * @return количество книг (0 при ошибке)
+     */
+    public static int countBooks(BookQuery query) {
+        String sql = "SELECT count(*) FROM books" + query.whereClause(null);
+        DatabaseEvent event = DatabaseEvent.start("countBooks", DatabaseEvent.Kind.SELECT);
+        try {
+            int result = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                query.bind(pstmt, 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+            event.setRows(1);
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return 0;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Возвращает страницу книг, следующих за указанной книгой в порядке сортировки
+     * (пагинация по ключу: значение сортировки и id).
+     * В отличие от OFFSET, стоимость запроса не зависит от того, насколько далеко страница
+     * от начала списка: SQLite сразу переходит к нужному ключу по индексу сортировки.
+     *
+     * @param query условия выборки и порядок сортировки
+     * @param after последняя книга предыдущей страницы
+     * @param limit максимальное количество книг на странице
+     * @return список книг без обложек в порядке сортировки (пустой при ошибке)
+     */
+    public static List<Book> getBooksAfter(BookQuery query, Book after, int limit) {
+        BookSort sort = query.getSort();
+        String sql = "SELECT " + BOOK_LIST_COLUMNS + " FROM books"
+                + query.whereClause(sort.afterCondition()) + sort.orderBy() + " LIMIT ?";
+        DatabaseEvent event = DatabaseEvent.start("getBooksAfter", DatabaseEvent.Kind.SELECT);
+        try {
+            List<Book> result = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                int index = query.bind(pstmt, 1);
+                index = sort.bindAfter(pstmt, index, after);
+                pstmt.setInt(index, limit);
+                return readListRows(pstmt);
+            });
+            event.setRows(result.size());
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return new ArrayList<>();
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Возвращает страницу книг по её смещению от начала списка.
+     * Используется только для перехода к странице, для которой ещё не известен ключ
+     * предыдущей страницы (например, при перетаскивании полосы прокрутки).
+     *
+     * @param query условия выборки и порядок сортировки
+     * @param offset номер первой книги страницы
+     * @param limit максимальное количество книг на странице
+     * @return список книг без обложек в порядке сортировки (пустой при ошибке)
+     */
+    public static List<Book> getBooksAt(BookQuery query, int offset, int limit) {
+        String sql = "SELECT " + BOOK_LIST_COLUMNS + " FROM books"
+                + query.whereClause(null) + query.getSort().orderBy() + " LIMIT ? OFFSET ?";
+        DatabaseEvent event = DatabaseEvent.start("getBooksAt", DatabaseEvent.Kind.SELECT);
+        try {
+            List<Book> result = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                int index = query.bind(pstmt, 1);
+                pstmt.setInt(index++, limit);
+                pstmt.setInt(index, offset);
+                return readListRows(pstmt);
+            });
+            event.setRows(result.size());
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return new ArrayList<>();
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Ищет книги по полнотекстовому индексу и передаёт их получателю по одной,
+     * в порядке релевантности bm25 (совпадения в названии весят больше, чем в авторе).
+     * Строки читаются из курсора по мере обработки и не собираются в список.
+     *
+     * @param query условия выборки; должен быть задан поиск ({@link BookQuery#hasSearch()})
+     * @param limit максимальное количество результатов
+     * @param consumer получатель книг без обложек; возвращает false, чтобы прервать поиск
+     */
+    public static void searchBooks(BookQuery query, int limit, Predicate<Book> consumer) {
+        if (!query.hasSearch()) {
+            throw new IllegalArgumentException("Не задана строка поиска");
+        }
+        String sql = "SELECT " + BOOK_LIST_COLUMNS + " FROM books"
+                + " JOIN (SELECT rowid AS match_id, bm25(books_fts, 10.0, 5.0) AS score"
+                + " FROM books_fts WHERE books_fts MATCH ?) m ON m.match_id = books.id"
+                + query.whereClause(null, false) + " ORDER BY m.score LIMIT ?";
+        DatabaseEvent event = DatabaseEvent.start("searchBooks", DatabaseEvent.Kind.SELECT);
+        try {
+            int rows = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, query.getMatchExpression());
+                int index = query.bind(pstmt, 2, false);
+                pstmt.setInt(index, limit);
+                int read = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        read++;
+                        if (!consumer.test(readListRow(rs))) break;
+                    }
+                }
+                return read;
+            });
+            event.setRows(rows);
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+        } finally {
+            event.finish();
+        }
+    }
 
+    /**
+     * Выполняет запрос и читает все строки списка книг.
+     *
+     * @param pstmt подготовленный запрос со столбцами {@link #BOOK_LIST_COLUMNS}
+     * @return список книг без обложек
+     * @throws SQLException при ошибке чтения
+     */
+    private static List<Book> readListRows(PreparedStatement pstmt) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Book book = new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("author"),
-                        rs.getInt("year"),
-                        rs.getInt("pages"),
-                        rs.getDouble("rating"),
-                        rs.getString("genres"),
-                        rs.getInt("current_page"),
-                        rs.getBytes("cover") // может быть null
-                );
-                books.add(book);
+                books.add(readListRow(rs));
             }
+        }
+        return books;
+    }
+
+    /**
+     * Создаёт книгу без обложки из текущей строки результата запроса списка.
+     *
+     * @param rs результат запроса, установленный на нужную строку
+     * @return объект {@link Book} без загруженной обложки
+     * @throws SQLException при ошибке чтения столбцов
+     */
+    private static Book readListRow(ResultSet rs) throws SQLException {
+        Book book = new Book(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("author"),
+                rs.getInt("year"),
+                rs.getInt("pages"),
+                rs.getDouble("rating"),
+                rs.getString("genres"),
+                rs.getInt("current_page"),
+                rs.getBoolean("has_cover")
+        );
+        book.setUpdatedAt(rs.getLong("updated_at"));
+        book.markClean();
+        return book;
+    }
+
+    /**
+     * Возвращает одну книгу без обложки.
+     *
+     * @param id идентификатор книги
+     * @return книга или null, если книги нет или ошибка
+     */
+    public static Book getBookById(int id) {
+        DatabaseEvent event = DatabaseEvent.start("getBookById", DatabaseEvent.Kind.SELECT);
+        try {
+            Book result = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(SELECT_BOOK_BY_ID_SQL);
+                pstmt.setInt(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readListRow(rs) : null;
+                }
+            });
+            event.setRows(result != null ? 1 : 0);
+            return result;
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+            return null;
+        } finally {
+            event.finish();
         }
+    }
 
-        return books;
+    /**
+     * Возвращает обложку одной книги.
+     *
+     * @param id идентификатор книги
+     * @return изображение обложки в виде массива байт или null, если обложки нет или ошибка
+     */
+    public static byte[] getCoverById(int id) {
+        DatabaseEvent event = DatabaseEvent.start("getCoverById", DatabaseEvent.Kind.SELECT);
+        try {
+            byte[] result = readCovers(conn -> {
+                PreparedStatement pstmt = conn.prepare(SELECT_COVER_SQL);
+                pstmt.setInt(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) return null;
+                    ByteBuffer buffer = coverBuffer(rs);
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    return bytes;
+                }
+            });
+            event.setRows(result != null ? 1 : 0);
+            event.setBytes(result != null ? result.length : 0);
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return null;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Возвращает обложку одной книги без копирования: для обложки из файла обложек это срез
+     * отображённого в память файла. Буфер можно сразу передать в {@link ImageHelper#toImage(ByteBuffer, int, int)}.
+     *
+     * @param id идентификатор книги
+     * @return буфер только для чтения с обложкой или null, если обложки нет или ошибка
+     */
+    public static ByteBuffer getCoverBufferById(int id) {
+        DatabaseEvent event = DatabaseEvent.start("getCoverBufferById", DatabaseEvent.Kind.SELECT);
+        try {
+            ByteBuffer result = readCovers(conn -> {
+                PreparedStatement pstmt = conn.prepare(SELECT_COVER_SQL);
+                pstmt.setInt(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? coverBuffer(rs) : null;
+                }
+            });
+            event.setRows(result != null ? 1 : 0);
+            event.setBytes(result != null ? result.remaining() : 0);
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return null;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Возвращает миниатюру обложки одной книги.
+     *
+     * @param id идентификатор книги
+     * @return миниатюра в виде массива байт или null, если миниатюры нет или ошибка
+     */
+    public static byte[] getThumbnailById(int id) {
+        DatabaseEvent event = DatabaseEvent.start("getThumbnailById", DatabaseEvent.Kind.SELECT);
+        try {
+            byte[] result = connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(SELECT_THUMBNAIL_SQL);
+                pstmt.setInt(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getBytes("thumbnail") : null;
+                }
+            });
+            event.setRows(result != null ? 1 : 0);
+            event.setBytes(result != null ? result.length : 0);
+            return result;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return null;
+        } finally {
+            event.finish();
+        }
     }
 
     /**
      * Создаёт таблицу "books" в базе данных, если она ещё не существует.
      * Таблица содержит поля для хранения информации о книгах.
+     * После этого применяет недостающие миграции схемы из {@link DatabaseSchema} и, если они
+     * освободили много места, сжимает файл базы данных.
      */
     public static void createTable() {
         String sql = """
@@ -74,15 +596,40 @@ public class DatabaseHelper {
         );
     """;
 
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Таблица создана или уже существует.");
+        DatabaseEvent event = DatabaseEvent.start("createTable", DatabaseEvent.Kind.DDL);
+        try {
+            boolean compact = connections().transaction(conn -> {
+                try (Statement stmt = conn.connection().createStatement()) {
+                    stmt.execute(sql);
+                }
+                return DatabaseSchema.migrate(conn);
+            });
+            if (compact) {
+                vacuum();
+            }
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+        } finally {
+            event.finish();
         }
     }
 
+    /**
+     * Сжимает файл базы данных командой VACUUM. Вызывается вне транзакции.
+     *
+     * @throws SQLException при ошибке базы данных
+     */
+    static void vacuum() throws SQLException {
+        connections().write(conn -> {
+            conn.clearStatements();
+            try (Statement stmt = conn.connection().createStatement()) {
+                stmt.execute("VACUUM");
+            }
+            return null;
+        });
+    }
+
     /**
      * Добавляет новую книгу в базу данных.
      *
@@ -94,101 +641,546 @@ public class DatabaseHelper {
      * @param genres      список жанров через запятую
      * @param currentPage текущая страница
      * @param cover       изображение обложки в виде массива байт, может быть null
+     * @param thumbnail   миниатюра обложки в виде массива байт, может быть null
+     * @return id добавленной книги или -1 при ошибке
      */
-    public static void insertBook(String title, String author, int year, int pages,
-                                  double rating, String genres, int currentPage, byte[] cover) {
-        String sql = """
-        INSERT INTO books(title, author, year, pages, rating, genres, current_page, cover)
-        VALUES(?, ?, ?, ?, ?, ?, ?, ?);
-    """;
+    public static int insertBook(String title, String author, int year, int pages,
+                                 double rating, String genres, int currentPage, byte[] cover, byte[] thumbnail) {
+        Book book = new Book(title, author, year, pages, rating, currentPage, genres, cover);
+        book.setThumbnail(thumbnail);
+        return insertBook(book);
+    }
 
-        try (Connection conn = connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, title);
-            pstmt.setString(2, author);
-            pstmt.setInt(3, year);
-            pstmt.setInt(4, pages);
-            pstmt.setDouble(5, rating);
-            pstmt.setString(6, genres);
-            pstmt.setInt(7, currentPage);
-            if (cover != null) {
-                pstmt.setBytes(8, cover);
-            } else {
-                pstmt.setNull(8, Types.BLOB);
-            }
+    /**
+     * Добавляет новую книгу в базу данных и записывает в неё время сохранения.
+     *
+     * @param book книга для добавления (обложка, если есть, должна быть загружена)
+     * @return id добавленной книги или -1 при ошибке
+     */
+    public static int insertBook(Book book) {
+        DatabaseEvent event = DatabaseEvent.start("insertBook", DatabaseEvent.Kind.INSERT);
+        try {
+            long updatedAt = System.currentTimeMillis();
+            int id = connections().transaction(conn -> {
+                PreparedStatement pstmt = conn.prepare(INSERT_BOOK_SQL);
+                bindInsert(pstmt, book, updatedAt);
+                pstmt.executeUpdate();
+                int bookId = lastInsertId(conn);
+                replaceBookGenres(conn, bookId, book.getGenres());
+                writeCover(conn, bookId, book.getCover(), book.getThumbnail());
+                return bookId;
+            });
+            book.setUpdatedAt(updatedAt);
+            book.markClean();
+            event.setRows(1);
+            return id;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return -1;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Добавляет книги пакетами в одной транзакции.
+     * Выражение вставки подготавливается один раз, строки накапливаются через addBatch
+     * и отправляются каждые batchSize книг. При ошибке транзакция откатывается целиком.
+     * <p>
+     * Пока транзакция держит соединение для записи, никто другой не вставляет строки,
+     * поэтому id с AUTOINCREMENT внутри пакета идут подряд и восстанавливаются по
+     * last_insert_rowid() после каждого executeBatch.
+     *
+     * @param books      книги для добавления (обложки должны быть загружены)
+     * @param batchSize  количество строк в одном пакете
+     * @param generatedIds получатель id добавленных книг в порядке добавления
+     * @return количество добавленных книг
+     * @throws SQLException при ошибке вставки; ни одна книга в этом случае не сохраняется
+     */
+    public static int insertBooks(Iterator<Book> books, int batchSize, IntConsumer generatedIds) throws SQLException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета должен быть положительным: " + batchSize);
+        }
+        DatabaseEvent event = DatabaseEvent.start("insertBooks", DatabaseEvent.Kind.INSERT);
+        try {
+            int inserted = connections().transaction(conn -> {
+                PreparedStatement pstmt = conn.prepare(INSERT_BOOK_SQL);
+                List<Book> pendingBooks = new ArrayList<>(batchSize);
+                long updatedAt = System.currentTimeMillis();
+                int total = 0;
+                int pending = 0;
+                while (books.hasNext()) {
+                    Book book = books.next();
+                    bindInsert(pstmt, book, updatedAt);
+                    pstmt.addBatch();
+                    pendingBooks.add(book);
+                    if (++pending == batchSize) {
+                        flushBatch(conn, pstmt, pendingBooks, updatedAt, generatedIds);
+                        total += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    flushBatch(conn, pstmt, pendingBooks, updatedAt, generatedIds);
+                    total += pending;
+                }
+                return total;
+            });
+            event.setRows(inserted);
+            return inserted;
+        } catch (SQLException e) {
+            event.setFailed();
+            throw e;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Выполняет накопленный пакет вставок, связывает добавленные книги с жанрами,
+     * сохраняет их обложки и сообщает их id.
+     *
+     * @param conn         соединение для записи
+     * @param pstmt        выражение вставки с накопленным пакетом
+     * @param books        книги пакета в порядке добавления; очищается после выполнения
+     * @param updatedAt    время сохранения, записанное в книги пакета
+     * @param generatedIds получатель id добавленных книг
+     * @throws SQLException при ошибке вставки
+     */
+    private static void flushBatch(PooledConnection conn, PreparedStatement pstmt, List<Book> books,
+                                   long updatedAt, IntConsumer generatedIds) throws SQLException {
+        pstmt.executeBatch();
+        int firstId = lastInsertId(conn) - books.size() + 1;
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            replaceBookGenres(conn, firstId + i, book.getGenres());
+            writeCover(conn, firstId + i, book.getCover(), book.getThumbnail());
+            book.setUpdatedAt(updatedAt);
+            book.markClean();
+        }
+        for (int i = 0; i < books.size(); i++) {
+            generatedIds.accept(firstId + i);
+        }
+        books.clear();
+    }
+
+    /**
+     * Сохраняет обложку книги в таблицу covers и ссылается на неё из книги или убирает ссылку, если обложки нет.
+     * Обложки хранятся по хэшу содержимого отдельно от строк books, поэтому одинаковые обложки
+     * разных книг хранятся один раз, а изменение полей книги не переписывает страницы с BLOB обложки.
+     * Обложка, на которую больше не ссылается ни одна книга, удаляется триггером.
+     *
+     * @param conn      соединение для записи
+     * @param bookId    id книги
+     * @param cover     обложка или null
+     * @param thumbnail миниатюра или null
+     * @throws SQLException при ошибке записи
+     */
+    static void writeCover(PooledConnection conn, int bookId, byte[] cover, byte[] thumbnail) throws SQLException {
+        byte[] hash = cover == null || cover.length == 0 ? null : storeCover(conn, cover, thumbnail);
+        PreparedStatement pstmt = conn.prepare(SET_COVER_HASH_SQL);
+        setBlob(pstmt, 1, hash);
+        pstmt.setInt(2, bookId);
+        pstmt.executeUpdate();
+    }
+
+    /**
+     * Добавляет обложку в таблицу covers, если такой ещё нет.
+     * Пока на обложку не сослалась ни одна книга, её счётчик ссылок равен нулю, поэтому
+     * вызывать метод нужно в той же транзакции, в которой книга получает ссылку на обложку.
+     * <p>
+     * Если включён файл обложек ({@link CoverPack#isEnabled()}), новая обложка дописывается в него,
+     * а в таблицу попадает только её расположение. Если транзакция затем откатится, записанные байты
+     * останутся в файле без ссылок до {@link CoverPack#compact()}.
+     *
+     * @param conn      соединение для записи
+     * @param cover     обложка
+     * @param thumbnail миниатюра или null
+     * @return хэш обложки
+     * @throws SQLException при ошибке записи
+     */
+    static byte[] storeCover(PooledConnection conn, byte[] cover, byte[] thumbnail) throws SQLException {
+        return storeCover(conn, cover, thumbnail, CoverPack.isEnabled());
+    }
 
+    /**
+     * Добавляет обложку в таблицу covers, если такой ещё нет.
+     * При allowPack == false обложка всегда сохраняется в базе, без обращения к {@link CoverPack}:
+     * так её сохраняет миграция версии 7, когда столбцов pack_offset и pack_length ещё нет.
+     *
+     * @param conn      соединение для записи
+     * @param cover     обложка
+     * @param thumbnail миниатюра или null
+     * @param allowPack можно ли дописать обложку в файл обложек
+     * @return хэш обложки
+     * @throws SQLException при ошибке записи
+     */
+    static byte[] storeCover(PooledConnection conn, byte[] cover, byte[] thumbnail, boolean allowPack)
+            throws SQLException {
+        byte[] hash = coverHash(cover);
+        if (allowPack && !coverExists(conn, hash)) {
+            long offset;
+            try {
+                offset = coverPack().append(cover);
+            } catch (IOException e) {
+                throw new SQLException("Не удалось записать обложку в файл обложек", e);
+            }
+            PreparedStatement pstmt = conn.prepare(INSERT_PACKED_COVER_SQL);
+            pstmt.setBytes(1, hash);
+            setBlob(pstmt, 2, thumbnail);
+            pstmt.setLong(3, offset);
+            pstmt.setInt(4, cover.length);
             pstmt.executeUpdate();
-            System.out.println("Книга добавлена!");
+            return hash;
+        }
+        PreparedStatement pstmt = conn.prepare(UPSERT_COVER_SQL);
+        pstmt.setBytes(1, hash);
+        pstmt.setBytes(2, cover);
+        setBlob(pstmt, 3, thumbnail);
+        pstmt.executeUpdate();
+        return hash;
+    }
+
+    /**
+     * Проверяет, сохранена ли уже обложка с таким хэшем.
+     */
+    private static boolean coverExists(PooledConnection conn, byte[] hash) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(COVER_EXISTS_SQL);
+        pstmt.setBytes(1, hash);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Вычисляет хэш содержимого обложки, по которому она хранится в таблице covers.
+     *
+     * @param cover обложка
+     * @return хэш SHA-256 (32 байта)
+     */
+    static byte[] coverHash(byte[] cover) {
+        try {
+            return MessageDigest.getInstance(COVER_HASH_ALGORITHM).digest(cover);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм " + COVER_HASH_ALGORITHM + " недоступен", e);
+        }
+    }
+
+    /**
+     * Подставляет поля книги в выражение {@link #INSERT_BOOK_SQL}.
+     *
+     * @param pstmt     выражение вставки
+     * @param book      книга
+     * @param updatedAt время сохранения в миллисекундах
+     * @throws SQLException при ошибке установки параметра
+     */
+    private static void bindInsert(PreparedStatement pstmt, Book book, long updatedAt) throws SQLException {
+        pstmt.setString(1, book.getTitle());
+        pstmt.setString(2, book.getAuthor());
+        pstmt.setInt(3, book.getYear());
+        pstmt.setInt(4, book.getPages());
+        pstmt.setDouble(5, book.getRating());
+        pstmt.setString(6, book.getGenres());
+        pstmt.setInt(7, book.getCurrentPage());
+        pstmt.setLong(8, updatedAt);
+    }
+
+    /**
+     * Устанавливает параметр BLOB или NULL, если данных нет.
+     *
+     * @param pstmt подготовленное выражение
+     * @param index индекс параметра
+     * @param bytes данные или null
+     * @throws SQLException при ошибке установки параметра
+     */
+    static void setBlob(PreparedStatement pstmt, int index, byte[] bytes) throws SQLException {
+        if (bytes != null) {
+            pstmt.setBytes(index, bytes);
+        } else {
+            pstmt.setNull(index, Types.BLOB);
+        }
+    }
+
+    /**
+     * Возвращает id последней строки, добавленной через это соединение.
+     *
+     * @param conn соединение для записи
+     * @return значение last_insert_rowid()
+     * @throws SQLException при ошибке запроса
+     */
+    private static int lastInsertId(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare(LAST_INSERT_ID_SQL).executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Обновляет в базе данных только изменённые поля книги ({@link Book#getDirtyFields()}).
+     * Обложка хранится в отдельной таблице и перезаписывается, только если она была задана заново,
+     * поэтому правка, например, текущей страницы не переписывает BLOB обложки. Связи с жанрами
+     * обновляются, только если изменились жанры. Время сохранения записывается и в базу,
+     * и в объект книги, после чего книга помечается как сохранённая.
+     *
+     * @param book объект книги с обновлёнными данными, должен содержать корректный id
+     * @return true, если книга найдена и обновлена или в ней нечего сохранять
+     */
+    public static boolean updateBook(Book book) {
+        Set<Book.Field> fields = book.getDirtyFields();
+        if (fields.isEmpty()) return true;
+
+        StringBuilder sql = new StringBuilder("UPDATE books SET ");
+        for (Book.Field field : fields) {
+            sql.append(columnsOf(field));
+        }
+        sql.append("updated_at=? WHERE id=?");
+
+        long updatedAt = System.currentTimeMillis();
+        DatabaseEvent event = DatabaseEvent.start("updateBook", DatabaseEvent.Kind.UPDATE);
+        try {
+            boolean updated = connections().transaction(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql.toString());
+                int index = 1;
+                for (Book.Field field : fields) {
+                    index = bindField(pstmt, index, book, field);
+                }
+                pstmt.setLong(index++, updatedAt);
+                pstmt.setInt(index, book.getId());
+                int rows = pstmt.executeUpdate();
+                if (rows > 0 && fields.contains(Book.Field.GENRES)) {
+                    replaceBookGenres(conn, book.getId(), book.getGenres());
+                }
+                if (rows > 0 && fields.contains(Book.Field.COVER)) {
+                    writeCover(conn, book.getId(), book.getCover(), book.getThumbnail());
+                }
+                return rows;
+            }) > 0;
+            if (updated) {
+                book.setUpdatedAt(updatedAt);
+                book.markClean();
+                event.setRows(1);
+            }
+            return updated;
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+            return false;
+        } finally {
+            event.finish();
         }
     }
 
     /**
-     * Обновляет данные существующей книги в базе данных.
+     * Обновляет только текущую страницу книги.
      *
-     * @param book объект книги с обновлёнными данными, должен содержать корректный id
+     * @param id          идентификатор книги
+     * @param currentPage новая текущая страница
+     * @return true, если книга найдена и обновлена
      */
-    public static void updateBook(Book book) {
-        String sql = "UPDATE books SET title=?, author=?, year=?, pages=?, rating=?, genres=?, current_page=?, cover=? WHERE id=?";
-        try (Connection conn = connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, book.getTitle());
-            pstmt.setString(2, book.getAuthor());
-            pstmt.setInt(3, book.getYear());
-            pstmt.setInt(4, book.getPages());
-            pstmt.setDouble(5, book.getRating());
-            pstmt.setString(6, book.getGenres());
-            pstmt.setInt(7, book.getCurrentPage());
-            pstmt.setBytes(8, book.getCover());
-            pstmt.setInt(9, book.getId());
-            pstmt.executeUpdate();
+    public static boolean updateProgress(int id, int currentPage) {
+        DatabaseEvent event = DatabaseEvent.start("updateProgress", DatabaseEvent.Kind.UPDATE);
+        try {
+            int rows = connections().write(conn -> {
+                PreparedStatement pstmt = conn.prepare(UPDATE_PROGRESS_SQL);
+                pstmt.setInt(1, currentPage);
+                pstmt.setLong(2, System.currentTimeMillis());
+                pstmt.setInt(3, id);
+                return pstmt.executeUpdate();
+            });
+            event.setRows(rows);
+            return rows > 0;
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+            return false;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Обновляет только рейтинг книги.
+     *
+     * @param id     идентификатор книги
+     * @param rating новый рейтинг (от 0 до 10)
+     * @return true, если книга найдена и обновлена
+     */
+    public static boolean updateRating(int id, double rating) {
+        DatabaseEvent event = DatabaseEvent.start("updateRating", DatabaseEvent.Kind.UPDATE);
+        try {
+            int rows = connections().write(conn -> {
+                PreparedStatement pstmt = conn.prepare(UPDATE_RATING_SQL);
+                pstmt.setDouble(1, rating);
+                pstmt.setLong(2, System.currentTimeMillis());
+                pstmt.setInt(3, id);
+                return pstmt.executeUpdate();
+            });
+            event.setRows(rows);
+            return rows > 0;
+        } catch (SQLException e) {
+            event.setFailed();
+            e.printStackTrace();
+            return false;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Возвращает присваивания столбцов поля для запроса UPDATE.
+     *
+     * @param field поле книги
+     * @return текст вида "столбец=?, " (пустой для обложки, которую записывает {@link #writeCover})
+     */
+    private static String columnsOf(Book.Field field) {
+        return switch (field) {
+            case TITLE -> "title=?, ";
+            case AUTHOR -> "author=?, ";
+            case YEAR -> "year=?, ";
+            case PAGES -> "pages=?, ";
+            case RATING -> "rating=?, ";
+            case GENRES -> "genres=?, ";
+            case CURRENT_PAGE -> "current_page=?, ";
+            case COVER -> "";
+        };
+    }
+
+    /**
+     * Подставляет значение поля книги в порядке, соответствующем {@link #columnsOf(Book.Field)}.
+     *
+     * @param pstmt выражение обновления
+     * @param index индекс первого параметра поля
+     * @param book  книга
+     * @param field поле
+     * @return индекс следующего свободного параметра
+     * @throws SQLException при ошибке установки параметра
+     */
+    private static int bindField(PreparedStatement pstmt, int index, Book book, Book.Field field) throws SQLException {
+        switch (field) {
+            case TITLE -> pstmt.setString(index++, book.getTitle());
+            case AUTHOR -> pstmt.setString(index++, book.getAuthor());
+            case YEAR -> pstmt.setInt(index++, book.getYear());
+            case PAGES -> pstmt.setInt(index++, book.getPages());
+            case RATING -> pstmt.setDouble(index++, book.getRating());
+            case GENRES -> pstmt.setString(index++, book.getGenres());
+            case CURRENT_PAGE -> pstmt.setInt(index++, book.getCurrentPage());
+            case COVER -> { }
         }
+        return index;
     }
 
     /**
      * Удаляет книгу из базы данных по её идентификатору.
+     * Связи с жанрами удаляются каскадно, а счётчик ссылок обложки уменьшает триггер;
+     * обложка, на которую больше не ссылается ни одна книга, удаляется в той же транзакции.
      *
      * @param id идентификатор книги для удаления
+     * @return true, если книга найдена и удалена
      */
-    public static void deleteBookById(int id) {
-        String sql = "DELETE FROM books WHERE id = ?";
-
-        try (Connection conn = connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+    public static boolean deleteBookById(int id) {
+        DatabaseEvent event = DatabaseEvent.start("deleteBookById", DatabaseEvent.Kind.DELETE);
+        try {
+            int rows = connections().write(conn -> {
+                PreparedStatement pstmt = conn.prepare(DELETE_BOOK_SQL);
+                pstmt.setInt(1, id);
+                return pstmt.executeUpdate();
+            });
+            event.setRows(rows);
+            return rows > 0;
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+            return false;
+        } finally {
+            event.finish();
         }
     }
 
     /**
-     * Возвращает список всех уникальных жанров, присутствующих в базе.
+     * Возвращает список всех жанров, у которых есть хотя бы одна книга.
      *
      * @return отсортированный список жанров (может быть пустым)
      */
     public static List<String> getAllGenres() {
-        List<String> genres = new ArrayList<>();
-        String sql = "SELECT genres FROM books";
-
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            Set<String> genreSet = new HashSet<>();
-            while (rs.next()) {
-                String[] parts = rs.getString("genres").split(",\\s*");
-                genreSet.addAll(Arrays.asList(parts));
-            }
-            genres.addAll(genreSet);
-            Collections.sort(genres);
+        DatabaseEvent event = DatabaseEvent.start("getAllGenres", DatabaseEvent.Kind.SELECT);
+        try {
+            List<String> result = connections().read(conn -> {
+                List<String> genres = new ArrayList<>();
+                try (ResultSet rs = conn.prepare(SELECT_GENRES_SQL).executeQuery()) {
+                    while (rs.next()) {
+                        genres.add(rs.getString("name"));
+                    }
+                }
+                return genres;
+            });
+            event.setRows(result.size());
+            return result;
         } catch (SQLException e) {
+            event.setFailed();
             e.printStackTrace();
+            return new ArrayList<>();
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Разбирает строку жанров, разделённых запятыми, в список без повторов и пустых значений.
+     *
+     * @param genres строка жанров (может быть null)
+     * @return список названий жанров в исходном порядке
+     */
+    public static List<String> splitGenres(String genres) {
+        if (genres == null || genres.isBlank()) return List.of();
+        Set<String> names = new LinkedHashSet<>();
+        for (String part : genres.split(",")) {
+            String name = part.trim();
+            if (!name.isEmpty()) names.add(name);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Заменяет связи книги с жанрами на жанры из строки books.genres.
+     * Вызывается в той же транзакции, что и запись самой книги.
+     *
+     * @param conn   соединение для записи
+     * @param bookId id книги
+     * @param genres строка жанров через запятую (может быть null)
+     * @throws SQLException при ошибках базы данных
+     */
+    static void replaceBookGenres(PooledConnection conn, int bookId, String genres) throws SQLException {
+        PreparedStatement delete = conn.prepare(DELETE_BOOK_GENRES_SQL);
+        delete.setInt(1, bookId);
+        delete.executeUpdate();
+
+        PreparedStatement insert = conn.prepare(INSERT_BOOK_GENRE_SQL);
+        for (String genre : splitGenres(genres)) {
+            insert.setInt(1, bookId);
+            insert.setInt(2, genreId(conn, genre));
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Возвращает id жанра, добавляя его в справочник, если такого ещё нет.
+     *
+     * @param conn соединение для записи
+     * @param name название жанра
+     * @return id жанра
+     * @throws SQLException при ошибках базы данных
+     */
+    private static int genreId(PooledConnection conn, String name) throws SQLException {
+        PreparedStatement insert = conn.prepare(INSERT_GENRE_SQL);
+        insert.setString(1, name);
+        insert.executeUpdate();
+
+        PreparedStatement select = conn.prepare(SELECT_GENRE_ID_SQL);
+        select.setString(1, name);
+        try (ResultSet rs = select.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
         }
-        return genres;
     }
 }
@@ -0,0 +1,386 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Версионные миграции схемы базы данных.
+ * Номер применённой миграции хранится в {@code PRAGMA user_version}, поэтому каждая
+ * миграция выполняется ровно один раз для каждого файла базы данных.
+ */
+final class DatabaseSchema {
+
+    /** Шаг миграции схемы. */
+    @FunctionalInterface
+    private interface Migration {
+        /**
+         * Применяет миграцию.
+         *
+         * @param conn соединение для записи внутри открытой транзакции
+         * @throws SQLException при ошибках базы данных
+         */
+        void apply(PooledConnection conn) throws SQLException;
+    }
+
+    /** Миграции по порядку; миграция с индексом i переводит схему с версии i на версию i + 1. */
+    private static final List<Migration> MIGRATIONS = List.of(
+            DatabaseSchema::createGenreTables,
+            DatabaseSchema::createFullTextIndex,
+            DatabaseSchema::addThumbnailColumn,
+            DatabaseSchema::addSortColumns,
+            DatabaseSchema::moveCoversToSeparateTable,
+            DatabaseSchema::createReadingLog,
+            DatabaseSchema::storeCoversByContent,
+            DatabaseSchema::addCoverPackColumns,
+            DatabaseSchema::keyReadingWeeksByIsoWeek
+    );
+
+    /**
+     * Версия, после перехода на которую из существующей базы стоит выполнить VACUUM:
+     * миграция {@link #storeCoversByContent} освобождает страницы, занятые повторяющимися обложками.
+     */
+    private static final int COVERS_BY_CONTENT_VERSION = 7;
+
+    private DatabaseSchema() {
+    }
+
+    /**
+     * Применяет все ещё не применённые миграции.
+     * Должен вызываться внутри транзакции, чтобы прерванная миграция не оставила схему
+     * в промежуточном состоянии.
+     *
+     * @param conn соединение для записи
+     * @return true, если миграции освободили заметную часть файла и его стоит сжать командой VACUUM
+     *         (вне транзакции)
+     * @throws SQLException при ошибках базы данных
+     */
+    static boolean migrate(PooledConnection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        for (int i = version; i < MIGRATIONS.size(); i++) {
+            MIGRATIONS.get(i).apply(conn);
+            try (Statement stmt = conn.connection().createStatement()) {
+                stmt.execute("PRAGMA user_version = " + (i + 1));
+            }
+            System.err.println("Схема базы данных обновлена до версии " + (i + 1) + ".");
+        }
+        return version > 0 && version < COVERS_BY_CONTENT_VERSION && MIGRATIONS.size() >= COVERS_BY_CONTENT_VERSION;
+    }
+
+    /**
+     * Версия 1: справочник жанров и таблица связей книг с жанрами.
+     * Столбец books.genres остаётся строкой для отображения, а все выборки по жанрам
+     * идут через индексированные таблицы. Существующие книги переносятся в новые таблицы.
+     */
+    private static void createGenreTables(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS genres (
+                    id INTEGER PRIMARY KEY,
+                    name TEXT NOT NULL UNIQUE
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS book_genres (
+                    book_id INTEGER NOT NULL REFERENCES books(id) ON DELETE CASCADE,
+                    genre_id INTEGER NOT NULL REFERENCES genres(id),
+                    PRIMARY KEY (book_id, genre_id)
+                ) WITHOUT ROWID
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_book_genres_genre ON book_genres(genre_id, book_id)");
+        }
+
+        try (Statement stmt = conn.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, genres FROM books")) {
+            while (rs.next()) {
+                DatabaseHelper.replaceBookGenres(conn, rs.getInt("id"), rs.getString("genres"));
+            }
+        }
+    }
+
+    /**
+     * Версия 2: полнотекстовый индекс FTS5 по названию и автору.
+     * Таблица books_fts хранит только индекс (content='books') и поддерживается триггерами.
+     * Токенизатор unicode61 приводит к нижнему регистру любые буквы Unicode, включая кириллицу,
+     * а индекс префиксов ускоряет поиск по началу слова, пока пользователь печатает.
+     */
+    private static void createFullTextIndex(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS books_fts USING fts5(
+                    title, author,
+                    content='books', content_rowid='id',
+                    tokenize='unicode61 remove_diacritics 2',
+                    prefix='2 3'
+                )
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_insert AFTER INSERT ON books BEGIN
+                    INSERT INTO books_fts(rowid, title, author) VALUES (new.id, new.title, new.author);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_delete AFTER DELETE ON books BEGIN
+                    INSERT INTO books_fts(books_fts, rowid, title, author)
+                    VALUES ('delete', old.id, old.title, old.author);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_update AFTER UPDATE OF title, author ON books BEGIN
+                    INSERT INTO books_fts(books_fts, rowid, title, author)
+                    VALUES ('delete', old.id, old.title, old.author);
+                    INSERT INTO books_fts(rowid, title, author) VALUES (new.id, new.title, new.author);
+                END
+            """);
+            stmt.execute("INSERT INTO books_fts(books_fts) VALUES ('rebuild')");
+        }
+    }
+
+    /**
+     * Версия 3: столбец с миниатюрой обложки.
+     * Для показа обложки в окнах приложения читается небольшая миниатюра, а не полная обложка.
+     * Миниатюры существующих книг создаёт {@link CoverShrinkJob}.
+     */
+    private static void addThumbnailColumn(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("ALTER TABLE books ADD COLUMN thumbnail BLOB");
+        }
+    }
+
+    /**
+     * Версия 4: столбцы и индексы для сортировки и фильтрации на стороне базы данных.
+     * <ul>
+     *     <li>updated_at — время последнего изменения книги в миллисекундах, заполняется приложением;</li>
+     *     <li>reading_status — вычисляемое состояние чтения: 0 — не начата, 1 — читаю, 2 — прочитана;</li>
+     *     <li>progress — вычисляемая доля прочитанных страниц от 0 до 1.</li>
+     * </ul>
+     * Вычисляемые столбцы виртуальные: они не занимают места в строке, а значения хранятся только в индексах.
+     * Каждый индекс неявно содержит rowid (id), поэтому подходит и для ORDER BY столбец, id,
+     * и для пагинации по ключу (столбец, id).
+     */
+    private static void addSortColumns(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("ALTER TABLE books ADD COLUMN updated_at INTEGER NOT NULL DEFAULT 0");
+            stmt.execute("""
+                ALTER TABLE books ADD COLUMN reading_status INTEGER GENERATED ALWAYS AS (
+                    CASE WHEN current_page <= 0 THEN 0 WHEN current_page < pages THEN 1 ELSE 2 END
+                ) VIRTUAL
+            """);
+            stmt.execute("""
+                ALTER TABLE books ADD COLUMN progress REAL GENERATED ALWAYS AS (
+                    CASE WHEN pages > 0 THEN min(1.0, CAST(current_page AS REAL) / pages) ELSE 0.0 END
+                ) VIRTUAL
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_title ON books(title COLLATE NOCASE)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_author ON books(author COLLATE NOCASE)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_year ON books(year)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_rating ON books(rating)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_progress ON books(progress)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_updated_at ON books(updated_at)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_reading_status ON books(reading_status)");
+        }
+    }
+
+    /**
+     * Версия 5: обложки и миниатюры переносятся из books в отдельную таблицу book_covers.
+     * SQLite при любом UPDATE переписывает строку целиком вместе со страницами переполнения,
+     * поэтому, пока BLOB обложки лежал в строке книги, даже смена текущей страницы
+     * записывала в WAL всю обложку. Строка book_covers есть только у книг с обложкой.
+     */
+    private static void moveCoversToSeparateTable(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS book_covers (
+                    book_id INTEGER PRIMARY KEY REFERENCES books(id) ON DELETE CASCADE,
+                    cover BLOB NOT NULL,
+                    thumbnail BLOB
+                )
+            """);
+            stmt.execute("""
+                INSERT INTO book_covers(book_id, cover, thumbnail)
+                SELECT id, cover, thumbnail FROM books WHERE cover IS NOT NULL AND length(cover) > 0
+            """);
+            stmt.execute("ALTER TABLE books DROP COLUMN thumbnail");
+            stmt.execute("ALTER TABLE books DROP COLUMN cover");
+        }
+    }
+
+    /**
+     * Версия 6: журнал чтения и сводные таблицы по нему.
+     * <p>
+     * Каждое изменение текущей страницы книги (через приложение или в обход него) триггер
+     * дописывает в reading_events; строки журнала не изменяются и не удаляются, в том числе
+     * при удалении книги. Второй триггер в той же транзакции прибавляет прочитанные страницы
+     * к сводным таблицам по дням, неделям, месяцам и жанрам, поэтому статистика за период
+     * читается одной строкой сводки, а не просмотром журнала. Возврат к более ранней странице
+     * записывается в журнал, но прочитанных страниц не добавляет.
+     * <p>
+     * Дни, недели и месяцы считаются по местному времени. Неделя — неделя ISO 8601 (с понедельника)
+     * с ключом %G-%V в strftime (год недели и её номер), поэтому неделя на стыке лет не делится на две.
+     * Для уже существующих книг истории нет: журнал начинается с момента миграции.
+     */
+    private static void createReadingLog(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS reading_events (
+                    id INTEGER PRIMARY KEY,
+                    book_id INTEGER NOT NULL,
+                    occurred_at INTEGER NOT NULL,
+                    from_page INTEGER NOT NULL,
+                    to_page INTEGER NOT NULL,
+                    pages_read INTEGER NOT NULL
+                )
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reading_events_book ON reading_events(book_id, occurred_at)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS reading_days (day TEXT PRIMARY KEY, pages INTEGER NOT NULL) WITHOUT ROWID");
+            stmt.execute("CREATE TABLE IF NOT EXISTS reading_weeks (week TEXT PRIMARY KEY, pages INTEGER NOT NULL) WITHOUT ROWID");
+            stmt.execute("CREATE TABLE IF NOT EXISTS reading_months (month TEXT PRIMARY KEY, pages INTEGER NOT NULL) WITHOUT ROWID");
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS reading_genres (
+                    genre_id INTEGER PRIMARY KEY REFERENCES genres(id),
+                    pages INTEGER NOT NULL
+                )
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_reading_event AFTER UPDATE OF current_page ON books
+                WHEN new.current_page IS NOT old.current_page BEGIN
+                    INSERT INTO reading_events(book_id, occurred_at, from_page, to_page, pages_read)
+                    VALUES (new.id, CAST(unixepoch('subsec') * 1000 AS INTEGER),
+                            coalesce(old.current_page, 0), coalesce(new.current_page, 0),
+                            max(coalesce(new.current_page, 0) - coalesce(old.current_page, 0), 0));
+                END
+            """);
+            createReadingRollupTrigger(stmt);
+        }
+    }
+
+    /**
+     * Создаёт триггер, прибавляющий прочитанные страницы новой записи журнала к сводным таблицам.
+     */
+    private static void createReadingRollupTrigger(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS reading_events_rollup AFTER INSERT ON reading_events
+            WHEN new.pages_read > 0 BEGIN
+                INSERT INTO reading_days(day, pages)
+                VALUES (date(new.occurred_at / 1000, 'unixepoch', 'localtime'), new.pages_read)
+                ON CONFLICT(day) DO UPDATE SET pages = pages + excluded.pages;
+                INSERT INTO reading_weeks(week, pages)
+                VALUES (strftime('%G-%V', new.occurred_at / 1000, 'unixepoch', 'localtime'), new.pages_read)
+                ON CONFLICT(week) DO UPDATE SET pages = pages + excluded.pages;
+                INSERT INTO reading_months(month, pages)
+                VALUES (strftime('%Y-%m', new.occurred_at / 1000, 'unixepoch', 'localtime'), new.pages_read)
+                ON CONFLICT(month) DO UPDATE SET pages = pages + excluded.pages;
+                INSERT INTO reading_genres(genre_id, pages)
+                SELECT genre_id, new.pages_read FROM book_genres WHERE book_id = new.book_id
+                ON CONFLICT(genre_id) DO UPDATE SET pages = pages + excluded.pages;
+            END
+        """);
+    }
+
+    /**
+     * Версия 7: обложки хранятся по хэшу содержимого.
+     * <p>
+     * Одинаковые обложки (издания одной серии, повторно импортированные книги) хранились в book_covers
+     * отдельно для каждой книги. Теперь обложка и её миниатюра лежат в таблице covers один раз под ключом
+     * SHA-256 содержимого ({@link DatabaseHelper#coverHash(byte[])}), а книга ссылается на неё столбцом
+     * books.cover_hash. Индекс по cover_hash нужен для проверки внешнего ключа при удалении обложки
+     * и для переключения всех книг с одной обложки на другую ({@link CoverShrinkJob}).
+     * <p>
+     * Количество ссылок ref_count поддерживают триггеры на books: обложка, на которую не ссылается
+     * ни одна книга, удаляется в той же транзакции, что и последняя ссылка на неё, в том числе при удалении
+     * книги. Существующие обложки переносятся по одной с подсчётом ссылок, затем book_covers удаляется.
+     * Переносятся они всегда в базу: столбцы файла обложек появляются только в версии 8.
+     */
+    private static void storeCoversByContent(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS covers (
+                    hash BLOB PRIMARY KEY,
+                    cover BLOB NOT NULL,
+                    thumbnail BLOB,
+                    ref_count INTEGER NOT NULL DEFAULT 0
+                )
+            """);
+            stmt.execute("ALTER TABLE books ADD COLUMN cover_hash BLOB REFERENCES covers(hash)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_cover_hash ON books(cover_hash)");
+        }
+
+        PreparedStatement link = conn.prepare("UPDATE books SET cover_hash = ? WHERE id = ?");
+        try (Statement stmt = conn.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT book_id, cover, thumbnail FROM book_covers")) {
+            while (rs.next()) {
+                byte[] hash = DatabaseHelper.storeCover(conn, rs.getBytes("cover"), rs.getBytes("thumbnail"), false);
+                link.setBytes(1, hash);
+                link.setInt(2, rs.getInt("book_id"));
+                link.executeUpdate();
+            }
+        }
+
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("""
+                UPDATE covers SET ref_count = (SELECT count(*) FROM books WHERE books.cover_hash = covers.hash)
+            """);
+            stmt.execute("DROP TABLE book_covers");
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_cover_insert AFTER INSERT ON books
+                WHEN new.cover_hash IS NOT NULL BEGIN
+                    UPDATE covers SET ref_count = ref_count + 1 WHERE hash = new.cover_hash;
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_cover_update AFTER UPDATE OF cover_hash ON books
+                WHEN new.cover_hash IS NOT old.cover_hash BEGIN
+                    UPDATE covers SET ref_count = ref_count + 1 WHERE hash = new.cover_hash;
+                    UPDATE covers SET ref_count = ref_count - 1 WHERE hash = old.cover_hash;
+                    DELETE FROM covers WHERE hash = old.cover_hash AND ref_count <= 0;
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_cover_delete AFTER DELETE ON books
+                WHEN old.cover_hash IS NOT NULL BEGIN
+                    UPDATE covers SET ref_count = ref_count - 1 WHERE hash = old.cover_hash;
+                    DELETE FROM covers WHERE hash = old.cover_hash AND ref_count <= 0;
+                END
+            """);
+        }
+    }
+
+    /**
+     * Версия 8: расположение обложки во внешнем файле обложек {@link CoverPack}.
+     * Для обложки, сохранённой в файле, pack_offset и pack_length задают её смещение и длину,
+     * а столбец cover содержит пустой BLOB. У обложек, хранящихся в базе, оба столбца равны NULL,
+     * поэтому существующие базы продолжают работать без переноса обложек.
+     */
+    private static void addCoverPackColumns(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("ALTER TABLE covers ADD COLUMN pack_offset INTEGER");
+            stmt.execute("ALTER TABLE covers ADD COLUMN pack_length INTEGER");
+        }
+    }
+
+    /**
+     * Версия 9: сводка по неделям с ключом недели ISO 8601 (%G-%V).
+     * Базы, созданные до этой версии, хранили недели с ключом %Y-%W, при котором неделя на стыке лет
+     * делилась на две. Триггер сводки пересоздаётся, а reading_weeks пересчитывается из журнала:
+     * его строки не удаляются, поэтому пересчёт даёт те же суммы, что накопил бы новый триггер.
+     */
+    private static void keyReadingWeeksByIsoWeek(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.connection().createStatement()) {
+            stmt.execute("DROP TRIGGER IF EXISTS reading_events_rollup");
+            createReadingRollupTrigger(stmt);
+            stmt.execute("DELETE FROM reading_weeks");
+            stmt.execute("""
+                INSERT INTO reading_weeks(week, pages)
+                SELECT strftime('%G-%V', occurred_at / 1000, 'unixepoch', 'localtime'), sum(pages_read)
+                FROM reading_events WHERE pages_read > 0
+                GROUP BY 1
+            """);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.nb2506.booktracker;
+
+import javafx.fxml.FXML;
+import javafx.scene.control.TextArea;
+
+/**
+ * Контроллер окна диагностики.
+ * Показывает сводку {@link Metrics#dump()}: длительности операций с базой данных, декодирования обложек
+ * и фильтрации, а также счётчики строк, байтов, ошибок и кэшей. Сводка перечитывается по кнопке.
+ */
+public class DiagnosticsController {
+    /** Поле со сводкой метрик. */
+    @FXML private TextArea metricsArea;
+
+    /**
+     * Инициализация контроллера. Показывает текущую сводку.
+     */
+    @FXML
+    private void initialize() {
+        onRefreshButton();
+    }
+
+    /**
+     * Обработчик нажатия кнопки "Обновить". Перечитывает сводку метрик.
+     */
+    @FXML
+    private void onRefreshButton() {
+        metricsArea.setText(Metrics.dump());
+    }
+
+    /**
+     * Обработчик нажатия кнопки "Сбросить". Обнуляет счётчики и гистограммы и показывает пустую сводку.
+     */
+    @FXML
+    private void onResetButton() {
+        Metrics.reset();
+        onRefreshButton();
+    }
+}
@@ -0,0 +1,151 @@
+package com.nb2506.booktracker;
+
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Контроллер окна экспорта библиотеки.
+ * Экспорт ({@link BookExporter}) выполняется в отдельном потоке, а окно показывает ход записи
+ * и позволяет его отменить; закрытие окна до окончания экспорта тоже отменяет его.
+ */
+public class ExportController {
+    /** Поток, в котором выполняется экспорт. */
+    private static final ExecutorService EXPORT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Имя файла экспорта. */
+    @FXML private Label fileLabel;
+
+    /** Ход экспорта. */
+    @FXML private ProgressBar progressBar;
+
+    /** Количество записанных книг и обложек или итог экспорта. */
+    @FXML private Label statusLabel;
+
+    /** Кнопка отмены; после окончания экспорта закрывает окно. */
+    @FXML private Button cancelButton;
+
+    /** Экспорт, выполняемый в этом окне. */
+    private final BookExporter exporter = new BookExporter();
+
+    /** Выполняемый экспорт или null, если он ещё не начат. */
+    private CompletableFuture<BookExporter.Result> pendingExport;
+
+    /**
+     * Признак того, что обновление хода экспорта уже передано в поток JavaFX.
+     * Пока оно не выполнено, новые сведения о ходе не передаются, чтобы не переполнять очередь событий.
+     */
+    private final AtomicBoolean progressPending = new AtomicBoolean();
+
+    /** Последнее количество записанных книг и обложек. */
+    private volatile long done;
+
+    /** Общее количество книг и обложек. */
+    private volatile long total;
+
+    /**
+     * Начинает экспорт всех книг в файл.
+     *
+     * @param file файл экспорта
+     * @param format формат файла
+     */
+    public void start(Path file, BookExporter.Format format) {
+        fileLabel.setText("Экспорт в " + file.getFileName());
+        pendingExport = CompletableFuture.supplyAsync(() -> {
+            try {
+                return exporter.exportFile(file, format, this::onProgress);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, EXPORT_EXECUTOR);
+        pendingExport.whenCompleteAsync(this::onFinished, Platform::runLater);
+    }
+
+    /**
+     * Отменяет экспорт, если он ещё выполняется. Вызывается при закрытии окна.
+     */
+    public void cancel() {
+        if (pendingExport != null && !pendingExport.isDone()) {
+            exporter.cancel();
+        }
+    }
+
+    /**
+     * Обработчик нажатия кнопки "Отмена": отменяет экспорт или закрывает окно, если экспорт завершён.
+     */
+    @FXML
+    private void onCancelButton() {
+        if (pendingExport != null && !pendingExport.isDone()) {
+            exporter.cancel();
+            cancelButton.setDisable(true);
+            statusLabel.setText("Отмена...");
+        } else {
+            ((Stage) cancelButton.getScene().getWindow()).close();
+        }
+    }
+
+    /**
+     * Принимает сведения о ходе экспорта в потоке экспорта и передаёт их в поток JavaFX.
+     */
+    private void onProgress(long done, long total) {
+        this.done = done;
+        this.total = total;
+        if (progressPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                progressPending.set(false);
+                showProgress();
+            });
+        }
+    }
+
+    /**
+     * Показывает последнее известное количество записанных книг и обложек.
+     */
+    private void showProgress() {
+        long done = this.done;
+        long total = this.total;
+        progressBar.setProgress(total > 0 ? (double) done / total : ProgressBar.INDETERMINATE_PROGRESS);
+        statusLabel.setText("Записано " + done + " из " + total);
+    }
+
+    /**
+     * Показывает итог экспорта.
+     *
+     * @param result итог или null при ошибке
+     * @param error ошибка или null при успехе
+     */
+    private void onFinished(BookExporter.Result result, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        cancelButton.setDisable(false);
+        cancelButton.setText("Закрыть");
+        if (cause == null) {
+            progressBar.setProgress(1);
+            statusLabel.setText("Записано книг: " + result.books() + ", обложек: " + result.covers()
+                    + ", " + result.bytes() / 1024 + " КБ за " + result.elapsedNanos() / 1_000_000 + " мс");
+        } else if (cause instanceof CancellationException) {
+            progressBar.setProgress(0);
+            statusLabel.setText("Экспорт отменён, файл не записан.");
+        } else {
+            cause.printStackTrace();
+            progressBar.setProgress(0);
+            statusLabel.setText("Не удалось выполнить экспорт: " + cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.nb2506.booktracker;
+
+import java.util.List;
+
+/**
+ * Фасеты для фильтрации списка книг: жанры, оценка, год издания и состояние чтения.
+ * Каждая книга относится к одному или нескольким значениям фасета; значения нумеруются
+ * с нуля, и набор значений книги представляется битовой маской (значений не больше 32).
+ */
+public enum Facet {
+    /** Жанры из фиксированного набора {@link Genres#ALL}; у книги может быть несколько жанров. */
+    GENRE("Жанры", Genres.ALL),
+
+    /** Оценка с шагом 2 балла. */
+    RATING("Оценка", List.of("0–2", "2–4", "4–6", "6–8", "8–10")),
+
+    /** Год издания. */
+    YEAR("Год издания", List.of("до 1900", "1900–1949", "1950–1999", "2000–2009", "2010–2019", "с 2020")),
+
+    /** Состояние чтения по текущей странице. */
+    READING_STATE("Чтение", List.of("Не начата", "Читаю", "Прочитана"));
+
+    /** Нижние границы диапазонов годов, начиная со второго диапазона. */
+    private static final int[] YEAR_BOUNDS = {1900, 1950, 2000, 2010, 2020};
+
+    /** Заголовок фасета для интерфейса. */
+    private final String title;
+
+    /** Названия значений фасета. */
+    private final List<String> values;
+
+    Facet(String title, List<String> values) {
+        this.title = title;
+        this.values = values;
+    }
+
+    /** Возвращает заголовок фасета. */
+    public String getTitle() { return title; }
+
+    /** Возвращает названия значений фасета по их номерам. */
+    public List<String> getValues() { return values; }
+
+    /**
+     * Возвращает значения фасета, к которым относится книга.
+     *
+     * @param book книга
+     * @return битовая маска номеров значений
+     */
+    public int valueMask(Book book) {
+        return switch (this) {
+            case GENRE -> book.getSearchKey().genreMask();
+            case RATING -> 1 << Math.clamp((int) (book.getRating() / 2), 0, values.size() - 1);
+            case YEAR -> 1 << yearIndex(book.getYear());
+            case READING_STATE -> 1 << readingState(book.getCurrentPage(), book.getPages());
+        };
+    }
+
+    /**
+     * Возвращает условие SQL для одного значения фасета (кроме жанров, которые хранятся
+     * в отдельной таблице). Условие не содержит параметров.
+     *
+     * @param value номер значения
+     * @return условие для таблицы books
+     */
+    String sqlCondition(int value) {
+        return switch (this) {
+            case GENRE -> throw new UnsupportedOperationException("Жанры выбираются через таблицу book_genres");
+            case RATING -> value == 0 ? "rating < 2"
+                    : value == values.size() - 1 ? "rating >= " + 2 * value
+                    : "rating >= " + 2 * value + " AND rating < " + 2 * (value + 1);
+            case YEAR -> value == 0 ? "year < " + YEAR_BOUNDS[0]
+                    : value == YEAR_BOUNDS.length ? "year >= " + YEAR_BOUNDS[value - 1]
+                    : "year >= " + YEAR_BOUNDS[value - 1] + " AND year < " + YEAR_BOUNDS[value];
+            case READING_STATE -> "reading_status = " + value;
+        };
+    }
+
+    /**
+     * Возвращает номер диапазона для года издания.
+     */
+    private static int yearIndex(int year) {
+        int index = 0;
+        while (index < YEAR_BOUNDS.length && year >= YEAR_BOUNDS[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Возвращает номер состояния чтения: 0 — не начата, 1 — читаю, 2 — прочитана.
+     * Совпадает с вычисляемым столбцом books.reading_status.
+     */
+    static int readingState(int currentPage, int pages) {
+        if (currentPage <= 0) return 0;
+        return currentPage < pages ? 1 : 2;
+    }
+}
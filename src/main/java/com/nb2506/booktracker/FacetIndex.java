@@ -0,0 +1,167 @@
+package com.nb2506.booktracker;
+
+import java.util.BitSet;
+
+/**
+ * Инвертированный индекс фасетов: для каждого значения каждого {@link Facet} хранится
+ * битовая карта книг, относящихся к этому значению. Номер бита — id книги, поэтому карты
+ * не нужно сдвигать при удалении книг, а изменение одной книги затрагивает только её биты.
+ * <p>
+ * Фильтрация по выбранным значениям и подсчёт книг для каждого значения сводятся к операциям
+ * над битовыми картами и не требуют обхода самих книг. Индекс не потокобезопасен
+ * и используется из потока JavaFX.
+ */
+public final class FacetIndex {
+    /** Id всех проиндексированных книг. */
+    private final BitSet ids = new BitSet();
+
+    /** Битовые карты значений: первый индекс — порядковый номер фасета, второй — номер значения. */
+    private final BitSet[][] bitmaps = new BitSet[Facet.values().length][];
+
+    /**
+     * Создаёт пустой индекс.
+     */
+    public FacetIndex() {
+        for (Facet facet : Facet.values()) {
+            BitSet[] values = new BitSet[facet.getValues().size()];
+            for (int value = 0; value < values.length; value++) {
+                values[value] = new BitSet();
+            }
+            bitmaps[facet.ordinal()] = values;
+        }
+    }
+
+    /**
+     * Создаёт индекс по списку книг.
+     *
+     * @param books книги
+     */
+    public FacetIndex(Iterable<Book> books) {
+        this();
+        for (Book book : books) {
+            add(book);
+        }
+    }
+
+    /**
+     * Добавляет книгу в индекс.
+     *
+     * @param book книга с присвоенным id
+     */
+    public void add(Book book) {
+        int id = book.getId();
+        ids.set(id);
+        for (Facet facet : Facet.values()) {
+            BitSet[] values = bitmaps[facet.ordinal()];
+            int mask = facet.valueMask(book);
+            while (mask != 0) {
+                int value = Integer.numberOfTrailingZeros(mask);
+                if (value < values.length) {
+                    values[value].set(id);
+                }
+                mask &= mask - 1;
+            }
+        }
+    }
+
+    /**
+     * Удаляет книгу из индекса.
+     *
+     * @param id id книги
+     */
+    public void remove(int id) {
+        ids.clear(id);
+        for (BitSet[] values : bitmaps) {
+            for (BitSet bitmap : values) {
+                bitmap.clear(id);
+            }
+        }
+    }
+
+    /**
+     * Заменяет значения книги в индексе новой версией книги.
+     *
+     * @param book новая версия книги
+     */
+    public void update(Book book) {
+        remove(book.getId());
+        add(book);
+    }
+
+    /**
+     * Возвращает количество проиндексированных книг.
+     *
+     * @return количество книг
+     */
+    public int size() {
+        return ids.cardinality();
+    }
+
+    /**
+     * Возвращает id книг, удовлетворяющих выбору.
+     *
+     * @param selection выбранные значения фасетов
+     * @param restrict дополнительное ограничение (например, результат поиска) или null
+     * @return новая битовая карта id
+     */
+    public BitSet match(FacetSelection selection, BitSet restrict) {
+        BitSet result = (BitSet) ids.clone();
+        if (restrict != null) {
+            result.and(restrict);
+        }
+        for (Facet facet : Facet.values()) {
+            int mask = selection.selected(facet);
+            if (mask == 0) continue;
+            BitSet[] values = bitmaps[facet.ordinal()];
+            if (facet == Facet.GENRE && selection.matchAllGenres()) {
+                for (int value = 0; value < values.length; value++) {
+                    if ((mask & 1 << value) != 0) {
+                        result.and(values[value]);
+                    }
+                }
+            } else {
+                BitSet group = new BitSet();
+                for (int value = 0; value < values.length; value++) {
+                    if ((mask & 1 << value) != 0) {
+                        group.or(values[value]);
+                    }
+                }
+                result.and(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Считает для каждого значения фасета, сколько книг останется, если выбрать это значение.
+     * Для фасетов, значения которых объединяются по ИЛИ, собственный выбор фасета при подсчёте
+     * не учитывается, поэтому счётчики соседних значений не обнуляются после выбора одного из них.
+     *
+     * @param facet фасет
+     * @param selection текущий выбор
+     * @param restrict дополнительное ограничение или null
+     * @return количество книг по номерам значений
+     */
+    public int[] counts(Facet facet, FacetSelection selection, BitSet restrict) {
+        BitSet base = facet == Facet.GENRE && selection.matchAllGenres()
+                ? match(selection, restrict)
+                : match(selection.without(facet), restrict);
+        BitSet[] values = bitmaps[facet.ordinal()];
+        int[] counts = new int[values.length];
+        for (int value = 0; value < values.length; value++) {
+            counts[value] = intersectionSize(base, values[value]);
+        }
+        return counts;
+    }
+
+    /**
+     * Считает общие биты двух карт без создания промежуточной карты.
+     */
+    private static int intersectionSize(BitSet base, BitSet bitmap) {
+        int count = 0;
+        for (int id = bitmap.nextSetBit(0); id >= 0; id = bitmap.nextSetBit(id + 1)) {
+            if (base.get(id)) count++;
+        }
+        return count;
+    }
+}
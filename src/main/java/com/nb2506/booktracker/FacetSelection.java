@@ -0,0 +1,174 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Выбранные значения фасетов. Неизменяемый объект: методы изменения возвращают новый выбор.
+ * <p>
+ * Внутри одного фасета выбранные значения объединяются по ИЛИ; для жанров можно потребовать,
+ * чтобы у книги были все выбранные жанры сразу (И). Разные фасеты объединяются по И.
+ * Фасет без выбранных значений книги не ограничивает.
+ */
+public final class FacetSelection {
+    /** Выбор без ограничений. */
+    public static final FacetSelection NONE = new FacetSelection(new int[Facet.values().length], false);
+
+    /** Маски выбранных значений по порядковому номеру фасета. */
+    private final int[] masks;
+
+    /** Требовать все выбранные жанры сразу вместо любого из них. */
+    private final boolean matchAllGenres;
+
+    private FacetSelection(int[] masks, boolean matchAllGenres) {
+        this.masks = masks;
+        this.matchAllGenres = matchAllGenres;
+    }
+
+    /**
+     * Возвращает выбор с добавленным или снятым значением фасета.
+     *
+     * @param facet фасет
+     * @param value номер значения
+     * @param selected выбрать значение или снять выбор
+     * @return новый выбор
+     */
+    public FacetSelection with(Facet facet, int value, boolean selected) {
+        int[] copy = masks.clone();
+        copy[facet.ordinal()] = selected ? copy[facet.ordinal()] | 1 << value : copy[facet.ordinal()] & ~(1 << value);
+        return new FacetSelection(copy, matchAllGenres);
+    }
+
+    /**
+     * Возвращает выбор без ограничений по одному фасету.
+     *
+     * @param facet фасет
+     * @return новый выбор
+     */
+    public FacetSelection without(Facet facet) {
+        if (masks[facet.ordinal()] == 0) return this;
+        int[] copy = masks.clone();
+        copy[facet.ordinal()] = 0;
+        return new FacetSelection(copy, matchAllGenres);
+    }
+
+    /**
+     * Возвращает выбор с другим способом объединения жанров.
+     *
+     * @param matchAllGenres true — нужны все выбранные жанры, false — любой из них
+     * @return новый выбор
+     */
+    public FacetSelection withMatchAllGenres(boolean matchAllGenres) {
+        return new FacetSelection(masks, matchAllGenres);
+    }
+
+    /**
+     * Возвращает маску выбранных значений фасета.
+     *
+     * @param facet фасет
+     * @return битовая маска номеров значений (0 — фасет не ограничивает)
+     */
+    public int selected(Facet facet) {
+        return masks[facet.ordinal()];
+    }
+
+    /** Возвращает true, если для жанров требуются все выбранные значения. */
+    public boolean matchAllGenres() { return matchAllGenres; }
+
+    /**
+     * Возвращает количество выбранных значений во всех фасетах.
+     *
+     * @return количество выбранных значений
+     */
+    public int count() {
+        int count = 0;
+        for (int mask : masks) {
+            count += Integer.bitCount(mask);
+        }
+        return count;
+    }
+
+    /**
+     * Проверяет одну книгу без обращения к индексу.
+     *
+     * @param book книга
+     * @return true, если книга удовлетворяет выбору
+     */
+    public boolean matches(Book book) {
+        for (Facet facet : Facet.values()) {
+            int mask = masks[facet.ordinal()];
+            if (mask == 0) continue;
+            int values = facet.valueMask(book);
+            boolean matches = facet == Facet.GENRE && matchAllGenres
+                    ? (values & mask) == mask
+                    : (values & mask) != 0;
+            if (!matches) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Строит условия SQL для выбора. Условие по жанрам содержит параметры с названиями жанров,
+     * которые подставляет {@link #bind(PreparedStatement, int)}.
+     *
+     * @return условия для объединения через AND
+     */
+    List<String> sqlConditions() {
+        List<String> conditions = new ArrayList<>();
+        int genres = masks[Facet.GENRE.ordinal()];
+        if (genres != 0) {
+            String placeholders = String.join(", ", Collections.nCopies(Integer.bitCount(genres), "?"));
+            String condition = "id IN (SELECT bg.book_id FROM book_genres bg"
+                    + " JOIN genres g ON g.id = bg.genre_id WHERE g.name IN (" + placeholders + ")";
+            if (matchAllGenres) {
+                condition += " GROUP BY bg.book_id HAVING count(*) = " + Integer.bitCount(genres);
+            }
+            conditions.add(condition + ")");
+        }
+        for (Facet facet : Facet.values()) {
+            int mask = masks[facet.ordinal()];
+            if (facet == Facet.GENRE || mask == 0) continue;
+            List<String> alternatives = new ArrayList<>();
+            for (int value = 0; value < facet.getValues().size(); value++) {
+                if ((mask & 1 << value) != 0) {
+                    alternatives.add("(" + facet.sqlCondition(value) + ")");
+                }
+            }
+            conditions.add("(" + String.join(" OR ", alternatives) + ")");
+        }
+        return conditions;
+    }
+
+    /**
+     * Подставляет параметры условий {@link #sqlConditions()}.
+     *
+     * @param pstmt подготовленное выражение
+     * @param index индекс первого параметра
+     * @return индекс следующего свободного параметра
+     * @throws SQLException при ошибке установки параметра
+     */
+    int bind(PreparedStatement pstmt, int index) throws SQLException {
+        int genres = masks[Facet.GENRE.ordinal()];
+        for (int value = 0; value < Genres.ALL.size(); value++) {
+            if ((genres & 1 << value) != 0) {
+                pstmt.setString(index++, Genres.ALL.get(value));
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FacetSelection other
+                && matchAllGenres == other.matchAllGenres && Arrays.equals(masks, other.masks);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(masks) + Boolean.hashCode(matchAllGenres);
+    }
+}
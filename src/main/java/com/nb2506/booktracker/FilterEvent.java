@@ -0,0 +1,101 @@
+package com.nb2506.booktracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Замер применения фильтров к списку книг в памяти (поиск, фасеты, подсчёт значений фасетов
+ * и проход предиката по списку). В постраничном режиме фильтры выполняются запросами SQL
+ * и видны как {@link DatabaseEvent}. Длительность попадает в гистограмму {@code filter.apply}
+ * реестра {@link Metrics}, а при запущенном Java Flight Recorder — ещё и в событие
+ * {@code com.nb2506.booktracker.Filter} (см. {@link DatabaseEvent} о том, почему оно создаётся не всегда).
+ */
+public final class FilterEvent {
+    /**
+     * Событие Java Flight Recorder для применения фильтров.
+     */
+    @Name("com.nb2506.booktracker.Filter")
+    @Label("Применение фильтров")
+    @Category({"BookTracker", "Интерфейс"})
+    @Description("Фильтрация списка книг в памяти по строке поиска и фасетам")
+    @StackTrace(false)
+    static final class Recorded extends Event {
+        /** Количество книг в списке. */
+        @Label("Книг")
+        int books;
+
+        /** Количество книг, прошедших фильтр. */
+        @Label("Найдено")
+        int matched;
+
+        /** Длина строки поиска. */
+        @Label("Длина строки поиска")
+        int searchLength;
+
+        /** Количество выбранных значений фасетов. */
+        @Label("Выбрано фасетов")
+        int facets;
+    }
+
+    /** Количество книг в списке. */
+    private final int books;
+
+    /** Длина строки поиска. */
+    private final int searchLength;
+
+    /** Количество выбранных значений фасетов. */
+    private final int facets;
+
+    /** Время начала. */
+    private final long startNanos;
+
+    /** Событие JFR или null, если Flight Recorder не запущен. */
+    private final Recorded recorded;
+
+    private FilterEvent(int books, int searchLength, int facets) {
+        this.books = books;
+        this.searchLength = searchLength;
+        this.facets = facets;
+        this.recorded = FlightRecorder.isInitialized() ? new Recorded() : null;
+        if (recorded != null) {
+            recorded.begin();
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Начинает отсчёт применения фильтров.
+     *
+     * @param books количество книг в списке
+     * @param searchLength длина строки поиска
+     * @param facets количество выбранных значений фасетов
+     * @return начатый замер
+     */
+    static FilterEvent start(int books, int searchLength, int facets) {
+        return new FilterEvent(books, searchLength, facets);
+    }
+
+    /**
+     * Завершает замер.
+     *
+     * @param matched количество книг, прошедших фильтр
+     */
+    void finish(int matched) {
+        Metrics.record("filter.apply", System.nanoTime() - startNanos);
+        if (recorded != null) {
+            recorded.end();
+            if (recorded.shouldCommit()) {
+                recorded.books = books;
+                recorded.matched = matched;
+                recorded.searchLength = searchLength;
+                recorded.facets = facets;
+                recorded.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.nb2506.booktracker;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фиксированный набор жанров, из которых пользователь выбирает жанры книги.
+ * Каждому жанру соответствует бит, поэтому набор жанров книги можно хранить одним числом.
+ */
+public final class Genres {
+    /** Все доступные жанры в порядке отображения. */
+    public static final List<String> ALL = List.of(
+            "Фантастика", "Детектив", "Роман", "Научная литература",
+            "Биография", "Ужасы", "Приключения", "Фэнтези",
+            "Детская литература", "Готика", "Философия"
+    );
+
+    /** Номер бита каждого жанра. */
+    private static final Map<String, Integer> INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < ALL.size(); i++) {
+            INDEX.put(ALL.get(i), i);
+        }
+    }
+
+    private Genres() {
+    }
+
+    /**
+     * Возвращает номер жанра в {@link #ALL}.
+     *
+     * @param genre название жанра
+     * @return номер жанра или -1, если жанр не входит в фиксированный набор
+     */
+    public static int indexOf(String genre) {
+        Integer index = INDEX.get(genre);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Возвращает бит жанра для маски жанров.
+     *
+     * @param genre название жанра
+     * @return маска с единственным битом жанра или 0, если жанр не входит в фиксированный набор
+     */
+    public static int bit(String genre) {
+        int index = indexOf(genre);
+        return index < 0 ? 0 : 1 << index;
+    }
+}
@@ -1,14 +1,63 @@
 package com.nb2506.booktracker;
 
 import javafx.scene.image.Image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Вспомогательный класс для работы с изображениями:
- * чтение из файлов и преобразование массива байт в объект {@link Image}.
+ * чтение из файлов, подготовка обложек к сохранению и преобразование массива байт в объект {@link Image}.
  */
 public class ImageHelper {
 
+    /**
+     * Ограничения для сохраняемых обложек.
+     *
+     * @param maxDimension максимальная длина большей стороны обложки в пикселях
+     * @param maxBytes максимальный размер закодированной обложки в байтах
+     * @param thumbnailDimension длина большей стороны миниатюры в пикселях
+     */
+    public record CoverLimits(int maxDimension, int maxBytes, int thumbnailDimension) {
+        /**
+         * Ограничения по умолчанию. Миниатюра не меньше области отображения обложки в окнах приложения,
+         * поэтому для показа обложки достаточно миниатюры.
+         */
+        public static final CoverLimits DEFAULT = new CoverLimits(1200, 400 * 1024, 300);
+
+        public CoverLimits {
+            if (maxDimension <= 0 || maxBytes <= 0 || thumbnailDimension <= 0) {
+                throw new IllegalArgumentException("Ограничения обложки должны быть положительными");
+            }
+        }
+    }
+
+    /**
+     * Подготовленная к сохранению обложка.
+     *
+     * @param cover обложка в формате JPEG или PNG в пределах ограничений
+     * @param thumbnail миниатюра обложки
+     */
+    public record IngestedCover(byte[] cover, byte[] thumbnail) {
+    }
+
+    /** Значения качества JPEG, которые перебираются, пока обложка не уложится в лимит размера. */
+    private static final float[] JPEG_QUALITIES = {0.85f, 0.75f, 0.6f, 0.45f};
+
+    /** Качество JPEG для миниатюр. */
+    private static final float THUMBNAIL_QUALITY = 0.8f;
+
+    /** Меньше этой длины стороны обложка не уменьшается даже ради лимита размера. */
+    private static final int MIN_DIMENSION = 200;
+
     /**
      * Считывает содержимое файла изображения и возвращает его в виде массива байт.
      *
@@ -28,6 +77,136 @@ public class ImageHelper {
         }
     }
 
+    /**
+     * Подготавливает обложку к сохранению с ограничениями по умолчанию.
+     *
+     * @param bytes исходное изображение (JPEG, PNG, GIF или BMP)
+     * @return обложка и миниатюра
+     * @throws IOException если изображение не удалось прочитать
+     * @see #ingestCover(byte[], CoverLimits)
+     */
+    public static IngestedCover ingestCover(byte[] bytes) throws IOException {
+        return ingestCover(bytes, CoverLimits.DEFAULT);
+    }
+
+    /**
+     * Подготавливает обложку к сохранению: уменьшает её до {@link CoverLimits#maxDimension()}
+     * и перекодирует так, чтобы она уложилась в {@link CoverLimits#maxBytes()}, а также создаёт миниатюру.
+     * Изображения с прозрачностью кодируются в PNG, остальные — в JPEG с понижением качества
+     * и, при необходимости, размера. Исходный JPEG или PNG, который уже укладывается
+     * в ограничения, сохраняется без перекодирования.
+     *
+     * @param bytes исходное изображение (JPEG, PNG, GIF или BMP)
+     * @param limits ограничения обложки
+     * @return обложка и миниатюра
+     * @throws IOException если изображение не удалось прочитать или закодировать
+     */
+    public static IngestedCover ingestCover(byte[] bytes, CoverLimits limits) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Неподдерживаемый формат изображения");
+        }
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        byte[] cover;
+        if (Math.max(image.getWidth(), image.getHeight()) <= limits.maxDimension()
+                && bytes.length <= limits.maxBytes() && isJpegOrPng(bytes)) {
+            cover = bytes;
+        } else {
+            cover = encodeWithin(image, alpha, limits.maxDimension(), limits.maxBytes());
+        }
+        byte[] thumbnail = encode(scaleToFit(image, limits.thumbnailDimension(), alpha), alpha, THUMBNAIL_QUALITY);
+        return new IngestedCover(cover, thumbnail);
+    }
+
+    /**
+     * Кодирует изображение не больше заданного размера, понижая качество JPEG,
+     * а затем и размер, пока результат не уложится в лимит байт.
+     */
+    private static byte[] encodeWithin(BufferedImage image, boolean alpha, int maxDimension, int maxBytes)
+            throws IOException {
+        int dimension = maxDimension;
+        while (true) {
+            BufferedImage scaled = scaleToFit(image, dimension, alpha);
+            byte[] encoded = null;
+            if (alpha) {
+                encoded = encode(scaled, true, 0);
+            } else {
+                for (float quality : JPEG_QUALITIES) {
+                    encoded = encode(scaled, false, quality);
+                    if (encoded.length <= maxBytes) break;
+                }
+            }
+            if (encoded.length <= maxBytes || dimension <= MIN_DIMENSION) {
+                return encoded;
+            }
+            dimension = Math.max(MIN_DIMENSION, dimension * 3 / 4);
+        }
+    }
+
+    /**
+     * Уменьшает изображение так, чтобы большая сторона не превышала заданную длину.
+     * Сильное уменьшение выполняется в несколько шагов вдвое, чтобы билинейная
+     * интерполяция не теряла детали. Результат всегда имеет тип RGB или ARGB,
+     * пригодный для кодирования.
+     */
+    private static BufferedImage scaleToFit(BufferedImage image, int maxDimension, boolean alpha) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = image;
+        do {
+            width = width / 2 >= targetWidth ? width / 2 : targetWidth;
+            height = height / 2 >= targetHeight ? height / 2 : targetHeight;
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Кодирует изображение в PNG (при наличии прозрачности) или в JPEG с заданным качеством.
+     */
+    private static byte[] encode(BufferedImage image, boolean alpha, float quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Проверяет по сигнатуре, что данные уже закодированы в JPEG или PNG.
+     */
+    private static boolean isJpegOrPng(byte[] bytes) {
+        boolean jpeg = bytes.length > 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8;
+        boolean png = bytes.length > 4 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G';
+        return jpeg || png;
+    }
+
     /**
      * Преобразует массив байт изображения в объект {@link Image} JavaFX.
      *
@@ -36,6 +215,82 @@ public class ImageHelper {
      */
     public static Image toImage(byte[] bytes) {
         if (bytes == null) return null;
-        return new Image(new ByteArrayInputStream(bytes));
+        CoverDecodeEvent event = CoverDecodeEvent.start("ImageHelper.toImage", bytes.length, 0, 0);
+        return event.finish(new Image(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Декодирует изображение сразу в размер, в котором оно будет показано, с сохранением пропорций.
+     * В памяти оказывается только уменьшенная копия, а не полноразмерное изображение.
+     * Можно вызывать из любого потока.
+     *
+     * @param bytes массив байт изображения, может быть null
+     * @param width ширина области отображения
+     * @param height высота области отображения
+     * @return объект {@link Image} не больше заданного размера или null, если входные данные равны null
+     */
+    public static Image toImage(byte[] bytes, int width, int height) {
+        if (bytes == null || bytes.length == 0) return null;
+        CoverDecodeEvent event = CoverDecodeEvent.start("ImageHelper.toImage", bytes.length, width, height);
+        return event.finish(new Image(new ByteArrayInputStream(bytes), width, height, true, true));
+    }
+
+    /**
+     * Декодирует изображение из буфера в размер, в котором оно будет показано, как {@link #toImage(byte[], int, int)}.
+     * Буфер читается напрямую, без копирования в массив, поэтому срез файла обложек ({@link CoverPack})
+     * декодируется прямо из отображённой памяти. Позиция переданного буфера не меняется.
+     *
+     * @param buffer буфер с изображением, может быть null
+     * @param width ширина области отображения
+     * @param height высота области отображения
+     * @return объект {@link Image} не больше заданного размера или null, если буфер равен null или пуст
+     */
+    public static Image toImage(ByteBuffer buffer, int width, int height) {
+        if (buffer == null || !buffer.hasRemaining()) return null;
+        CoverDecodeEvent event = CoverDecodeEvent.start("ImageHelper.toImage", buffer.remaining(), width, height);
+        return event.finish(new Image(new ByteBufferInputStream(buffer.duplicate()), width, height, true, true));
+    }
+
+    /**
+     * Поток чтения из {@link ByteBuffer}, продвигающий позицию буфера.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        /** Читаемый буфер. */
+        private final ByteBuffer buffer;
+
+        /**
+         * Создаёт поток, читающий буфер от его позиции до лимита.
+         *
+         * @param buffer буфер
+         */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
@@ -0,0 +1,338 @@
+package com.nb2506.booktracker;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генератор синтетической библиотеки для бенчмарков и нагрузочных тестов.
+ * <p>
+ * Названия и авторы составляются из русских и английских слов и имён, жанры выбираются
+ * из {@link Genres#ALL} с распределением Ципфа (первые жанры списка встречаются чаще всего),
+ * оценки и прогресс чтения распределены неравномерно, как в настоящей библиотеке.
+ * При заданном размере обложки часть книг получает сгенерированную обложку, прошедшую тот же путь
+ * сжатия, что и обложки, выбранные пользователем ({@link ImageHelper#ingestCover(byte[])}).
+ * Одно и то же начальное значение всегда даёт одни и те же книги.
+ * <p>
+ * Запуск из командной строки (файл базы задаётся свойством {@link DatabaseHelper#DB_PATH_PROPERTY}):
+ * {@code java -Dbooktracker.db=large.db -m com.nb2506.booktracker/com.nb2506.booktracker.LibraryGenerator
+ * 100000 --seed 42 --covers 600x900 --cover-ratio 0.3}
+ */
+public final class LibraryGenerator {
+    /** Количество книг, добавляемых одной транзакцией. */
+    private static final int CHUNK_SIZE = 10_000;
+
+    /** Показатель распределения Ципфа для жанров. */
+    private static final double GENRE_ZIPF_EXPONENT = 1.1;
+
+    /** Слова русских названий. */
+    private static final String[] RU_WORDS = {
+            "тайна", "дом", "время", "ночь", "война", "мир", "река", "город", "сад", "дорога", "последний",
+            "тёмный", "белый", "старый", "забытый", "красный", "север", "остров", "письмо", "путь", "море",
+            "звезда", "лес", "песня", "герой", "сердце", "тень", "зима", "лето", "ветер", "огонь", "хроники"
+    };
+
+    /** Слова английских названий. */
+    private static final String[] EN_WORDS = {
+            "the", "last", "shadow", "house", "night", "secret", "river", "empire", "garden", "road", "silent",
+            "dark", "winter", "star", "kingdom", "stone", "storm", "letters", "island", "song", "fire", "glass"
+    };
+
+    /** Русские имена авторов. */
+    private static final String[] RU_FIRST_NAMES = {
+            "Анна", "Иван", "Мария", "Сергей", "Ольга", "Дмитрий", "Елена", "Михаил", "Татьяна", "Алексей",
+            "Наталья", "Николай", "Людмила", "Фёдор", "Вера", "Андрей"
+    };
+
+    /** Русские фамилии авторов (в мужской форме). */
+    private static final String[] RU_LAST_NAMES = {
+            "Иванов", "Смирнов", "Кузнецов", "Попов", "Соколов", "Лебедев", "Козлов", "Новиков", "Морозов",
+            "Волков", "Павлов", "Семёнов", "Голубев", "Виноградов", "Богданов", "Воробьёв"
+    };
+
+    /** Английские имена авторов. */
+    private static final String[] EN_FIRST_NAMES = {
+            "John", "Mary", "James", "Emily", "George", "Sarah", "William", "Laura", "Thomas", "Alice",
+            "Henry", "Jane"
+    };
+
+    /** Английские фамилии авторов. */
+    private static final String[] EN_LAST_NAMES = {
+            "Smith", "Brown", "Taylor", "Wilson", "Clarke", "Walker", "Wright", "Hughes", "Green", "Hall",
+            "Wood", "Turner"
+    };
+
+    /**
+     * Параметры генерации.
+     *
+     * @param seed начальное значение генератора случайных чисел
+     * @param coverWidth ширина обложки в пикселях (0 — без обложек)
+     * @param coverHeight высота обложки в пикселях (0 — без обложек)
+     * @param coverRatio доля книг с обложкой, от 0 до 1
+     */
+    public record Options(long seed, int coverWidth, int coverHeight, double coverRatio) {
+        /** Без обложек, начальное значение 42. */
+        public static final Options DEFAULT = new Options(42, 0, 0, 0);
+
+        /**
+         * Проверяет параметры.
+         */
+        public Options {
+            if (coverWidth < 0 || coverHeight < 0 || (coverWidth == 0) != (coverHeight == 0)) {
+                throw new IllegalArgumentException("Неверный размер обложки: " + coverWidth + "x" + coverHeight);
+            }
+            if (coverRatio < 0 || coverRatio > 1) {
+                throw new IllegalArgumentException("Доля книг с обложкой должна быть от 0 до 1: " + coverRatio);
+            }
+        }
+
+        /**
+         * Возвращает признак генерации обложек.
+         *
+         * @return true, если задан размер обложки и ненулевая доля книг с обложкой
+         */
+        public boolean hasCovers() {
+            return coverWidth > 0 && coverRatio > 0;
+        }
+    }
+
+    /** Параметры генерации. */
+    private final Options options;
+
+    /** Генератор случайных чисел. */
+    private final Random random;
+
+    /** Накопленные веса жанров по Ципфу для выбора жанра двоичным поиском. */
+    private final double[] genreWeights;
+
+    /**
+     * Создаёт генератор книг без обложек.
+     *
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public LibraryGenerator(long seed) {
+        this(new Options(seed, 0, 0, 0));
+    }
+
+    /**
+     * Создаёт генератор.
+     *
+     * @param options параметры генерации
+     */
+    public LibraryGenerator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed());
+        this.genreWeights = new double[Genres.ALL.size()];
+        double total = 0;
+        for (int rank = 0; rank < genreWeights.length; rank++) {
+            total += 1 / Math.pow(rank + 1, GENRE_ZIPF_EXPONENT);
+            genreWeights[rank] = total;
+        }
+    }
+
+    /**
+     * Запускает генерацию из командной строки и выводит итог.
+     *
+     * @param args количество книг и необязательные параметры
+     *             {@code --seed N}, {@code --covers ШxВ}, {@code --cover-ratio 0..1}
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Использование: LibraryGenerator <количество> [--seed N] [--covers ШxВ] [--cover-ratio 0..1]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        long seed = Options.DEFAULT.seed();
+        int coverWidth = 0;
+        int coverHeight = 0;
+        double coverRatio = 0.3;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--covers" -> {
+                    String[] size = args[++i].split("x");
+                    coverWidth = Integer.parseInt(size[0]);
+                    coverHeight = Integer.parseInt(size[1]);
+                }
+                case "--cover-ratio" -> coverRatio = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+        }
+        if (coverWidth == 0) {
+            coverRatio = 0;
+        }
+
+        DatabaseHelper.createTable();
+        long started = System.nanoTime();
+        int added = generate(new DatabaseBookRepository(), count, new Options(seed, coverWidth, coverHeight, coverRatio));
+        long seconds = (System.nanoTime() - started) / 1_000_000_000L;
+        System.out.println("Добавлено книг: " + added + " за " + seconds + " с.");
+        DatabaseHelper.shutdown();
+    }
+
+    /**
+     * Добавляет в репозиторий {@code count} сгенерированных книг массовой вставкой,
+     * транзакциями по {@link #CHUNK_SIZE} книг, чтобы не держать в памяти всю библиотеку.
+     *
+     * @param repository репозиторий для добавления
+     * @param count количество книг
+     * @param options параметры генерации
+     * @return количество добавленных книг
+     */
+    public static int generate(BookRepository repository, int count, Options options) {
+        LibraryGenerator generator = new LibraryGenerator(options);
+        int added = 0;
+        while (added < count) {
+            int size = Math.min(CHUNK_SIZE, count - added);
+            List<Book> chunk = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                chunk.add(generator.nextBook());
+            }
+            added += repository.insertAll(chunk).size();
+        }
+        return added;
+    }
+
+    /**
+     * Создаёт следующую книгу без id. Обложка добавляется с вероятностью {@link Options#coverRatio()}.
+     *
+     * @return новая книга
+     */
+    public Book nextBook() {
+        boolean russian = random.nextInt(3) != 0;
+        String title = title(russian);
+        String author = author(russian);
+        int year = year();
+        int pages = 80 + (int) Math.min(1400, Math.abs(random.nextGaussian()) * 250 + random.nextInt(120));
+        int currentPage = switch (random.nextInt(10)) {
+            case 0, 1, 2, 3, 4 -> 0;
+            case 5, 6 -> 1 + random.nextInt(pages - 1);
+            default -> pages;
+        };
+        double rating = currentPage == 0 && random.nextBoolean()
+                ? 0
+                : Math.clamp(Math.round((7 + random.nextGaussian() * 1.8) * 10) / 10.0, 0, 10);
+        Book book = new Book(title, author, year, pages, rating, currentPage, genres(), null);
+        if (options.hasCovers() && random.nextDouble() < options.coverRatio()) {
+            try {
+                ImageHelper.IngestedCover cover = ImageHelper.ingestCover(cover(title));
+                book.setCover(cover.cover());
+                book.setThumbnail(cover.thumbnail());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Составляет название из двух–пяти слов.
+     */
+    private String title(boolean russian) {
+        String[] words = russian ? RU_WORDS : EN_WORDS;
+        int count = 2 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) title.append(' ');
+            title.append(words[random.nextInt(words.length)]);
+        }
+        title.setCharAt(0, Character.toUpperCase(title.charAt(0)));
+        return title.toString();
+    }
+
+    /**
+     * Составляет имя автора. Авторов заметно меньше, чем книг, поэтому у многих авторов несколько книг.
+     */
+    private String author(boolean russian) {
+        if (russian) {
+            String first = RU_FIRST_NAMES[random.nextInt(RU_FIRST_NAMES.length)];
+            String last = RU_LAST_NAMES[random.nextInt(RU_LAST_NAMES.length)];
+            boolean female = first.endsWith("а") || first.endsWith("я");
+            return first + " " + (female ? last + "а" : last);
+        }
+        return EN_FIRST_NAMES[random.nextInt(EN_FIRST_NAMES.length)] + " "
+                + EN_LAST_NAMES[random.nextInt(EN_LAST_NAMES.length)];
+    }
+
+    /**
+     * Выбирает год издания; большая часть книг издана после 1950 года.
+     */
+    private int year() {
+        return random.nextInt(5) == 0 ? 1800 + random.nextInt(150) : 1950 + random.nextInt(76);
+    }
+
+    /**
+     * Выбирает от одного до трёх разных жанров по распределению Ципфа.
+     */
+    private String genres() {
+        int count = 1 + random.nextInt(3);
+        List<String> chosen = new ArrayList<>(count);
+        while (chosen.size() < count) {
+            String genre = Genres.ALL.get(zipfRank());
+            if (!chosen.contains(genre)) {
+                chosen.add(genre);
+            }
+        }
+        return String.join(", ", chosen);
+    }
+
+    /**
+     * Возвращает случайный номер жанра: номер k выпадает с вероятностью, пропорциональной 1/k^s.
+     */
+    private int zipfRank() {
+        double target = random.nextDouble() * genreWeights[genreWeights.length - 1];
+        int low = 0;
+        int high = genreWeights.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (genreWeights[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Рисует обложку: градиент случайных цветов, шум и название книги.
+     *
+     * @param title название книги
+     * @return обложка в формате JPEG
+     * @throws IOException если изображение не удалось закодировать
+     */
+    private byte[] cover(String title) throws IOException {
+        int width = options.coverWidth();
+        int height = options.coverHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0x1000000)),
+                    width, height, new Color(random.nextInt(0x1000000))));
+            g.fillRect(0, 0, width, height);
+            for (int i = width * height / 50; i > 0; i--) {
+                g.setColor(new Color(random.nextInt(0x1000000)));
+                g.fillRect(random.nextInt(width), random.nextInt(height), 1, 1);
+            }
+            g.setColor(Color.WHITE);
+            g.setFont(new Font(Font.SERIF, Font.BOLD, Math.max(10, width / 14)));
+            g.drawString(title, width / 12, height / 4);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,400 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Статистика библиотеки для панели статистики.
+ * <p>
+ * Каждый показатель считается агрегатным запросом SQL ({@code GROUP BY} по индексированным столбцам)
+ * или читается из сводных таблиц журнала чтения ({@link ReadingLog}), а не перебором загруженных книг.
+ * Посчитанные показатели кэшируются. Событие {@link BookChange} сбрасывает только те показатели,
+ * которые зависят от изменённых полей: например, смена названия не сбрасывает ничего,
+ * а смена текущей страницы — только страницы, долю прочитанных книг и чтение за период.
+ * Добавление, удаление и массовые изменения сбрасывают весь кэш.
+ * <p>
+ * Показатель, сброшенный во время подсчёта, в кэш не попадает, поэтому устаревшее значение
+ * не переживает событие изменения. Все методы потокобезопасны.
+ */
+public final class LibraryStatistics {
+    /** Количество авторов в списке самых читаемых. */
+    public static final int TOP_AUTHORS_LIMIT = 10;
+
+    /** Текст запроса для общих сведений о книгах и страницах. */
+    private static final String TOTALS_SQL = """
+        SELECT count(*) AS books,
+               coalesce(sum(pages), 0) AS total_pages,
+               coalesce(sum(max(0, min(current_page, pages))), 0) AS read_pages,
+               coalesce(sum(reading_status = 1), 0) AS reading,
+               coalesce(sum(reading_status = 2), 0) AS finished
+        FROM books
+    """;
+
+    /** Текст запроса для средней оценки по жанрам. */
+    private static final String RATING_BY_GENRE_SQL = """
+        SELECT g.name, avg(b.rating) AS average, count(*) AS books
+        FROM book_genres bg
+        JOIN genres g ON g.id = bg.genre_id
+        JOIN books b ON b.id = bg.book_id
+        GROUP BY g.id
+        ORDER BY average DESC, g.name
+    """;
+
+    /** Текст запроса для количества книг по годам издания. */
+    private static final String BOOKS_BY_YEAR_SQL = "SELECT year, count(*) FROM books GROUP BY year ORDER BY year";
+
+    /** Текст запроса для авторов с наибольшим количеством книг. */
+    private static final String TOP_AUTHORS_SQL = """
+        SELECT author, count(*) AS books, avg(rating) AS average
+        FROM books
+        GROUP BY author COLLATE NOCASE
+        ORDER BY books DESC, author COLLATE NOCASE
+        LIMIT ?
+    """;
+
+    /** Кэшируемые показатели и поля книги, от которых они зависят. */
+    public enum Metric {
+        /** Количество книг и страниц, доля прочитанных книг. */
+        TOTALS(Book.Field.PAGES, Book.Field.CURRENT_PAGE),
+        /** Средняя оценка по жанрам. */
+        RATING_BY_GENRE(Book.Field.RATING, Book.Field.GENRES),
+        /** Количество книг по годам издания. */
+        BOOKS_BY_YEAR(Book.Field.YEAR),
+        /** Авторы с наибольшим количеством книг. */
+        TOP_AUTHORS(Book.Field.AUTHOR, Book.Field.RATING),
+        /** Прочитанные страницы за день, неделю и месяц. */
+        READING(Book.Field.CURRENT_PAGE);
+
+        /** Поля книги, от которых зависит показатель. */
+        private final Set<Book.Field> fields;
+
+        Metric(Book.Field first, Book.Field... rest) {
+            this.fields = Collections.unmodifiableSet(EnumSet.of(first, rest));
+        }
+
+        /**
+         * Возвращает поля книги, от которых зависит показатель.
+         *
+         * @return неизменяемое множество полей
+         */
+        public Set<Book.Field> getFields() {
+            return fields;
+        }
+    }
+
+    /**
+     * Общие сведения о книгах и страницах.
+     *
+     * @param books количество книг
+     * @param totalPages суммарное количество страниц
+     * @param readPages суммарное количество прочитанных страниц
+     * @param reading количество начатых, но не дочитанных книг
+     * @param finished количество прочитанных книг
+     */
+    public record Totals(int books, long totalPages, long readPages, int reading, int finished) {
+        /** Пустая библиотека. */
+        public static final Totals EMPTY = new Totals(0, 0, 0, 0, 0);
+
+        /**
+         * Возвращает долю прочитанных книг.
+         *
+         * @return значение от 0 до 1 (0 для пустой библиотеки)
+         */
+        public double completionRate() {
+            return books == 0 ? 0 : (double) finished / books;
+        }
+    }
+
+    /**
+     * Средняя оценка книг одного жанра.
+     *
+     * @param genre название жанра
+     * @param averageRating средняя оценка
+     * @param books количество книг жанра
+     */
+    public record GenreRating(String genre, double averageRating, int books) {
+    }
+
+    /**
+     * Автор и его книги.
+     *
+     * @param author имя автора
+     * @param books количество книг
+     * @param averageRating средняя оценка книг автора
+     */
+    public record AuthorCount(String author, int books, double averageRating) {
+    }
+
+    /**
+     * Прочитанные страницы за текущие периоды.
+     *
+     * @param day день, на который посчитаны значения
+     * @param today страниц за день
+     * @param thisWeek страниц за неделю
+     * @param thisMonth страниц за месяц
+     * @param streak количество дней чтения подряд
+     */
+    public record Reading(LocalDate day, int today, int thisWeek, int thisMonth, int streak) {
+    }
+
+    /**
+     * Все показатели сразу, например для заполнения панели статистики.
+     *
+     * @param totals общие сведения
+     * @param ratingByGenre средняя оценка по жанрам, по убыванию оценки
+     * @param booksByYear количество книг по годам издания, по возрастанию года
+     * @param topAuthors авторы с наибольшим количеством книг
+     * @param reading прочитанные страницы за текущие периоды
+     */
+    public record Snapshot(Totals totals, List<GenreRating> ratingByGenre, Map<Integer, Integer> booksByYear,
+                           List<AuthorCount> topAuthors, Reading reading) {
+    }
+
+    /** Посчитанные показатели. */
+    private final Map<Metric, Object> values = new EnumMap<>(Metric.class);
+
+    /** Номер поколения каждого показателя; увеличивается при сбросе. */
+    private final long[] versions = new long[Metric.values().length];
+
+    /** Количество показателей, взятых из кэша. */
+    private long hits;
+
+    /** Количество показателей, посчитанных запросом. */
+    private long misses;
+
+    /**
+     * Возвращает все показатели.
+     *
+     * @return снимок статистики
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(totals(), ratingByGenre(), booksByYear(), topAuthors(), reading());
+    }
+
+    /**
+     * Возвращает общие сведения о книгах и страницах.
+     *
+     * @return общие сведения ({@link Totals#EMPTY} при ошибке)
+     */
+    public Totals totals() {
+        return cached(Metric.TOTALS, Totals.EMPTY, conn -> {
+            try (ResultSet rs = conn.prepare(TOTALS_SQL).executeQuery()) {
+                return rs.next()
+                        ? new Totals(rs.getInt("books"), rs.getLong("total_pages"), rs.getLong("read_pages"),
+                                rs.getInt("reading"), rs.getInt("finished"))
+                        : Totals.EMPTY;
+            }
+        });
+    }
+
+    /**
+     * Возвращает среднюю оценку по жанрам.
+     *
+     * @return жанры по убыванию средней оценки (пустой список при ошибке)
+     */
+    public List<GenreRating> ratingByGenre() {
+        return cached(Metric.RATING_BY_GENRE, List.of(), conn -> {
+            List<GenreRating> result = new ArrayList<>();
+            try (ResultSet rs = conn.prepare(RATING_BY_GENRE_SQL).executeQuery()) {
+                while (rs.next()) {
+                    result.add(new GenreRating(rs.getString(1), rs.getDouble(2), rs.getInt(3)));
+                }
+            }
+            return List.copyOf(result);
+        });
+    }
+
+    /**
+     * Возвращает количество книг по годам издания.
+     *
+     * @return количество книг по году, по возрастанию года (пустая карта при ошибке)
+     */
+    public Map<Integer, Integer> booksByYear() {
+        return cached(Metric.BOOKS_BY_YEAR, Map.of(), conn -> {
+            Map<Integer, Integer> result = new LinkedHashMap<>();
+            try (ResultSet rs = conn.prepare(BOOKS_BY_YEAR_SQL).executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+            return Collections.unmodifiableMap(result);
+        });
+    }
+
+    /**
+     * Возвращает авторов с наибольшим количеством книг.
+     * Имена, различающиеся только регистром, считаются одним автором.
+     *
+     * @return не больше {@link #TOP_AUTHORS_LIMIT} авторов (пустой список при ошибке)
+     */
+    public List<AuthorCount> topAuthors() {
+        return cached(Metric.TOP_AUTHORS, List.of(), conn -> {
+            PreparedStatement pstmt = conn.prepare(TOP_AUTHORS_SQL);
+            pstmt.setInt(1, TOP_AUTHORS_LIMIT);
+            List<AuthorCount> result = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new AuthorCount(rs.getString(1), rs.getInt(2), rs.getDouble(3)));
+                }
+            }
+            return List.copyOf(result);
+        });
+    }
+
+    /**
+     * Возвращает прочитанные страницы за сегодня, текущие неделю и месяц.
+     * Значения читаются из сводных таблиц журнала чтения; кэш сбрасывается и при смене дня.
+     *
+     * @return прочитанные страницы
+     */
+    public Reading reading() {
+        LocalDate today = LocalDate.now();
+        synchronized (this) {
+            if (values.get(Metric.READING) instanceof Reading reading && !reading.day().equals(today)) {
+                invalidate(Metric.READING);
+            }
+        }
+        return computeIfAbsent(Metric.READING, () -> new Reading(today, ReadingLog.pagesReadOn(today),
+                ReadingLog.pagesReadInWeek(today), ReadingLog.pagesReadInMonth(YearMonth.from(today)),
+                ReadingLog.currentStreak(today)), null);
+    }
+
+    /**
+     * Сбрасывает показатели, зависящие от изменённых полей.
+     *
+     * @param change событие изменения
+     */
+    public void onBookChanged(BookChange change) {
+        for (Metric metric : Metric.values()) {
+            if (isAffected(metric, change)) {
+                invalidate(metric);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, влияет ли изменение хотя бы на один показатель.
+     *
+     * @param change событие изменения
+     * @return true, если статистику нужно перечитать
+     */
+    public static boolean isRelevant(BookChange change) {
+        for (Metric metric : Metric.values()) {
+            if (isAffected(metric, change)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Сбрасывает один показатель.
+     *
+     * @param metric показатель
+     */
+    public synchronized void invalidate(Metric metric) {
+        values.remove(metric);
+        versions[metric.ordinal()]++;
+    }
+
+    /**
+     * Сбрасывает все показатели.
+     */
+    public synchronized void clear() {
+        for (Metric metric : Metric.values()) {
+            invalidate(metric);
+        }
+    }
+
+    /** Возвращает количество показателей, взятых из кэша. */
+    public synchronized long getHits() { return hits; }
+
+    /** Возвращает количество показателей, посчитанных запросом. */
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Возвращает сводку счётчиков для журнала.
+     *
+     * @return строка со счётчиками
+     */
+    @Override
+    public synchronized String toString() {
+        return "LibraryStatistics{hits=" + hits + ", misses=" + misses + ", cached=" + values.keySet() + "}";
+    }
+
+    /**
+     * Проверяет, влияет ли изменение на показатель.
+     *
+     * @param metric показатель
+     * @param change событие изменения
+     * @return true для добавления, удаления, массового изменения и изменения нужных полей
+     */
+    private static boolean isAffected(Metric metric, BookChange change) {
+        return change.type() != BookChange.Type.UPDATED || change.touches(metric.getFields());
+    }
+
+    /**
+     * Возвращает показатель из кэша или считает его запросом на чтение.
+     * При ошибке базы данных возвращает значение по умолчанию и не кэширует его.
+     *
+     * @param metric показатель
+     * @param fallback значение при ошибке
+     * @param work запрос
+     * @param <T> тип значения
+     * @return значение показателя
+     */
+    private <T> T cached(Metric metric, T fallback, ConnectionManager.SqlWork<T> work) {
+        return computeIfAbsent(metric, () -> {
+            try {
+                return DatabaseHelper.connections().read(work);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }, fallback);
+    }
+
+    /**
+     * Возвращает показатель из кэша или считает его. Значение сохраняется в кэш,
+     * только если показатель не был сброшен, пока он считался.
+     *
+     * @param metric показатель
+     * @param loader подсчёт значения; null означает ошибку
+     * @param fallback значение при ошибке
+     * @param <T> тип значения
+     * @return значение показателя
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T computeIfAbsent(Metric metric, Supplier<T> loader, T fallback) {
+        long version;
+        synchronized (this) {
+            Object value = values.get(metric);
+            if (value != null) {
+                hits++;
+                return (T) value;
+            }
+            misses++;
+            version = versions[metric.ordinal()];
+        }
+        T value = loader.get();
+        if (value == null) {
+            return fallback;
+        }
+        synchronized (this) {
+            if (versions[metric.ordinal()] == version) {
+                values.put(metric, value);
+            }
+        }
+        return value;
+    }
+}
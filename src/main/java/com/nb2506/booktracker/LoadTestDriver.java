@@ -0,0 +1,303 @@
+package com.nb2506.booktracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест: несколько потоков выполняют смесь операций чтения, поиска и изменения,
+ * как при работе с главным окном, и по итогам выводятся перцентили задержек каждой операции.
+ * Последовательность операций каждого потока определяется начальным значением, поэтому
+ * запуски на одной и той же базе сравнимы между собой.
+ * <p>
+ * Базу для теста удобно создать {@link LibraryGenerator}. Тест изменяет базу (прогресс и оценки книг),
+ * поэтому запускать его стоит на копии. Запуск из командной строки:
+ * {@code java -Dbooktracker.db=large.db -m com.nb2506.booktracker/com.nb2506.booktracker.LoadTestDriver
+ * --threads 4 --duration 30 --warmup 5 --seed 42}
+ */
+public final class LoadTestDriver {
+    /** Количество книг на одной странице списка, как в постраничном режиме главного окна. */
+    private static final int PAGE_SIZE = 200;
+
+    /** Начала слов для поиска: русские и английские, частые и редкие. */
+    private static final String[] SEARCH_TERMS = {
+            "тай", "ноч", "город", "зим", "хроники", "ив", "смирн", "the", "shadow", "kingdom", "smith", "wal"
+    };
+
+    /** Операции теста и их доли в смеси. */
+    public enum Operation {
+        /** Первая и следующая страницы списка в случайном порядке сортировки. */
+        BROWSE(30),
+        /** Полнотекстовый поиск: количество результатов и первая страница по релевантности. */
+        SEARCH(20),
+        /** Фильтр по фасетам: количество книг и первая страница. */
+        FILTER(15),
+        /** Открытие книги: сама книга и миниатюра обложки. */
+        DETAILS(20),
+        /** Изменение текущей страницы. */
+        UPDATE_PROGRESS(10),
+        /** Изменение оценки. */
+        UPDATE_RATING(5);
+
+        /** Доля операции в смеси, в условных единицах. */
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Параметры теста.
+     *
+     * @param threads количество потоков
+     * @param durationSeconds длительность измерения в секундах
+     * @param warmupSeconds длительность разогрева в секундах; его задержки не учитываются
+     * @param seed начальное значение генераторов случайных чисел потоков
+     */
+    public record Config(int threads, int durationSeconds, int warmupSeconds, long seed) {
+        /** Параметры по умолчанию. */
+        public static final Config DEFAULT = new Config(4, 30, 5, 42);
+    }
+
+    /**
+     * Итог по одной операции.
+     *
+     * @param operation операция
+     * @param count количество успешных выполнений
+     * @param errors количество выполнений с ошибкой
+     * @param throughput успешных выполнений в секунду
+     * @param p50 медиана задержки в микросекундах
+     * @param p90 90-й перцентиль в микросекундах
+     * @param p99 99-й перцентиль в микросекундах
+     * @param p999 99,9-й перцентиль в микросекундах
+     * @param max максимальная задержка в микросекундах
+     */
+    public record Result(Operation operation, int count, int errors, double throughput,
+                         long p50, long p90, long p99, long p999, long max) {
+    }
+
+    /** Задержки одного потока по операциям, в наносекундах. */
+    private static final class Recorder {
+        /** Задержки каждой операции. */
+        private final long[][] samples = new long[Operation.values().length][1024];
+
+        /** Количество задержек каждой операции. */
+        private final int[] counts = new int[Operation.values().length];
+
+        /** Количество ошибок каждой операции. */
+        private final int[] errors = new int[Operation.values().length];
+
+        void record(Operation operation, long nanos) {
+            int i = operation.ordinal();
+            if (counts[i] == samples[i].length) {
+                samples[i] = Arrays.copyOf(samples[i], counts[i] * 2);
+            }
+            samples[i][counts[i]++] = nanos;
+        }
+
+        void error(Operation operation) {
+            errors[operation.ordinal()]++;
+        }
+
+        void reset() {
+            Arrays.fill(counts, 0);
+            Arrays.fill(errors, 0);
+        }
+    }
+
+    private LoadTestDriver() {
+    }
+
+    /**
+     * Запускает тест из командной строки и выводит таблицу задержек.
+     *
+     * @param args необязательные параметры {@code --threads N}, {@code --duration С},
+     *             {@code --warmup С}, {@code --seed N}
+     * @throws InterruptedException если ожидание потоков прервано
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Config defaults = Config.DEFAULT;
+        int threads = defaults.threads();
+        int duration = defaults.durationSeconds();
+        int warmup = defaults.warmupSeconds();
+        long seed = defaults.seed();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+        }
+
+        DatabaseHelper.createTable();
+        List<Result> results = run(new Config(threads, duration, warmup, seed));
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "операция", "всего", "ошибок", "оп/с", "p50 мкс", "p90 мкс", "p99 мкс", "p99.9 мкс", "max мкс");
+        for (Result r : results) {
+            System.out.printf("%-16s %9d %7d %9.1f %9d %9d %9d %9d %9d%n", r.operation(), r.count(), r.errors(),
+                    r.throughput(), r.p50(), r.p90(), r.p99(), r.p999(), r.max());
+        }
+        DatabaseHelper.shutdown();
+    }
+
+    /**
+     * Выполняет тест на текущей базе {@link DatabaseHelper}.
+     *
+     * @param config параметры теста
+     * @return итоги по операциям, которые выполнялись хотя бы раз
+     * @throws InterruptedException если ожидание потоков прервано
+     */
+    public static List<Result> run(Config config) throws InterruptedException {
+        int books = DatabaseHelper.countBooks(BookQuery.ALL);
+        if (books == 0) {
+            throw new IllegalStateException("База пуста: сначала создайте книги, например LibraryGenerator");
+        }
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+
+        Recorder[] recorders = new Recorder[config.threads()];
+        Thread[] workers = new Thread[config.threads()];
+        for (int t = 0; t < workers.length; t++) {
+            Recorder recorder = new Recorder();
+            Random random = new Random(config.seed() + t);
+            recorders[t] = recorder;
+            workers[t] = new Thread(() -> work(random, recorder, books, measureFrom, deadline), "load-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return summarize(recorders, config.durationSeconds());
+    }
+
+    /**
+     * Выполняет операции до окончания теста; по окончании разогрева сбрасывает накопленные задержки.
+     */
+    private static void work(Random random, Recorder recorder, int books, long measureFrom, long deadline) {
+        DatabaseBookRepository repository = new DatabaseBookRepository();
+        int totalWeight = 0;
+        for (Operation operation : Operation.values()) {
+            totalWeight += operation.weight;
+        }
+        boolean measuring = false;
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            if (!measuring && now >= measureFrom) {
+                recorder.reset();
+                measuring = true;
+            }
+            Operation operation = pick(random.nextInt(totalWeight));
+            long started = System.nanoTime();
+            try {
+                execute(operation, random, repository, books);
+                recorder.record(operation, System.nanoTime() - started);
+            } catch (RuntimeException e) {
+                recorder.error(operation);
+            }
+        }
+    }
+
+    /**
+     * Выбирает операцию по случайному числу от 0 до суммы долей.
+     */
+    private static Operation pick(int roll) {
+        for (Operation operation : Operation.values()) {
+            roll -= operation.weight;
+            if (roll < 0) return operation;
+        }
+        return Operation.BROWSE;
+    }
+
+    /**
+     * Выполняет одну операцию.
+     *
+     * @throws IllegalStateException если изменение не удалось (например, книга с таким id удалена)
+     */
+    private static void execute(Operation operation, Random random, DatabaseBookRepository repository, int books) {
+        int id = 1 + random.nextInt(books);
+        switch (operation) {
+            case BROWSE -> {
+                BookSort[] sorts = BookSort.values();
+                BookQuery query = new BookQuery("", FacetSelection.NONE, sorts[random.nextInt(sorts.length)]);
+                List<Book> page = DatabaseHelper.getBooksAt(query, 0, PAGE_SIZE);
+                if (!page.isEmpty()) {
+                    DatabaseHelper.getBooksAfter(query, page.getLast(), PAGE_SIZE);
+                }
+            }
+            case SEARCH -> {
+                BookQuery query = new BookQuery(SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)], FacetSelection.NONE);
+                DatabaseHelper.countBooks(query);
+                List<Book> found = new ArrayList<>(PAGE_SIZE);
+                DatabaseHelper.searchBooks(query, PAGE_SIZE, found::add);
+            }
+            case FILTER -> {
+                FacetSelection facets = FacetSelection.NONE
+                        .with(Facet.GENRE, random.nextInt(Genres.ALL.size()), true);
+                if (random.nextBoolean()) {
+                    facets = facets.with(Facet.RATING, random.nextInt(Facet.RATING.getValues().size()), true);
+                }
+                BookQuery query = new BookQuery("", facets, BookSort.TITLE);
+                DatabaseHelper.countBooks(query);
+                DatabaseHelper.getBooksAt(query, 0, PAGE_SIZE);
+            }
+            case DETAILS -> {
+                Book book = DatabaseHelper.getBookById(id);
+                if (book != null && book.hasCover()) {
+                    DatabaseHelper.getThumbnailById(id);
+                }
+            }
+            // В книгах LibraryGenerator не меньше 80 страниц, поэтому страница всегда допустима.
+            case UPDATE_PROGRESS -> repository.updateProgress(id, random.nextInt(81));
+            case UPDATE_RATING -> repository.updateRating(id, random.nextInt(101) / 10.0);
+        }
+    }
+
+    /**
+     * Объединяет задержки всех потоков и считает перцентили.
+     */
+    private static List<Result> summarize(Recorder[] recorders, int durationSeconds) {
+        Map<Operation, Result> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            int i = operation.ordinal();
+            int count = 0;
+            int errors = 0;
+            for (Recorder recorder : recorders) {
+                count += recorder.counts[i];
+                errors += recorder.errors[i];
+            }
+            if (count == 0 && errors == 0) continue;
+            long[] all = new long[count];
+            int offset = 0;
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.samples[i], 0, all, offset, recorder.counts[i]);
+                offset += recorder.counts[i];
+            }
+            Arrays.sort(all);
+            results.put(operation, new Result(operation, count, errors, (double) count / Math.max(1, durationSeconds),
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                    count == 0 ? 0 : all[count - 1] / 1000));
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Возвращает перцентиль отсортированных задержек методом ближайшего ранга.
+     *
+     * @param sorted задержки в наносекундах по возрастанию
+     * @param fraction доля от 0 до 1
+     * @return задержка в микросекундах (0 для пустого массива)
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1000;
+    }
+}
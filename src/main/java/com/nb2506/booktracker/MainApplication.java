@@ -9,19 +9,36 @@ import javafx.stage.Stage;
 import java.io.IOException;
 
 public class MainApplication extends Application {
+    @Override
+    public void init() {
+        // Схема базы данных готовится в потоке записи, пока загружается FXML и показывается окно.
+        AsyncBookRepository.prepareDatabase();
+    }
+
     @Override
     public void start(Stage stage) throws IOException {
-        DatabaseHelper.createTable();
         FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("main-view.fxml"));
         Parent root = fxmlLoader.load();
         Scene scene = new Scene(root, 800, 450);
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.mark(StartupTrace.Phase.FIRST_FRAME);
+                scene.removePostLayoutPulseListener(this);
+            }
+        });
         stage.resizableProperty().setValue(false);
         stage.setTitle("Дневник чтения");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        DatabaseHelper.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.nb2506.booktracker;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -8,18 +10,31 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.image.Image;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Контроллер главного окна приложения "Дневник чтения".
@@ -76,26 +91,122 @@ public class MainController {
     @FXML
     private TextField searchField;
 
-    /** Выпадающий список для выбора жанра для фильтрации. */
+    /** Меню фасетов для фильтрации: жанры, оценка, год издания и состояние чтения. */
+    @FXML
+    private MenuButton facetMenuButton;
+
+    /** Выпадающий список для выбора порядка сортировки. */
     @FXML
-    private ComboBox<String> genreFilterComboBox;
+    private ComboBox<BookSort> sortComboBox;
+
+    /** Индикатор выполнения запросов к базе данных. */
+    @FXML
+    private ProgressIndicator loadingIndicator;
+
+    /**
+     * Количество книг, начиная с которого список не загружается в память целиком,
+     * а читается постранично через {@link PagedBookList}.
+     */
+    private static final int PAGED_MODE_THRESHOLD = 20_000;
+
+    /** Максимальное количество результатов полнотекстового поиска в постраничном режиме. */
+    private static final int SEARCH_RESULT_LIMIT = 1_000;
+
+    /** Пауза после последнего нажатия клавиши в строке поиска, после которой применяется фильтр. */
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(150);
+
+    /** Сколько найденных книг передавать в список за одно обновление интерфейса. */
+    private static final int SEARCH_CHUNK_SIZE = 50;
+
+    /** Количество книг в первой части списка при запуске; столько строк появляется в окне сразу. */
+    private static final int FIRST_CHUNK_SIZE = 200;
+
+    /** Количество книг в остальных частях списка при запуске. */
+    private static final int LOAD_CHUNK_SIZE = 5_000;
+
+    /** Репозиторий, через который книги читаются и сохраняются вне потока JavaFX. */
+    private final AsyncBookRepository bookRepository = new AsyncBookRepository();
+
+    /**
+     * Загрузка списка книг, которая ещё не завершилась, или null. Хранится сама операция чтения,
+     * а не зависимая от неё стадия, чтобы отмена останавливала чтение частей.
+     */
+    private CompletableFuture<?> pendingLoad;
+
+    /**
+     * Номер текущей загрузки списка; увеличивается при каждой новой загрузке, и части и результаты
+     * прежних загрузок, уже переданные в поток JavaFX, отбрасываются.
+     */
+    private int loadGeneration;
+
+    /** Загрузка обложки для панели информации, которая ещё не завершилась, или null. */
+    private CompletableFuture<Image> pendingCover;
 
     /** Все книги, загруженные из базы данных. */
     private final ObservableList<Book> allBooks = FXCollections.observableArrayList();
 
-    /** Отфильтрованный список книг на основе поиска и выбранного жанра. */
+    /** Отфильтрованный список книг на основе поиска и выбранных фасетов. */
     private FilteredList<Book> filteredBooks;
 
+    /** Индекс фасетов по книгам в памяти; null в постраничном режиме и до загрузки книг. */
+    private FacetIndex facetIndex;
+
+    /** Выбранные значения фасетов. */
+    private FacetSelection facetSelection = FacetSelection.NONE;
+
+    /** Флажки значений в меню фасетов по номерам значений. */
+    private final Map<Facet, List<CheckBox>> facetCheckBoxes = new EnumMap<>(Facet.class);
+
+    /** Id книг, подходящих под строку поиска, или null, если поиск не задан. */
+    private BitSet textMatches;
+
+    /** Постраничный список книг для больших библиотек; null, если все книги загружены в память. */
+    private PagedBookList pagedBooks;
+
+    /** Результаты полнотекстового поиска в постраничном режиме, по убыванию релевантности. */
+    private final ObservableList<Book> searchResults = FXCollections.observableArrayList();
+
+    /** Номер текущего поиска; результаты предыдущих поисков отбрасываются. */
+    private int searchGeneration;
+
+    /** Полнотекстовый поиск в постраничном режиме, который ещё не завершился, или null. */
+    private CompletableFuture<Integer> pendingSearch;
+
+    /**
+     * Задержка применения строки поиска: фильтр применяется, когда пользователь перестал печатать,
+     * а не на каждое нажатие клавиши.
+     */
+    private final PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+
+    /** Признак завершения первой загрузки списка; до неё изменения книг откладываются. */
+    private boolean initialLoadFinished;
+
+    /** Признак того, что во время первой загрузки пришли изменения книг и список нужно перечитать. */
+    private boolean changedDuringInitialLoad;
+
+    /**
+     * Номер последнего события по id книги, для которого книга перечитывается из базы.
+     * Перечитанная книга применяется, только если после её события не пришло более новое.
+     */
+    private final Map<Integer, Integer> pendingRereads = new HashMap<>();
+
+    /** Счётчик событий изменения, для которых книга перечитывается из базы. */
+    private int rereadSequence;
+
     /**
      * Инициализация контроллера.
-     * Загружает книги из базы данных, настраивает фильтрацию и отображение списка книг.
+     * Настраивает фильтрацию и отображение списка книг и запускает загрузку книг в фоне
+     * после подготовки базы данных ({@link AsyncBookRepository#prepareDatabase()}), поэтому окно
+     * показывается, не дожидаясь базы. Небольшие библиотеки загружаются в память частями;
+     * для больших включается постраничный режим, в котором книги читаются
+     * из базы только для видимой части списка.
+     * Подписывается на события {@link BookChange}, чтобы обновлять только изменившиеся книги.
      */
     @FXML
     public void initialize() {
-        allBooks.setAll(DatabaseHelper.getAllBooks());
-
-        filteredBooks = new FilteredList<>(allBooks, _ -> true);
+        filteredBooks = new FilteredList<>(allBooks, BookFilter.ALL);
         listViewBook.setItems(filteredBooks);
+        loadingIndicator.visibleProperty().bind(bookRepository.busyProperty());
 
         listViewBook.setCellFactory(_ -> new ListCell<>() {
             @Override
@@ -105,25 +216,164 @@ public class MainController {
             }
         });
 
-        searchField.textProperty().addListener((_, _, _) -> applyFilters());
+        searchDebounce.setOnFinished(_ -> applyFilters());
+        searchField.textProperty().addListener((_, _, _) -> searchDebounce.playFromStart());
+
+        buildFacetMenu();
+
+        sortComboBox.getItems().setAll(BookSort.values());
+        sortComboBox.setValue(BookSort.ADDED);
+        sortComboBox.valueProperty().addListener((_, _, _) -> onSortChanged());
+        sortComboBox.setDisable(true);
+
+        BookChangeNotifier.addListener(this::onBookChanged);
+
+        pendingLoad = AsyncBookRepository.prepareDatabase()
+                .thenCompose(_ -> bookRepository.count(BookQuery.ALL))
+                .thenAccept(count -> {
+                    if (count > PAGED_MODE_THRESHOLD) {
+                        pagedBooks = new PagedBookList(count, bookRepository);
+                        applyFilters();
+                        finishInitialLoad();
+                    } else {
+                        loadInitialBooks();
+                    }
+                });
+    }
+
+    /**
+     * Первая загрузка списка в память: книги добавляются в список частями по мере чтения,
+     * поэтому первые строки видны сразу. Фильтры начинают работать после загрузки всех книг,
+     * когда построен индекс фасетов.
+     */
+    private void loadInitialBooks() {
+        int generation = ++loadGeneration;
+        CompletableFuture<Integer> load = bookRepository.loadInChunks(currentSort(), FIRST_CHUNK_SIZE, LOAD_CHUNK_SIZE,
+                chunk -> {
+                    if (generation != loadGeneration) return;
+                    allBooks.addAll(chunk);
+                    if (!allBooks.isEmpty()) {
+                        StartupTrace.mark(StartupTrace.Phase.FIRST_ROWS);
+                    }
+                });
+        pendingLoad = load;
+        load.thenAccept(_ -> {
+            if (generation != loadGeneration) return;
+            facetIndex = new FacetIndex(allBooks);
+            applyFilters();
+            finishInitialLoad();
+        });
+    }
+
+    /**
+     * Завершает первую загрузку списка: отмечает этапы запуска и применяет изменения книг,
+     * пришедшие во время загрузки. При запуске для замера ({@link StartupTrace#isExitRequested()})
+     * выводит отчёт о запуске и завершает приложение.
+     */
+    private void finishInitialLoad() {
+        if (initialLoadFinished) return;
+        initialLoadFinished = true;
+        sortComboBox.setDisable(false);
+        StartupTrace.mark(StartupTrace.Phase.FIRST_ROWS);
+        StartupTrace.mark(StartupTrace.Phase.LIST_LOADED);
+        if (StartupTrace.isExitRequested()) {
+            System.out.println(StartupTrace.report());
+            Platform.exit();
+            return;
+        }
+        if (changedDuringInitialLoad) {
+            updateListViewItems();
+        }
+    }
+
+    /**
+     * Заполняет меню фасетов флажками значений. Меню не закрывается при выборе значения,
+     * поэтому можно отметить несколько значений подряд. Для жанров можно потребовать,
+     * чтобы у книги были все выбранные жанры сразу.
+     */
+    private void buildFacetMenu() {
+        facetMenuButton.getItems().clear();
+        for (Facet facet : Facet.values()) {
+            if (!facetMenuButton.getItems().isEmpty()) {
+                facetMenuButton.getItems().add(new SeparatorMenuItem());
+            }
+            MenuItem header = new MenuItem(facet.getTitle());
+            header.setDisable(true);
+            facetMenuButton.getItems().add(header);
+
+            List<CheckBox> boxes = new ArrayList<>();
+            for (int value = 0; value < facet.getValues().size(); value++) {
+                int facetValue = value;
+                CheckBox box = new CheckBox(facet.getValues().get(value));
+                box.selectedProperty().addListener((_, _, selected) ->
+                        selectFacets(facetSelection.with(facet, facetValue, selected)));
+                boxes.add(box);
+                facetMenuButton.getItems().add(keepOpen(box));
+            }
+            facetCheckBoxes.put(facet, boxes);
 
-        genreFilterComboBox.getItems().clear();
-        genreFilterComboBox.getItems().add("Все жанры");
-        genreFilterComboBox.getItems().addAll(DatabaseHelper.getAllGenres());
-        genreFilterComboBox.setValue("Все жанры");
-        genreFilterComboBox.setOnAction(this::onGenreFilterChanged);
+            if (facet == Facet.GENRE) {
+                CheckBox matchAll = new CheckBox("Все выбранные жанры сразу");
+                matchAll.selectedProperty().addListener((_, _, selected) ->
+                        selectFacets(facetSelection.withMatchAllGenres(selected)));
+                facetMenuButton.getItems().add(keepOpen(matchAll));
+            }
+        }
+        MenuItem reset = new MenuItem("Сбросить фильтры");
+        reset.setOnAction(_ -> {
+            facetSelection = FacetSelection.NONE;
+            facetCheckBoxes.values().forEach(boxes -> boxes.forEach(box -> box.setSelected(false)));
+            applyFilters();
+        });
+        facetMenuButton.getItems().addAll(new SeparatorMenuItem(), reset);
     }
 
     /**
-     * Обработчик изменения выбранного жанра в ComboBox.
+     * Оборачивает флажок в пункт меню, который не закрывает меню при нажатии.
      *
-     * @param event событие изменения значения ComboBox
+     * @param box флажок
+     * @return пункт меню
      */
-    @FXML
-    private void onGenreFilterChanged(ActionEvent event) {
+    private static CustomMenuItem keepOpen(CheckBox box) {
+        CustomMenuItem item = new CustomMenuItem(box);
+        item.setHideOnClick(false);
+        return item;
+    }
+
+    /**
+     * Применяет новый выбор фасетов, если он отличается от текущего.
+     *
+     * @param selection новый выбор
+     */
+    private void selectFacets(FacetSelection selection) {
+        if (selection.equals(facetSelection)) return;
+        facetSelection = selection;
         applyFilters();
     }
 
+    /**
+     * Обработчик изменения порядка сортировки.
+     * Сортировка выполняется в базе данных: список в памяти загружается заново уже отсортированным,
+     * а постраничный список перечитывает окна в новом порядке.
+     */
+    private void onSortChanged() {
+        if (pagedBooks != null) {
+            applyFilters();
+        } else {
+            reloadAllBooks();
+        }
+    }
+
+    /**
+     * Возвращает выбранный порядок сортировки.
+     *
+     * @return порядок сортировки
+     */
+    private BookSort currentSort() {
+        BookSort sort = sortComboBox.getValue();
+        return sort != null ? sort : BookSort.ADDED;
+    }
+
     /**
      * Обработчик нажатия кнопки добавления книги.
      * Открывает окно добавления новой книги.
@@ -137,6 +387,7 @@ public class MainController {
         Parent root = fxmlLoader.load();
 
         AddEditBookController controller = fxmlLoader.getController();
+        controller.setRepository(bookRepository);
         controller.setBook(null);
 
         Stage addBookStage = new Stage();
@@ -147,8 +398,92 @@ public class MainController {
         Stage primaryStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
         addBookStage.initOwner(primaryStage);
         addBookStage.showAndWait();
+    }
+
+    /**
+     * Обработчик нажатия кнопки статистики.
+     * Открывает немодальное окно статистики, которое обновляется при изменении книг.
+     *
+     * @param event событие нажатия кнопки
+     * @throws IOException в случае ошибки загрузки FXML
+     */
+    @FXML
+    private void onStatisticsButton(ActionEvent event) throws IOException {
+        FXMLLoader loader = new FXMLLoader(MainApplication.class.getResource("statistics-view.fxml"));
+        Parent root = loader.load();
+        StatisticsController controller = loader.getController();
+
+        Stage stage = new Stage();
+        stage.setTitle("Статистика");
+        stage.initOwner(((Node) event.getSource()).getScene().getWindow());
+        stage.setScene(new Scene(root));
+        stage.setOnHidden(_ -> controller.dispose());
+        stage.show();
+    }
+
+    /**
+     * Обработчик нажатия кнопки диагностики.
+     * Открывает немодальное окно со сводкой метрик {@link Metrics}.
+     *
+     * @param event событие нажатия кнопки
+     * @throws IOException в случае ошибки загрузки FXML
+     */
+    @FXML
+    private void onDiagnosticsButton(ActionEvent event) throws IOException {
+        FXMLLoader loader = new FXMLLoader(MainApplication.class.getResource("diagnostics-view.fxml"));
+        Parent root = loader.load();
+
+        Stage stage = new Stage();
+        stage.setTitle("Диагностика");
+        stage.initOwner(((Node) event.getSource()).getScene().getWindow());
+        stage.setScene(new Scene(root));
+        stage.show();
+    }
 
-        updateListViewItems();
+    /**
+     * Обработчик нажатия кнопки экспорта.
+     * Спрашивает файл и открывает немодальное окно, в котором идёт экспорт всей библиотеки;
+     * формат определяется по расширению файла (ZIP — вместе с обложками).
+     *
+     * @param event событие нажатия кнопки
+     * @throws IOException в случае ошибки загрузки FXML
+     */
+    @FXML
+    private void onExportButton(ActionEvent event) throws IOException {
+        Window owner = ((Node) event.getSource()).getScene().getWindow();
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Экспорт библиотеки");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Архив с обложками", "*.zip"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("CSV", "*.csv")
+        );
+        fileChooser.setInitialFileName("books.zip");
+        File selected = fileChooser.showSaveDialog(owner);
+        if (selected == null) return;
+
+        Path file = selected.toPath();
+        BookExporter.Format format;
+        try {
+            format = BookExporter.Format.fromFileName(file);
+        } catch (IllegalArgumentException e) {
+            // Имя введено без расширения: берётся расширение выбранного фильтра.
+            String extension = fileChooser.getSelectedExtensionFilter().getExtensions().getFirst().substring(1);
+            file = file.resolveSibling(file.getFileName() + extension);
+            format = BookExporter.Format.fromFileName(file);
+        }
+
+        FXMLLoader loader = new FXMLLoader(MainApplication.class.getResource("export-view.fxml"));
+        Parent root = loader.load();
+        ExportController controller = loader.getController();
+
+        Stage stage = new Stage();
+        stage.setTitle("Экспорт");
+        stage.initOwner(owner);
+        stage.setScene(new Scene(root));
+        stage.setOnHidden(_ -> controller.cancel());
+        stage.show();
+        controller.start(file, format);
     }
 
     /**
@@ -170,9 +505,11 @@ public class MainController {
 
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            DatabaseHelper.deleteBookById(selectedBook.getId());
-            updateListViewItems();
             clearBookDetails();
+            bookRepository.delete(selectedBook).exceptionally(_ -> {
+                showWarning("Удаление книги", "Не удалось удалить книгу.");
+                return null;
+            });
         }
     }
 
@@ -192,6 +529,7 @@ public class MainController {
         Parent root = loader.load();
 
         AddEditBookController controller = loader.getController();
+        controller.setRepository(bookRepository);
         controller.setBook(selectedBook);
 
         Stage stage = new Stage();
@@ -200,8 +538,6 @@ public class MainController {
         stage.initOwner(((Node) event.getSource()).getScene().getWindow());
         stage.setScene(new Scene(root));
         stage.showAndWait();
-
-        updateListViewItems();
     }
 
     /**
@@ -232,38 +568,271 @@ public class MainController {
      * Обновляет список книг из базы данных.
      */
     private void updateListViewItems() {
-        allBooks.setAll(DatabaseHelper.getAllBooks());
+        if (pagedBooks != null) {
+            applyFilters();
+            return;
+        }
+        reloadAllBooks();
     }
 
     /**
-     * Применяет фильтры поиска и жанра к списку книг.
+     * Загружает все книги в фоне в выбранном порядке сортировки и заменяет ими список.
+     * Незавершённая предыдущая загрузка отменяется, а её уже прочитанные части не попадают в список.
      */
-    private void applyFilters() {
-        String selectedGenre = genreFilterComboBox.getValue();
-        if (selectedGenre == null) selectedGenre = "Все жанры";
+    private void reloadAllBooks() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+        }
+        int generation = ++loadGeneration;
+        CompletableFuture<List<Book>> load = bookRepository.loadAll(currentSort());
+        pendingLoad = load;
+        load.thenAccept(books -> {
+            if (generation != loadGeneration) return;
+            allBooks.setAll(books);
+            facetIndex = new FacetIndex(books);
+            applyFilters();
+            finishInitialLoad();
+        });
+    }
+
+    /**
+     * Получатель событий изменения книг; события могут приходить из любого потока.
+     *
+     * @param change событие изменения
+     */
+    private void onBookChanged(BookChange change) {
+        if (Platform.isFxApplicationThread()) {
+            applyBookChange(change);
+        } else {
+            Platform.runLater(() -> applyBookChange(change));
+        }
+    }
+
+    /**
+     * Обновляет в списке только изменившуюся книгу, сохраняя выделение и положение прокрутки.
+     * Если в событии нет самой книги (изменение сделано в обход репозитория),
+     * она перечитывается из базы по id в фоне и применяется по завершении чтения.
+     * Массовые изменения перезагружают список целиком.
+     * Изменения, пришедшие до завершения первой загрузки, применяются одним перечитыванием после неё.
+     *
+     * @param change событие изменения
+     */
+    private void applyBookChange(BookChange change) {
+        if (!initialLoadFinished) {
+            changedDuringInitialLoad = true;
+            return;
+        }
+        if (change.type() == BookChange.Type.RELOADED) {
+            updateListViewItems();
+            return;
+        }
+        if (change.type() != BookChange.Type.DELETED && change.book() == null) {
+            int sequence = ++rereadSequence;
+            pendingRereads.put(change.id(), sequence);
+            bookRepository.getBookById(change.id()).thenAccept(book -> {
+                if (!pendingRereads.remove(change.id(), sequence)) return;
+                placeChangedBook(change, book);
+            });
+            return;
+        }
+        pendingRereads.remove(change.id());
+        placeChangedBook(change, change.type() != BookChange.Type.DELETED ? change.book() : null);
+    }
+
+    /**
+     * Ставит изменившуюся книгу в список и восстанавливает выделение.
+     *
+     * @param change событие изменения
+     * @param book книга после изменения или null, если книги больше нет
+     */
+    private void placeChangedBook(BookChange change, Book book) {
+        Book selected = getSelectedBook();
+        int selectedId = selected != null ? selected.getId() : -1;
+
+        if (pagedBooks != null) {
+            pagedBooks.applyChange(change, book);
+            replaceBook(searchResults, change.id(), book);
+        } else {
+            updateFacetIndex(change.id(), book);
+            placeBook(allBooks, change.id(), book, currentSort().comparator());
+        }
+
+        // Замена элемента может сбросить выделение; возвращаем его на новую версию книги.
+        if (selectedId == change.id() && book != null && getSelectedBook() != book
+                && listViewBook.getItems() != pagedBooks) {
+            int index = listViewBook.getItems().indexOf(book);
+            if (index >= 0) {
+                listViewBook.getSelectionModel().select(index);
+            }
+        }
+    }
+
+    /**
+     * Обновляет индекс фасетов и текущий фильтр для одной изменившейся книги,
+     * не фильтруя список заново: после замены книги в списке {@link FilteredList}
+     * проверит только её. Вызывается до замены книги в списке.
+     *
+     * @param id идентификатор книги
+     * @param book новая версия книги или null, если книга удалена
+     */
+    private void updateFacetIndex(int id, Book book) {
+        if (facetIndex == null) return;
+        if (book != null) {
+            facetIndex.update(book);
+        } else {
+            facetIndex.remove(id);
+        }
+        boolean matchesText = book != null && BookFilter.of(searchField.getText()).test(book);
+        if (textMatches != null) {
+            textMatches.set(id, matchesText);
+        }
+        if (filteredBooks.getPredicate() instanceof BookFilter filter && filter.ids() != null) {
+            filter.ids().set(id, matchesText && facetSelection.matches(book));
+        }
+        updateFacetCounts();
+    }
 
-        String searchText = searchField.getText() != null
-                ? searchField.getText().toLowerCase().trim()
-                : "";
+    /**
+     * Ставит книгу на её место в отсортированном списке: заменяет на месте, если порядок не нарушен,
+     * иначе перемещает; новую книгу вставляет, удалённую убирает.
+     *
+     * @param books список книг, отсортированный в порядке order
+     * @param id идентификатор книги
+     * @param book новая версия книги или null, если книгу нужно удалить
+     * @param order порядок сортировки списка
+     */
+    private static void placeBook(List<Book> books, int id, Book book, Comparator<Book> order) {
+        int index = -1;
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getId() == id) {
+                index = i;
+                break;
+            }
+        }
+        if (book == null) {
+            if (index >= 0) books.remove(index);
+            return;
+        }
+        if (index >= 0) {
+            boolean inPlace = (index == 0 || order.compare(books.get(index - 1), book) <= 0)
+                    && (index == books.size() - 1 || order.compare(book, books.get(index + 1)) <= 0);
+            if (inPlace) {
+                books.set(index, book);
+                return;
+            }
+            books.remove(index);
+        }
+        int position = Collections.binarySearch(books, book, order);
+        books.add(position < 0 ? -position - 1 : position, book);
+    }
 
-        String finalSelectedGenre = selectedGenre;
-        filteredBooks.setPredicate(book -> {
-            if (book == null) return false;
+    /**
+     * Заменяет или удаляет книгу в списке по id.
+     *
+     * @param books список книг
+     * @param id идентификатор книги
+     * @param book новая версия книги или null, если книгу нужно удалить
+     * @return true, если книга с таким id была в списке
+     */
+    private static boolean replaceBook(List<Book> books, int id, Book book) {
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getId() == id) {
+                if (book != null) {
+                    books.set(i, book);
+                } else {
+                    books.remove(i);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
 
-            List<String> genresList = book.getGenres() == null
-                    ? List.of()
-                    : Arrays.asList(book.getGenres().split(",\\s*"));
+    /**
+     * Применяет фильтры поиска и фасетов к списку книг.
+     * В режиме списка в памяти строка поиска проверяется по заранее вычисленным ключам поиска книг
+     * по тому же правилу префиксов слов, что и полнотекстовый поиск, а фасеты — по {@link FacetIndex};
+     * список фильтруется по получившемуся набору id, и фильтр не меняется, если набор тот же.
+     * В постраничном режиме фасеты переводятся в условия SQL, а количество книг для значений фасетов
+     * не показывается.
+     */
+    private void applyFilters() {
+        searchDebounce.stop();
+        int selectedCount = facetSelection.count();
+        facetMenuButton.setText(selectedCount == 0 ? "Фильтры" : "Фильтры (" + selectedCount + ")");
+
+        String searchText = BookSearchKey.fold(searchField.getText());
+
+        if (pagedBooks != null) {
+            updateFacetCounts();
+            BookQuery query = new BookQuery(searchText, facetSelection, currentSort());
+            if (query.hasSearch()) {
+                streamSearchResults(query);
+            } else {
+                cancelSearch();
+                listViewBook.setItems(pagedBooks);
+                pagedBooks.setQuery(query);
+            }
+            return;
+        }
 
-            boolean matchesGenre = finalSelectedGenre.equals("Все жанры") || genresList.contains(finalSelectedGenre);
+        if (facetIndex == null) return;
+        FilterEvent event = FilterEvent.start(allBooks.size(), searchText.length(), selectedCount);
+        BookFilter textFilter = BookFilter.of(searchText);
+        textMatches = textFilter.query().isEmpty() ? null : textFilter.matchingIds(allBooks);
+        updateFacetCounts();
+        BookFilter filter = BookFilter.ofIds(facetIndex.match(facetSelection, textMatches));
+        if (!filter.equals(filteredBooks.getPredicate())) {
+            filteredBooks.setPredicate(filter);
+        }
+        event.finish(filteredBooks.size());
+    }
 
-            boolean matchesSearch = searchText.isEmpty()
-                    || book.getTitle().toLowerCase().contains(searchText)
-                    || book.getAuthor().toLowerCase().contains(searchText);
+    /**
+     * Показывает в меню фасетов, сколько книг останется при выборе каждого значения
+     * с учётом строки поиска и выбора в остальных фасетах.
+     */
+    private void updateFacetCounts() {
+        for (Facet facet : Facet.values()) {
+            int[] counts = facetIndex != null ? facetIndex.counts(facet, facetSelection, textMatches) : null;
+            List<CheckBox> boxes = facetCheckBoxes.get(facet);
+            for (int value = 0; value < boxes.size(); value++) {
+                String label = facet.getValues().get(value);
+                boxes.get(value).setText(counts == null ? label : label + " (" + counts[value] + ")");
+            }
+        }
+    }
 
-            return matchesGenre && matchesSearch;
+    /**
+     * Выполняет полнотекстовый поиск через репозиторий и добавляет найденные книги в список
+     * порциями по мере чтения из базы, начиная с самых релевантных.
+     * Новый поиск прерывает предыдущий.
+     *
+     * @param query условия выборки с заданной строкой поиска
+     */
+    private void streamSearchResults(BookQuery query) {
+        cancelSearch();
+        int generation = searchGeneration;
+        searchResults.clear();
+        listViewBook.setItems(searchResults);
+        pendingSearch = bookRepository.searchInChunks(query, SEARCH_RESULT_LIMIT, SEARCH_CHUNK_SIZE, books -> {
+            if (generation == searchGeneration) {
+                searchResults.addAll(books);
+            }
         });
     }
 
+    /**
+     * Прерывает текущий полнотекстовый поиск; уже переданные в поток JavaFX части его результатов отбрасываются.
+     */
+    private void cancelSearch() {
+        searchGeneration++;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+    }
+
     /**
      * Отображает детали выбранной книги в панели информации.
      *
@@ -293,8 +862,31 @@ public class MainController {
         readProgressBar.setProgress(progress);
         progressLabel.setText((int)(progress * 100) + "%");
 
-        Image coverImage = book.getCoverAsImage();
-        coverImageView.setImage(coverImage);
+        showCoverImage(book);
+    }
+
+    /**
+     * Показывает обложку книги в панели информации.
+     * Обложка декодируется сразу в размер области отображения. Если она не загружена
+     * вместе со списком, она берётся из кэша обложек или читается из базы данных в фоне
+     * и не сохраняется в объекте книги, чтобы список не удерживал обложки в памяти.
+     * Незавершённая загрузка обложки предыдущей книги отменяется.
+     *
+     * @param book книга, обложку которой нужно показать
+     */
+    private void showCoverImage(Book book) {
+        if (pendingCover != null) {
+            pendingCover.cancel(false);
+        }
+        int width = (int) coverImageView.getFitWidth();
+        int height = (int) coverImageView.getFitHeight();
+        if (book.isCoverLoaded() || !book.hasCover()) {
+            coverImageView.setImage(ImageHelper.toImage(book.getCover(), width, height));
+            return;
+        }
+        coverImageView.setImage(null);
+        pendingCover = bookRepository.loadCoverImage(book.getId(), width, height);
+        pendingCover.thenAccept(coverImageView::setImage);
     }
 
     /**
@@ -310,6 +902,9 @@ public class MainController {
         genresContainer.getChildren().clear();
         readProgressBar.setProgress(0);
         progressLabel.setText("");
+        if (pendingCover != null) {
+            pendingCover.cancel(false);
+        }
         coverImageView.setImage(null);
     }
 
@@ -0,0 +1,216 @@
+package com.nb2506.booktracker;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр метрик приложения: счётчики, гистограммы длительностей и показатели, читаемые по запросу.
+ * Заполняется событиями {@link DatabaseEvent}, {@link CoverDecodeEvent} и {@link FilterEvent}
+ * независимо от того, идёт ли запись Java Flight Recorder, поэтому сводку можно посмотреть
+ * в окне диагностики или вывести в журнал в любой момент.
+ * <p>
+ * Метрики создаются при первом обращении по имени. Все методы потокобезопасны;
+ * запись значения не блокирует другие потоки.
+ */
+public final class Metrics {
+    /** Счётчики по имени. */
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    /** Гистограммы длительностей по имени. */
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /** Показатели, значения которых читаются по запросу (например, счётчики кэшей). */
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Гистограмма длительностей с интервалами по степеням двойки наносекунд.
+     * Перцентили оцениваются по верхней границе интервала, то есть с точностью до двух раз,
+     * чего достаточно для поиска медленных операций.
+     */
+    public static final class Histogram {
+        /** Количество интервалов: до 2^62 наносекунд. */
+        private static final int BUCKETS = 63;
+
+        /** Количество значений в каждом интервале. */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        /** Количество значений. */
+        private final LongAdder count = new LongAdder();
+
+        /** Сумма значений в наносекундах. */
+        private final LongAdder total = new LongAdder();
+
+        /** Наибольшее значение в наносекундах. */
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Добавляет длительность.
+         *
+         * @param nanos длительность в наносекундах
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Возвращает сводку по гистограмме.
+         *
+         * @return сводка
+         */
+        public Summary summary() {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+            long maximum = max.get();
+            return new Summary(n, total.sum(), Math.min(maximum, percentile(counts, n, 0.5)),
+                    Math.min(maximum, percentile(counts, n, 0.99)), maximum);
+        }
+
+        /**
+         * Оценивает перцентиль по верхней границе интервала; в сводке оценка не превышает максимума.
+         */
+        private static long percentile(long[] counts, long n, double fraction) {
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i == 0 ? 0 : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Сводка по гистограмме.
+     *
+     * @param count количество значений
+     * @param totalNanos сумма значений в наносекундах
+     * @param p50Nanos оценка медианы в наносекундах
+     * @param p99Nanos оценка 99-го перцентиля в наносекундах
+     * @param maxNanos наибольшее значение в наносекундах
+     */
+    public record Summary(long count, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+        /**
+         * Возвращает среднее значение.
+         *
+         * @return среднее в наносекундах (0, если значений нет)
+         */
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+
+    /**
+     * Увеличивает счётчик на единицу.
+     *
+     * @param name имя счётчика
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Увеличивает счётчик.
+     *
+     * @param name имя счётчика
+     * @param delta прибавляемое значение
+     */
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, _ -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Добавляет длительность в гистограмму.
+     *
+     * @param name имя гистограммы
+     * @param nanos длительность в наносекундах
+     */
+    public static void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    /**
+     * Возвращает гистограмму, создавая её при первом обращении.
+     *
+     * @param name имя гистограммы
+     * @return гистограмма
+     */
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, _ -> new Histogram());
+    }
+
+    /**
+     * Регистрирует показатель, значение которого читается при каждом снятии сводки.
+     * Повторная регистрация с тем же именем заменяет прежний показатель.
+     *
+     * @param name имя показателя
+     * @param value источник значения
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Возвращает текущие значения счётчиков и показателей.
+     *
+     * @return значения по имени в алфавитном порядке
+     */
+    public static Map<String, Long> counters() {
+        Map<String, Long> result = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> result.put(name, counter.sum()));
+        GAUGES.forEach((name, gauge) -> result.put(name, gauge.getAsLong()));
+        return result;
+    }
+
+    /**
+     * Возвращает сводки всех гистограмм.
+     *
+     * @return сводки по имени в алфавитном порядке
+     */
+    public static Map<String, Summary> histograms() {
+        Map<String, Summary> result = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> result.put(name, histogram.summary()));
+        return result;
+    }
+
+    /**
+     * Удаляет все счётчики и гистограммы. Зарегистрированные показатели сохраняются.
+     */
+    public static void reset() {
+        COUNTERS.clear();
+        HISTOGRAMS.clear();
+    }
+
+    /**
+     * Возвращает сводку всех метрик в виде текста: по строке на метрику,
+     * длительности — в микросекундах.
+     *
+     * @return текст сводки
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-36s %9s %10s %10s %10s %10s%n",
+                "операция", "вызовов", "сред. мкс", "p50 мкс", "p99 мкс", "max мкс"));
+        histograms().forEach((name, s) -> text.append(String.format("%-36s %9d %10d %10d %10d %10d%n",
+                name, s.count(), s.meanNanos() / 1000, s.p50Nanos() / 1000, s.p99Nanos() / 1000, s.maxNanos() / 1000)));
+        text.append(System.lineSeparator());
+        counters().forEach((name, value) -> text.append(String.format("%-36s %12d%n", name, value)));
+        return text.toString();
+    }
+}
@@ -0,0 +1,294 @@
+package com.nb2506.booktracker;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Постраничный список книг для очень больших библиотек.
+ * Вместо загрузки всех строк в память список знает только общее количество книг
+ * и загружает окна по {@link #WINDOW_SIZE} строк, когда {@link javafx.scene.control.ListView}
+ * запрашивает видимые ячейки. Следующие окна подгружаются заранее, а окна, далёкие от видимой
+ * области, вытесняются.
+ * <p>
+ * Все запросы к базе данных (окна и подсчёт книг) выполняются через {@link AsyncBookRepository}
+ * вне потока JavaFX. Пока окно не загружено, на месте его книг список возвращает null (ячейка
+ * показывается пустой), а после загрузки сообщает о замене этих элементов. Новое количество книг
+ * после {@link #refresh()} применяется, когда подсчёт завершится.
+ * Все методы вызываются в потоке JavaFX.
+ */
+public class PagedBookList extends ObservableListBase<Book> {
+    /** Количество книг в одном окне. */
+    static final int WINDOW_SIZE = 200;
+
+    /** Сколько окон вперёд и назад подгружать заранее. */
+    private static final int PREFETCH_WINDOWS = 1;
+
+    /** Окна дальше этого расстояния от текущего вытесняются из памяти. */
+    private static final int EVICT_DISTANCE = 4;
+
+    /** Загруженные окна по их номеру. */
+    private final Map<Integer, List<Book>> windows = new HashMap<>();
+
+    /**
+     * Последняя книга каждого уже загруженного окна; её значение сортировки и id образуют ключ следующего окна.
+     * Сохраняются и после вытеснения окна, чтобы следующее окно читалось по ключу, а не по OFFSET.
+     */
+    private final Map<Integer, Book> windowLastBooks = new HashMap<>();
+
+    /** Номера окон, которые сейчас подгружаются в фоне. */
+    private final Set<Integer> pendingWindows = new HashSet<>();
+
+    /** Репозиторий, через который читаются окна и количество книг. */
+    private final AsyncBookRepository repository;
+
+    /** Текущие условия выборки. */
+    private BookQuery query = BookQuery.ALL;
+
+    /** Количество книг, удовлетворяющих текущим условиям. */
+    private int size;
+
+    /**
+     * Признак того, что список сообщает о загруженном окне. Подписчики могут читать заменённые элементы,
+     * и эти чтения не должны запускать подгрузку и вытеснение окон, иначе загрузка окон не остановится.
+     */
+    private boolean notifyingWindow;
+
+    /** Номер поколения данных; увеличивается при каждом сбросе, чтобы отбрасывать устаревшие подгрузки. */
+    private int generation;
+
+    /**
+     * Создаёт постраничный список всех книг по уже известному количеству книг.
+     *
+     * @param size количество книг в базе данных
+     * @param repository репозиторий для чтения окон и подсчёта книг
+     */
+    public PagedBookList(int size, AsyncBookRepository repository) {
+        this.size = size;
+        this.repository = repository;
+    }
+
+    /**
+     * Возвращает книгу по индексу. Если её окно ещё не загружено, запускает его загрузку
+     * и возвращает null; когда окно загрузится, список сообщит о замене его элементов.
+     *
+     * @param index индекс книги в списке
+     * @return книга без обложки или null, если её окно ещё загружается
+     */
+    @Override
+    public Book get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int window = index / WINDOW_SIZE;
+        List<Book> books = windows.get(window);
+        if (!notifyingWindow) {
+            if (books == null) {
+                requestWindow(window);
+            }
+            prefetchAround(window);
+            evictFarFrom(window);
+        }
+
+        int offset = index % WINDOW_SIZE;
+        return books != null && offset < books.size() ? books.get(offset) : null;
+    }
+
+    /**
+     * Возвращает количество книг, удовлетворяющих текущим условиям.
+     *
+     * @return размер списка
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Устанавливает новые условия выборки и перезагружает список.
+     *
+     * @param query новые условия выборки
+     */
+    public void setQuery(BookQuery query) {
+        this.query = query;
+        refresh();
+    }
+
+    /**
+     * Сбрасывает все загруженные окна и заново считает количество книг в фоне;
+     * когда подсчёт завершится, список сообщает о замене всех элементов.
+     * Вызывается после изменения данных в базе.
+     */
+    public void refresh() {
+        int requestGeneration = ++generation;
+        windows.clear();
+        windowLastBooks.clear();
+        pendingWindows.clear();
+        repository.count(query).whenComplete((count, error) -> {
+            if (requestGeneration != generation) return;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            int oldSize = size;
+            size = count;
+            beginChange();
+            if (oldSize > 0) {
+                nextRemove(0, Collections.nCopies(oldSize, null));
+            }
+            if (size > 0) {
+                nextAdd(0, size);
+            }
+            endChange();
+        });
+    }
+
+    /**
+     * Обновляет список после изменения одной книги.
+     * Изменённая книга, которая уже загружена, по-прежнему удовлетворяет условиям выборки
+     * и не сменила значение сортировки, заменяется на месте без перечитывания окон.
+     * Добавление и удаление сдвигают индексы, поэтому в остальных случаях список перезагружается
+     * (как и при изменении книги, которая могла войти в выборку, выйти из неё или сменить место).
+     *
+     * @param change событие изменения
+     * @param book книга после изменения или null, если книги больше нет
+     */
+    public void applyChange(BookChange change, Book book) {
+        if (change.type() == BookChange.Type.UPDATED && book != null && matchesQuery(book)) {
+            for (Map.Entry<Integer, List<Book>> entry : windows.entrySet()) {
+                List<Book> books = entry.getValue();
+                for (int i = 0; i < books.size(); i++) {
+                    if (books.get(i).getId() == book.getId()) {
+                        if (!query.getSort().sameKey(books.get(i), book)) {
+                            refresh();
+                            return;
+                        }
+                        Book old = books.set(i, book);
+                        beginChange();
+                        nextSet(entry.getKey() * WINDOW_SIZE + i, old);
+                        endChange();
+                        return;
+                    }
+                }
+            }
+            // Без фильтров и при сортировке по id незагруженная книга заведомо осталась на своём месте;
+            // иначе она могла только что попасть в выборку или переместиться в загруженное окно.
+            if (query.getFacets().count() == 0 && query.getSort() == BookSort.ADDED) return;
+        }
+        refresh();
+    }
+
+    /**
+     * Проверяет, удовлетворяет ли книга текущим условиям выборки.
+     * В списке не бывает поиска (он выполняется отдельно), поэтому проверяются только фасеты.
+     *
+     * @param book книга
+     * @return true, если книга должна оставаться в списке
+     */
+    private boolean matchesQuery(Book book) {
+        return query.getFacets().matches(book);
+    }
+
+    /**
+     * Возвращает последнюю книгу окна, предшествующего указанному.
+     *
+     * @param window номер окна
+     * @return книга для пагинации по ключу или null, если она неизвестна
+     */
+    private Book previousLastBook(int window) {
+        return window == 0 ? null : windowLastBooks.get(window - 1);
+    }
+
+    /**
+     * Сохраняет загруженное окно и запоминает его последнюю книгу.
+     *
+     * @param window номер окна
+     * @param books книги окна
+     */
+    private void storeWindow(int window, List<Book> books) {
+        windows.put(window, books);
+        if (!books.isEmpty()) {
+            windowLastBooks.put(window, books.get(books.size() - 1));
+        }
+    }
+
+    /**
+     * Запускает фоновую подгрузку соседних окон, если они ещё не загружены.
+     * Следующее окно подгружается только когда известен ключ текущего, поэтому
+     * при последовательной прокрутке все запросы идут по ключу.
+     *
+     * @param window номер текущего окна
+     */
+    private void prefetchAround(int window) {
+        int lastWindow = (size - 1) / WINDOW_SIZE;
+        for (int distance = 1; distance <= PREFETCH_WINDOWS; distance++) {
+            prefetch(window + distance, lastWindow);
+            prefetch(window - distance, lastWindow);
+        }
+    }
+
+    /**
+     * Запускает подгрузку одного соседнего окна.
+     *
+     * @param window номер окна
+     * @param lastWindow номер последнего окна списка
+     */
+    private void prefetch(int window, int lastWindow) {
+        if (window < 0 || window > lastWindow) return;
+        requestWindow(window);
+    }
+
+    /**
+     * Запускает загрузку окна через репозиторий, если оно ещё не загружено и не загружается.
+     * Если известна последняя книга предыдущего окна, окно читается по ключу, иначе по смещению.
+     * Загруженное окно сохраняется, и список сообщает о замене его элементов, чтобы ячейки,
+     * показанные пустыми, перерисовались. Результат загрузки для прежних условий отбрасывается.
+     *
+     * @param window номер окна
+     */
+    private void requestWindow(int window) {
+        if (windows.containsKey(window) || !pendingWindows.add(window)) return;
+
+        int requestGeneration = generation;
+        repository.loadPage(query, previousLastBook(window), window * WINDOW_SIZE, WINDOW_SIZE)
+                .whenComplete((books, error) -> {
+                    if (requestGeneration != generation) return;
+                    pendingWindows.remove(window);
+                    if (error != null) return;
+                    storeWindow(window, books);
+                    int from = window * WINDOW_SIZE;
+                    int to = Math.min(size, from + books.size());
+                    if (from >= to) return;
+                    notifyingWindow = true;
+                    try {
+                        beginChange();
+                        for (int index = from; index < to; index++) {
+                            nextSet(index, null);
+                        }
+                        endChange();
+                    } finally {
+                        notifyingWindow = false;
+                    }
+                });
+    }
+
+    /**
+     * Вытесняет окна, находящиеся далеко от текущего.
+     *
+     * @param window номер текущего окна
+     */
+    private void evictFarFrom(int window) {
+        Iterator<Integer> iterator = windows.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (Math.abs(iterator.next() - window) > EVICT_DISTANCE) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nb2506.booktracker;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Соединение из пула {@link ConnectionManager} вместе с кэшем подготовленных выражений.
+ * Подготовленные выражения живут столько же, сколько само соединение, поэтому
+ * вызывающий код не должен их закрывать.
+ */
+public final class PooledConnection implements AutoCloseable {
+    /** Максимальное количество подготовленных выражений в кэше одного соединения. */
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    /** Физическое соединение с базой данных. */
+    private final Connection connection;
+
+    /** Кэш подготовленных выражений по тексту запроса (вытеснение по LRU). */
+    private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= STATEMENT_CACHE_SIZE) return false;
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+
+    /**
+     * Оборачивает уже настроенное соединение.
+     *
+     * @param connection физическое соединение с базой данных
+     */
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Возвращает подготовленное выражение для неизменного текста запроса.
+     * При повторном вызове с тем же текстом возвращается закэшированное выражение
+     * с очищенными параметрами.
+     *
+     * @param sql текст запроса
+     * @return подготовленное выражение, которое нельзя закрывать
+     * @throws SQLException при ошибке подготовки запроса
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Возвращает физическое соединение для запросов с изменяемым текстом,
+     * которые не следует кэшировать.
+     *
+     * @return объект {@link Connection}
+     */
+    public Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Закрывает все закэшированные выражения. Нужно перед командами, которые SQLite не выполняет,
+     * пока на соединении есть незавершённые выражения, например VACUUM.
+     */
+    public void clearStatements() {
+        statements.values().forEach(PooledConnection::closeQuietly);
+        statements.clear();
+    }
+
+    /**
+     * Закрывает все закэшированные выражения и само соединение.
+     */
+    @Override
+    public void close() {
+        clearStatements();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Закрывает выражение, игнорируя ошибки закрытия.
+     *
+     * @param statement выражение для закрытия
+     */
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // выражение уже недействительно, повторно сообщать нечего
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.nb2506.booktracker;
+
+/**
+ * Запись журнала чтения: изменение текущей страницы книги.
+ *
+ * @param id id записи
+ * @param bookId id книги
+ * @param occurredAt время изменения в миллисекундах с начала эпохи
+ * @param fromPage страница до изменения
+ * @param toPage страница после изменения
+ * @param pagesRead прочитанные страницы (0, если читатель вернулся назад)
+ */
+public record ReadingEvent(long id, int bookId, long occurredAt, int fromPage, int toPage, int pagesRead) {
+}
@@ -0,0 +1,226 @@
+package com.nb2506.booktracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запросы к журналу чтения и его сводным таблицам (см. миграцию версии 6 в {@link DatabaseSchema}).
+ * Журнал заполняется триггером при каждом изменении текущей страницы, поэтому отдельной записи
+ * из приложения не требуется. Количество страниц за день, неделю или месяц читается одной строкой
+ * сводной таблицы; ключ периода вычисляет SQLite, чтобы он совпадал с ключами, записанными триггером.
+ */
+public final class ReadingLog {
+    /** Текст запроса для страниц за день. */
+    private static final String PAGES_ON_DAY_SQL = "SELECT pages FROM reading_days WHERE day = date(?)";
+
+    /** Текст запроса для страниц за неделю ISO 8601, содержащую день. */
+    private static final String PAGES_IN_WEEK_SQL = "SELECT pages FROM reading_weeks WHERE week = strftime('%G-%V', ?)";
+
+    /** Текст запроса для страниц за месяц. */
+    private static final String PAGES_IN_MONTH_SQL = "SELECT pages FROM reading_months WHERE month = ?";
+
+    /** Текст запроса для страниц по жанрам. */
+    private static final String PAGES_BY_GENRE_SQL = """
+        SELECT g.name, r.pages FROM reading_genres r
+        JOIN genres g ON g.id = r.genre_id
+        ORDER BY r.pages DESC, g.name
+    """;
+
+    /** Текст запроса для страниц по дням за период. */
+    private static final String PAGES_BY_DAY_SQL =
+            "SELECT day, pages FROM reading_days WHERE day BETWEEN date(?) AND date(?) ORDER BY day";
+
+    /** Текст запроса для дней чтения, начиная с последнего, не позже заданного. */
+    private static final String DAYS_BEFORE_SQL = "SELECT day FROM reading_days WHERE day <= date(?) ORDER BY day DESC";
+
+    /** Текст запроса для журнала одной книги. */
+    private static final String EVENTS_FOR_BOOK_SQL = """
+        SELECT id, book_id, occurred_at, from_page, to_page, pages_read FROM reading_events
+        WHERE book_id = ? ORDER BY occurred_at, id
+    """;
+
+    private ReadingLog() {
+    }
+
+    /**
+     * Возвращает количество страниц, прочитанных за день.
+     *
+     * @param day день по местному времени
+     * @return количество страниц (0, если чтения не было или ошибка)
+     */
+    public static int pagesReadOn(LocalDate day) {
+        return readPages(PAGES_ON_DAY_SQL, day.toString());
+    }
+
+    /**
+     * Возвращает количество страниц, прочитанных за неделю ISO 8601 (с понедельника по воскресенье),
+     * содержащую день, в том числе если неделя начинается в прошлом году.
+     *
+     * @param day любой день недели
+     * @return количество страниц (0, если чтения не было или ошибка)
+     */
+    public static int pagesReadInWeek(LocalDate day) {
+        return readPages(PAGES_IN_WEEK_SQL, day.toString());
+    }
+
+    /**
+     * Возвращает количество страниц, прочитанных за месяц.
+     *
+     * @param month месяц
+     * @return количество страниц (0, если чтения не было или ошибка)
+     */
+    public static int pagesReadInMonth(YearMonth month) {
+        return readPages(PAGES_IN_MONTH_SQL, month.toString());
+    }
+
+    /**
+     * Возвращает количество страниц, прочитанных в текущем месяце.
+     *
+     * @return количество страниц
+     */
+    public static int pagesReadThisMonth() {
+        return pagesReadInMonth(YearMonth.now());
+    }
+
+    /**
+     * Возвращает количество прочитанных страниц по жанрам книг.
+     * Страницы книги с несколькими жанрами учитываются в каждом из них.
+     *
+     * @return страницы по названию жанра, по убыванию (пустая карта при ошибке)
+     */
+    public static Map<String, Integer> pagesReadByGenre() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        try {
+            DatabaseHelper.connections().read(conn -> {
+                try (ResultSet rs = conn.prepare(PAGES_BY_GENRE_SQL).executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество прочитанных страниц по дням за период.
+     * Дни без чтения в результат не входят.
+     *
+     * @param from первый день периода
+     * @param to последний день периода
+     * @return страницы по дням в порядке возрастания (пустая карта при ошибке)
+     */
+    public static Map<LocalDate, Integer> pagesReadByDay(LocalDate from, LocalDate to) {
+        Map<LocalDate, Integer> result = new LinkedHashMap<>();
+        try {
+            DatabaseHelper.connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(PAGES_BY_DAY_SQL);
+                pstmt.setString(1, from.toString());
+                pstmt.setString(2, to.toString());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(LocalDate.parse(rs.getString(1)), rs.getInt(2));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает длину текущей серии: сколько дней подряд, заканчивая сегодняшним
+     * (или вчерашним, если сегодня ещё не читали), были прочитаны страницы.
+     * Просматриваются только строки сводки по дням, начиная с последней.
+     *
+     * @param today сегодняшний день
+     * @return количество дней серии (0, если серии нет или ошибка)
+     */
+    public static int currentStreak(LocalDate today) {
+        try {
+            return DatabaseHelper.connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(DAYS_BEFORE_SQL);
+                pstmt.setString(1, today.toString());
+                int streak = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    LocalDate expected = null;
+                    while (rs.next()) {
+                        LocalDate day = LocalDate.parse(rs.getString(1));
+                        if (expected == null) {
+                            if (day.isBefore(today.minusDays(1))) break;
+                        } else if (!day.equals(expected)) {
+                            break;
+                        }
+                        streak++;
+                        expected = day.minusDays(1);
+                    }
+                }
+                return streak;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Возвращает журнал чтения одной книги.
+     *
+     * @param bookId id книги
+     * @return записи в порядке времени (пустой список при ошибке)
+     */
+    public static List<ReadingEvent> eventsForBook(int bookId) {
+        List<ReadingEvent> events = new ArrayList<>();
+        try {
+            DatabaseHelper.connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(EVENTS_FOR_BOOK_SQL);
+                pstmt.setInt(1, bookId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        events.add(new ReadingEvent(rs.getLong("id"), rs.getInt("book_id"),
+                                rs.getLong("occurred_at"), rs.getInt("from_page"), rs.getInt("to_page"),
+                                rs.getInt("pages_read")));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return events;
+    }
+
+    /**
+     * Читает количество страниц из одной строки сводной таблицы.
+     *
+     * @param sql запрос с одним параметром
+     * @param key значение параметра
+     * @return количество страниц (0, если строки нет или ошибка)
+     */
+    private static int readPages(String sql, String key) {
+        try {
+            return DatabaseHelper.connections().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, key);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.nb2506.booktracker;
+
+import java.lang.management.ManagementFactory;
+import java.util.StringJoiner;
+
+/**
+ * Отметки этапов запуска приложения: первый кадр окна, готовность схемы базы данных,
+ * первые и все строки списка книг. Время каждого этапа от запуска процесса попадает
+ * в показатель {@code startup.<этап>.ms} реестра {@link Metrics} и видно в окне диагностики.
+ * <p>
+ * Если задано свойство {@value #EXIT_PROPERTY}, приложение после загрузки списка выводит
+ * строку {@link #report()} и завершается. Так работают замер времени запуска
+ * ({@code StartupBenchmark} модуля benchmarks) и обучающий запуск для архива CDS (профиль appcds в pom.xml).
+ */
+public final class StartupTrace {
+    /** Свойство, при котором приложение завершается сразу после загрузки списка книг. */
+    public static final String EXIT_PROPERTY = "booktracker.startup.exit";
+
+    /** Начало строки отчёта, по которому её находит замер времени запуска. */
+    public static final String REPORT_PREFIX = "startup:";
+
+    /** Этапы запуска в порядке их обычного завершения. */
+    public enum Phase {
+        /** Окно показано и разложено в первый раз. */
+        FIRST_FRAME("first-frame"),
+        /** Таблицы созданы и миграции применены. */
+        SCHEMA_READY("schema-ready"),
+        /** В списке появились первые книги. */
+        FIRST_ROWS("first-rows"),
+        /** Список загружен целиком и фильтры доступны. */
+        LIST_LOADED("list-loaded");
+
+        /** Имя этапа в отчёте и в имени показателя. */
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        /** Возвращает имя этапа в отчёте и в имени показателя. */
+        public String getKey() { return key; }
+    }
+
+    /**
+     * Время запуска виртуальной машины в миллисекундах от эпохи. Берётся из {@link ManagementFactory},
+     * а не из {@link ProcessHandle}: время запуска процесса в Linux известно только с точностью до секунды.
+     */
+    private static final long PROCESS_START = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /** Время каждого этапа в миллисекундах от эпохи; 0 — этап ещё не пройден. */
+    private static final long[] MARKS = new long[Phase.values().length];
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Отмечает завершение этапа. Повторные отметки того же этапа не учитываются.
+     *
+     * @param phase этап запуска
+     */
+    public static synchronized void mark(Phase phase) {
+        if (MARKS[phase.ordinal()] != 0) return;
+        long now = System.currentTimeMillis();
+        MARKS[phase.ordinal()] = now;
+        Metrics.gauge("startup." + phase.getKey() + ".ms", () -> now - PROCESS_START);
+    }
+
+    /**
+     * Возвращает признак того, что приложение запущено для замера и должно завершиться после загрузки списка.
+     *
+     * @return true, если задано свойство {@value #EXIT_PROPERTY}
+     */
+    public static boolean isExitRequested() {
+        return Boolean.getBoolean(EXIT_PROPERTY);
+    }
+
+    /**
+     * Возвращает отчёт о запуске одной строкой: время запуска процесса и пройденных этапов
+     * в миллисекундах от эпохи, например {@code startup: process=... first-frame=... first-rows=...}.
+     *
+     * @return строка отчёта
+     */
+    public static synchronized String report() {
+        StringJoiner line = new StringJoiner(" ", REPORT_PREFIX + " ", "");
+        line.add("process=" + PROCESS_START);
+        for (Phase phase : Phase.values()) {
+            if (MARKS[phase.ordinal()] != 0) {
+                line.add(phase.getKey() + "=" + MARKS[phase.ordinal()]);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.nb2506.booktracker;
+
+import eu.hansolo.tilesfx.Tile;
+import eu.hansolo.tilesfx.TileBuilder;
+import eu.hansolo.tilesfx.skins.BarChartItem;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.FlowPane;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Контроллер окна статистики библиотеки.
+ * Показатели загружаются через {@link AsyncBookRepository#loadStatistics()} и показываются плитками TilesFX.
+ * Пока окно открыто, оно перечитывает статистику после изменений, влияющих хотя бы на один показатель;
+ * несколько изменений подряд приводят к одному перечитыванию, а неизменившиеся показатели берутся из кэша.
+ */
+public class StatisticsController {
+    /** Размер небольшой плитки. */
+    private static final double TILE_SIZE = 180;
+
+    /** Контейнер плиток. */
+    @FXML private FlowPane tilesPane;
+
+    /** Плитка количества книг. */
+    private Tile booksTile;
+
+    /** Плитка прочитанных страниц. */
+    private Tile pagesTile;
+
+    /** Плитка доли прочитанных книг. */
+    private Tile completionTile;
+
+    /** Плитка страниц, прочитанных за месяц. */
+    private Tile readingTile;
+
+    /** Плитка средней оценки по жанрам. */
+    private Tile genresTile;
+
+    /** Плитка авторов с наибольшим количеством книг. */
+    private Tile authorsTile;
+
+    /** Плитка количества книг по годам издания. */
+    private Tile yearsTile;
+
+    /** Репозиторий, через который загружается статистика. */
+    private final AsyncBookRepository bookRepository = new AsyncBookRepository();
+
+    /** Признак того, что перечитывание уже запланировано; используется только в потоке JavaFX. */
+    private boolean refreshPending;
+
+    /** Получатель событий изменения книг, подписанный на время работы окна. */
+    private final Consumer<BookChange> changeListener = this::onBookChanged;
+
+    /**
+     * Инициализация контроллера.
+     * Создаёт плитки, запускает загрузку статистики и подписывается на события {@link BookChange}.
+     */
+    @FXML
+    private void initialize() {
+        booksTile = TileBuilder.create().skinType(Tile.SkinType.NUMBER).prefSize(TILE_SIZE, TILE_SIZE)
+                .title("Книги").decimals(0).textVisible(true).build();
+        pagesTile = TileBuilder.create().skinType(Tile.SkinType.NUMBER).prefSize(TILE_SIZE, TILE_SIZE)
+                .title("Прочитано страниц").decimals(0).textVisible(true).build();
+        completionTile = TileBuilder.create().skinType(Tile.SkinType.PERCENTAGE).prefSize(TILE_SIZE, TILE_SIZE)
+                .title("Прочитанные книги").unit("%").maxValue(100).decimals(0).build();
+        readingTile = TileBuilder.create().skinType(Tile.SkinType.NUMBER).prefSize(TILE_SIZE, TILE_SIZE)
+                .title("Страниц за месяц").decimals(0).textVisible(true).build();
+        genresTile = TileBuilder.create().skinType(Tile.SkinType.BAR_CHART).prefSize(2 * TILE_SIZE, 2 * TILE_SIZE)
+                .title("Средняя оценка по жанрам").maxValue(10).decimals(1).build();
+        authorsTile = TileBuilder.create().skinType(Tile.SkinType.BAR_CHART).prefSize(2 * TILE_SIZE, 2 * TILE_SIZE)
+                .title("Авторы").decimals(0).build();
+        yearsTile = TileBuilder.create().skinType(Tile.SkinType.SMOOTHED_CHART).prefSize(2 * TILE_SIZE, 2 * TILE_SIZE)
+                .title("Книги по годам издания").build();
+        tilesPane.getChildren().setAll(booksTile, pagesTile, completionTile, readingTile,
+                genresTile, authorsTile, yearsTile);
+
+        BookChangeNotifier.addListener(changeListener);
+        refresh();
+    }
+
+    /**
+     * Отписывается от событий изменения книг; вызывается при закрытии окна.
+     */
+    public void dispose() {
+        BookChangeNotifier.removeListener(changeListener);
+    }
+
+    /**
+     * Получатель событий изменения книг; события могут приходить из любого потока.
+     * Изменения, не влияющие на показатели (например, смена названия), пропускаются.
+     *
+     * @param change событие изменения
+     */
+    private void onBookChanged(BookChange change) {
+        if (!LibraryStatistics.isRelevant(change)) return;
+        Platform.runLater(() -> {
+            if (refreshPending) return;
+            refreshPending = true;
+            Platform.runLater(this::refresh);
+        });
+    }
+
+    /**
+     * Загружает статистику и обновляет плитки.
+     */
+    private void refresh() {
+        refreshPending = false;
+        bookRepository.loadStatistics().thenAccept(this::show);
+    }
+
+    /**
+     * Показывает снимок статистики в плитках.
+     *
+     * @param stats снимок статистики
+     */
+    private void show(LibraryStatistics.Snapshot stats) {
+        LibraryStatistics.Totals totals = stats.totals();
+        booksTile.setValue(totals.books());
+        booksTile.setText("читаю: " + totals.reading() + ", прочитано: " + totals.finished());
+        pagesTile.setValue(totals.readPages());
+        pagesTile.setText("из " + totals.totalPages());
+        completionTile.setValue(100 * totals.completionRate());
+
+        LibraryStatistics.Reading reading = stats.reading();
+        readingTile.setValue(reading.thisMonth());
+        readingTile.setText("сегодня: " + reading.today() + ", за неделю: " + reading.thisWeek()
+                + ", дней подряд: " + reading.streak());
+
+        List<BarChartItem> genres = new ArrayList<>();
+        for (LibraryStatistics.GenreRating genre : stats.ratingByGenre()) {
+            genres.add(new BarChartItem(genre.genre() + " (" + genre.books() + ")", genre.averageRating()));
+        }
+        genresTile.setBarChartItems(genres);
+
+        List<BarChartItem> authors = new ArrayList<>();
+        for (LibraryStatistics.AuthorCount author : stats.topAuthors()) {
+            authors.add(new BarChartItem(author.author(), author.books()));
+        }
+        authorsTile.setMaxValue(authors.isEmpty() ? 1 : authors.getFirst().getValue());
+        authorsTile.setBarChartItems(authors);
+
+        XYChart.Series<String, Number> years = new XYChart.Series<>();
+        for (Map.Entry<Integer, Integer> entry : stats.booksByYear().entrySet()) {
+            years.getData().add(new XYChart.Data<>(String.valueOf(entry.getKey()), entry.getValue()));
+        }
+        yearsTile.setSeries(List.of(years));
+    }
+}
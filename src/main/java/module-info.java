@@ -1,17 +1,13 @@
 module com.nb2506.booktracker {
+    requires java.sql;
+    requires org.xerial.sqlitejdbc;
+    requires java.desktop;
+    requires jdk.jfr;
+    requires java.management;
+
     requires javafx.controls;
     requires javafx.fxml;
-    requires javafx.web;
-
-    requires org.controlsfx.controls;
-    requires com.dlsc.formsfx;
-    requires net.synedra.validatorfx;
-    requires org.kordamp.ikonli.javafx;
-    requires org.kordamp.bootstrapfx.core;
     requires eu.hansolo.tilesfx;
-    requires com.almasb.fxgl.all;
-    requires java.sql;
-    requires java.desktop;
 
     opens com.nb2506.booktracker to javafx.fxml;
     exports com.nb2506.booktracker;